@@ -34,6 +34,7 @@ import org.omnifaces.facesviews.FacesViews;
  * <li>Load the {@link Cache} provider and register its filter.
  * <li>Instantiate {@link Eager} application scoped beans.
  * </ol>
+ * When the servlet context is destroyed, it closes the {@link Cache} provider.
  *
  * @author Bauke Scholtz
  * @since 2.0
@@ -52,7 +53,12 @@ public class ApplicationListener extends DefaultServletContextListener {
 	public void contextInitialized(ServletContextEvent event) {
 		FacesViews.addMappings(event.getServletContext());
 		CacheInitializer.loadProviderAndRegisterFilter(event.getServletContext());
-		eagerBeansRepository.instantiateApplicationScoped();
+		eagerBeansRepository.instantiateApplicationScoped(event.getServletContext());
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		CacheInitializer.closeProvider(event.getServletContext());
 	}
 
 }
\ No newline at end of file
@@ -15,9 +15,14 @@
  */
 package org.omnifaces.cdi;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.enterprise.context.spi.Contextual;
 import javax.enterprise.context.spi.CreationalContext;
@@ -27,6 +32,12 @@ import javax.enterprise.inject.spi.PassivationCapable;
 /**
  * CDI bean storage. This class is theoretically reusable for multiple CDI scopes. It's currently however only used by
  * the OmniFaces CDI view scope.
+ * <p>
+ * Every contextual type gets a dense integer slot, preferably assigned during deployment via
+ * {@link #registerSlot(String)}, and the beans are stored in an array indexed by slot. This way a bean lookup doesn't
+ * need to hash the long passivation ID of the contextual type, and an empty storage doesn't need a whole map. The
+ * serialized form contains only the beans along with their passivation ID, so that it does not depend on the slots,
+ * which may differ between nodes.
  *
  * @author Radu Creanga {@literal <rdcrng@gmail.com>}
  * @author Bauke Scholtz
@@ -36,24 +47,53 @@ public class BeanStorage implements Serializable {
 
 	// Constants ------------------------------------------------------------------------------------------------------
 
-	private static final long serialVersionUID = 42L;
+	private static final long serialVersionUID = 43L;
+	private static final ConcurrentMap<String, Integer> SLOTS_BY_ID = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<Contextual<?>, Integer> SLOTS_BY_TYPE = new ConcurrentHashMap<>();
+	private static final AtomicInteger SLOT_COUNT = new AtomicInteger();
 
 	// Properties -----------------------------------------------------------------------------------------------------
 
-	private final ConcurrentMap<String, Bean<?>> beans;
+	private transient volatile Bean<?>[] beans;
+	private transient volatile boolean dirty;
+	private transient volatile boolean destroyed;
 
 	// Constructors ---------------------------------------------------------------------------------------------------
 
 	/**
-	 * Construct a new CDI bean storage with the given initial capacity of the map holding all beans.
-	 * @param initialCapacity The initial capacity of the map holding all beans.
+	 * Construct a new CDI bean storage with the given initial capacity of the array holding all beans.
+	 * @param initialCapacity The initial capacity of the array holding all beans. It grows as needed.
 	 */
 	public BeanStorage(int initialCapacity) {
-		beans = new ConcurrentHashMap<>(initialCapacity);
+		beans = new Bean<?>[initialCapacity];
 	}
 
 	// Actions --------------------------------------------------------------------------------------------------------
 
+	/**
+	 * Assign a slot to the contextual type of the given passivation ID, if not already done. This should preferably be
+	 * done for all contextual types of the scope during deployment, so that their slots are dense.
+	 * @param id The passivation ID of the contextual type.
+	 * @return The slot of the contextual type.
+	 * @since 2.1
+	 */
+	public static int registerSlot(String id) {
+		Integer slot = SLOTS_BY_ID.get(id);
+
+		if (slot == null) {
+			synchronized (SLOTS_BY_ID) {
+				slot = SLOTS_BY_ID.get(id);
+
+				if (slot == null) {
+					slot = SLOT_COUNT.getAndIncrement();
+					SLOTS_BY_ID.put(id, slot);
+				}
+			}
+		}
+
+		return slot;
+	}
+
 	/**
 	 * Create and return the bean associated with given context and creational context.
 	 * @param <T> The generic bean type.
@@ -62,8 +102,9 @@ public class BeanStorage implements Serializable {
 	 * @return The bean associated with given context and creational context.
 	 */
 	public <T> T createBean(Contextual<T> type, CreationalContext<T> context) {
-		Bean<T> bean = new Bean<>(type, context);
-		beans.put(((PassivationCapable) type).getId(), bean);
+		String id = ((PassivationCapable) type).getId();
+		Bean<T> bean = new Bean<>(id, type, context);
+		put(getSlot(type), bean);
 		return bean.getInstance();
 	}
 
@@ -76,7 +117,9 @@ public class BeanStorage implements Serializable {
 	 */
 	@SuppressWarnings("unchecked")
 	public <T> T getBean(Contextual<T> type, BeanManager manager) {
-		Bean<T> bean = (Bean<T>) beans.get(((PassivationCapable) type).getId());
+		int slot = getSlot(type);
+		Bean<?>[] currentBeans = beans;
+		Bean<T> bean = (slot < currentBeans.length) ? (Bean<T>) currentBeans[slot] : null;
 
 		if (bean == null) {
 			return null;
@@ -86,18 +129,153 @@ public class BeanStorage implements Serializable {
 			bean.setContext(type, manager.createCreationalContext(type));
 		}
 
+		if (!dirty) { // The caller may change the state of the bean instance.
+			dirty = true;
+		}
+
 		return bean.getInstance();
 	}
 
+	/**
+	 * Returns the amount of beans managed so far.
+	 * @return The amount of beans managed so far.
+	 * @since 2.1
+	 */
+	public int getBeanCount() {
+		int count = 0;
+
+		for (Bean<?> bean : beans) {
+			if (bean != null) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
 	/**
 	 * Destroy all beans managed so far.
 	 */
 	public synchronized void destroyBeans() { // Not sure if synchronization is absolutely necessary. Just to be on safe side.
-		for (Bean<?> bean : beans.values()) {
-			bean.destroy();
+		for (Bean<?> bean : beans) {
+			if (bean != null) {
+				bean.destroy();
+			}
+		}
+
+		beans = new Bean<?>[0];
+		destroyed = true;
+	}
+
+	/**
+	 * Destroy all beans managed so far. Beans which have lost their context, e.g. because this storage has been
+	 * serialized and deserialized, are first reattached to their contextual type via the given bean manager, so that
+	 * their pre destroy is still invoked.
+	 * @param manager The bean manager used to find the contextual type and create the creational context, if necessary.
+	 * @since 2.1
+	 */
+	public synchronized void destroyBeans(BeanManager manager) {
+		for (Bean<?> bean : beans) {
+			if (bean != null) {
+				if (!bean.hasContext()) {
+					bean.setContext(manager);
+				}
+
+				bean.destroy();
+			}
+		}
+
+		beans = new Bean<?>[0];
+		destroyed = true;
+	}
+
+	// Getters/setters ------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns whether a bean has been created or obtained since this storage was last marked as not dirty. An obtained
+	 * bean counts as well, because its state may have been changed by the caller.
+	 * @return Whether a bean has been created or obtained since this storage was last marked as not dirty.
+	 * @since 2.1
+	 */
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * Mark this storage as dirty or not dirty, e.g. after it has been handed over for replication.
+	 * @param dirty Whether this storage is dirty.
+	 * @since 2.1
+	 */
+	public void setDirty(boolean dirty) {
+		this.dirty = dirty;
+	}
+
+	/**
+	 * Returns whether the beans of this storage have been destroyed, or this storage has otherwise been taken out of
+	 * use, e.g. because it has been passivated. A deserialized storage is not destroyed.
+	 * @return Whether this storage has been destroyed.
+	 * @since 2.1
+	 */
+	public boolean isDestroyed() {
+		return destroyed;
+	}
+
+	/**
+	 * Mark this storage as destroyed, e.g. when it has been passivated, so that it's not used anymore.
+	 * @param destroyed Whether this storage is destroyed.
+	 * @since 2.1
+	 */
+	public void setDestroyed(boolean destroyed) {
+		this.destroyed = destroyed;
+	}
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the slot of the given contextual type. The slot is cached by the contextual type itself, so that the
+	 * passivation ID needs to be hashed only once.
+	 */
+	private static int getSlot(Contextual<?> type) {
+		Integer slot = SLOTS_BY_TYPE.get(type);
+
+		if (slot == null) {
+			slot = registerSlot(((PassivationCapable) type).getId());
+			SLOTS_BY_TYPE.put(type, slot);
 		}
 
-		beans.clear();
+		return slot;
+	}
+
+	/**
+	 * Put the given bean in the given slot, growing the array if necessary.
+	 */
+	private synchronized void put(int slot, Bean<?> bean) {
+		Bean<?>[] newBeans = (slot < beans.length) ? beans.clone() : Arrays.copyOf(beans, slot + 1);
+		newBeans[slot] = bean;
+		beans = newBeans;
+		dirty = true;
+	}
+
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		output.defaultWriteObject();
+		Bean<?>[] currentBeans = beans;
+		output.writeInt(getBeanCount());
+
+		for (Bean<?> bean : currentBeans) {
+			if (bean != null) {
+				output.writeObject(bean);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+		input.defaultReadObject();
+		beans = new Bean<?>[0];
+
+		for (int i = input.readInt(); i > 0; i--) {
+			Bean<?> bean = (Bean<?>) input.readObject();
+			put(registerSlot(bean.id), bean);
+		}
 	}
 
 	// Nested classes -------------------------------------------------------------------------------------------------
@@ -107,13 +285,15 @@ public class BeanStorage implements Serializable {
 	 */
 	static class Bean<T> implements Serializable {
 
-		private static final long serialVersionUID = 42L;
+		private static final long serialVersionUID = 43L;
 
+		private final String id;
 		private transient Contextual<T> type;
 		private transient CreationalContext<T> context;
 		private final T instance;
 
-		public Bean(Contextual<T> type, CreationalContext<T> context) {
+		public Bean(String id, Contextual<T> type, CreationalContext<T> context) {
+			this.id = id;
 			setContext(type, context);
 			instance = type.create(context);
 		}
@@ -123,6 +303,15 @@ public class BeanStorage implements Serializable {
 			this.context = context;
 		}
 
+		@SuppressWarnings("unchecked")
+		public void setContext(BeanManager manager) {
+			Contextual<T> type = (Contextual<T>) manager.getPassivationCapableBean(id);
+
+			if (type != null) {
+				setContext(type, manager.createCreationalContext(type));
+			}
+		}
+
 		public boolean hasContext() {
 			return type != null && context != null;
 		}
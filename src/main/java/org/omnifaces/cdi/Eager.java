@@ -78,6 +78,14 @@ import org.omnifaces.cdi.eager.EagerExtension;
  * <p>
  * <em>Note: you can also use the stereotype {@link Startup} for this instead.</em>
  * <p>
+ * Eager application scoped beans are by default instantiated one after another in the thread which deploys the web
+ * application, in the order specified by {@link #after()}. When the context parameter
+ * {@value org.omnifaces.cdi.eager.EagerBeansRepository#PARAM_NAME_STARTUP_THREADS} is set to a number greater than 1,
+ * then they are instantiated concurrently by that many threads, whereby a bean is only instantiated when all beans
+ * specified in its {@link #after()} have been instantiated. Those threads are not managed by the container, so the
+ * beans shouldn't rely on e.g. JNDI lookups of <code>java:comp</code> during their post construct. The startup time of
+ * each bean is logged at level <code>FINE</code>.
+ * <p>
  * The following bean will be instantiated whenever a session is created:
  * <pre>
  * &#64;Eager
@@ -171,6 +179,10 @@ public @interface Eager {
 	 * <p>
 	 * If both this attribute and {@link Eager#viewId()} is specified, this attribute takes precedence for {@link RequestScoped}.
 	 * This attribute <b>can not</b> be used for {@link ViewScoped} beans.
+	 * <p>
+	 * The URI may be a path pattern wherein a segment of <code>*</code> matches exactly one path segment, e.g.
+	 * <code>/product/*</code>, and a last segment of <code>**</code> matches any number of path segments, e.g.
+	 * <code>/admin/**</code>. Other usages of <code>*</code> are invalid.
 	 *
 	 * @return The request URI relative to the context root.
 	 */
@@ -189,10 +201,46 @@ public @interface Eager {
 	 * If both this attribute and {@link Eager#requestURI()} is specified and the scope is {@link RequestScoped}, the
 	 * <code>requestURI</code> attribute takes precedence. If the scope is {@link ViewScoped} <code>requestURI</code> is ignored and only
 	 * this attribute is considered.
+	 * <p>
+	 * The view ID may be a path pattern the same way as {@link Eager#requestURI()}, e.g. <code>/product/*</code>.
 	 *
 	 * @return The view ID.
 	 */
 	@Nonbinding
 	String viewId() default "";
 
+	/**
+	 * (Only applicable to {@link ApplicationScoped}) The bean classes of other eager application scoped beans which
+	 * should be instantiated before this bean, e.g. because this bean needs their data during its post construct. Bean
+	 * classes which do not represent an eager application scoped bean are ignored. A circular dependency results in a
+	 * deployment error. This can also be combined with {@link Startup}.
+	 * <p>
+	 * When the context parameter {@value org.omnifaces.cdi.eager.EagerBeansRepository#PARAM_NAME_STARTUP_THREADS} is
+	 * set, then beans which do not depend on each other are instantiated concurrently.
+	 *
+	 * @return The bean classes of eager application scoped beans which should be instantiated before this bean.
+	 * @since 2.1
+	 */
+	@Nonbinding
+	Class<?>[] after() default {};
+
+	/**
+	 * (Only applicable to {@link RequestScoped} and {@link SessionScoped}) Whether the bean should be instantiated
+	 * asynchronously. If <code>true</code>, the bean is instantiated in a background thread as soon as the request or
+	 * session starts, and the request thread continues right away. The instance is handed over to the CDI request or
+	 * session scope once the bean is referenced for the first time; only if it isn't ready by then, the referencing
+	 * thread waits for it. If the instantiation failed, the exception is thrown at that point. If the bean isn't
+	 * referenced at all during the request or session, it is destroyed at the end of it.
+	 * <p>
+	 * The background thread has no active CDI request or session scope, so the post construct of the bean must not
+	 * invoke request or session scoped beans. The amount of background threads can be set by the context parameter
+	 * {@value org.omnifaces.cdi.eager.EagerBeansRepository#PARAM_NAME_ASYNC_THREADS} and defaults to the amount of
+	 * available processors.
+	 *
+	 * @return Whether the bean should be instantiated asynchronously.
+	 * @since 2.1
+	 */
+	@Nonbinding
+	boolean async() default false;
+
 }
\ No newline at end of file
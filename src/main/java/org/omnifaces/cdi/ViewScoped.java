@@ -73,6 +73,15 @@ import org.omnifaces.cdi.viewscope.ViewScopeManager;
  * It's not <em>immediately</em> invoked on a GET navigation, nor a close of browser tab/window. This CDI view scope
  * annotation however guarantees that the {@link PreDestroy} annotated method is also invoked on session expire, while
  * JSF 2.0/2.1 doesn't do that (JSF 2.2 does).
+ * <p>
+ * When the context parameter {@value org.omnifaces.cdi.viewscope.ViewScopeManager#PARAM_NAME_DESTROY_ON_UNLOAD} is
+ * set to <code>true</code>, then the view scope is also destroyed <em>immediately</em> when the enduser leaves the
+ * page, e.g. by a GET navigation or by closing the browser tab/window. A small script in <code>omnifaces.js</code> then
+ * sends an unload notification to the server via <code>navigator.sendBeacon()</code> on the <code>pagehide</code>
+ * event, which destroys the view scope without restoring the view. Submitting a form, also via a non-ajax command link
+ * of Mojarra or MyFaces, does not count as leaving the page, and neither does a page which is kept in the back-forward
+ * cache of the browser. If the page has a plain link which does not actually leave the page, e.g. a file download
+ * link, then call <code>OmniFaces.Unload.disable()</code> in its <code>onclick</code>.
  * <h3>Configuration</h3>
  * <p>
  * By default, the maximum number of active view scopes is hold in a LRU map with a default size equal to the first
@@ -85,6 +94,29 @@ import org.omnifaces.cdi.viewscope.ViewScopeManager;
  * <p>If none of those context parameters are present, then a default size of
  * {@value org.omnifaces.cdi.viewscope.ViewScopeManager#DEFAULT_MAX_ACTIVE_VIEW_SCOPES} will be used. When a view scoped
  * bean is evicted from the LRU map, then its {@link PreDestroy} will also guaranteed to be invoked.
+ * <p>
+ * When the context parameter
+ * {@value org.omnifaces.cdi.viewscope.ViewScopeManager#PARAM_NAME_PASSIVATE_EVICTED_VIEW_SCOPES} is set to
+ * <code>true</code>, then an evicted view scope is not destroyed, but serialized to a bounded store on local disk, and
+ * transparently restored when the enduser returns to the view. This allows a low maximum number of active view scopes
+ * without losing the state of older browser tabs. The bounds of the store are configured by
+ * {@value org.omnifaces.cdi.viewscope.ViewScopePassivationStore#PARAM_NAME_MAX_PASSIVATED_VIEW_SCOPES}, which defaults
+ * to {@value org.omnifaces.cdi.viewscope.ViewScopePassivationStore#DEFAULT_MAX_PASSIVATED_VIEW_SCOPES}. Only when a
+ * view scope is evicted from that store as well, its {@link PreDestroy} is invoked.
+ * <p>
+ * The maximum number of active view scopes applies per session. To cap the memory of view scoped beans of all sessions
+ * together, set {@value org.omnifaces.cdi.viewscope.ViewScopeBudget#PARAM_NAME_MAX_TOTAL_WEIGHT} to the maximum total
+ * weight in KB. The least recently used view scopes of the whole node are then evicted as well when the total weight
+ * is exceeded. See {@link org.omnifaces.cdi.viewscope.ViewScopeBudget} for how the weight is determined.
+ * <p>
+ * All active view scopes of the session are by default serialized as part of a single session scoped bean. In a
+ * cluster whose container replicates only the session attributes which are set during the request, this means that all
+ * view scopes of the session are replicated on every request. When the context parameter
+ * {@value org.omnifaces.cdi.viewscope.ViewScopeManager#PARAM_NAME_REPLICATE_VIEW_SCOPES_SEPARATELY} is set to
+ * <code>true</code>, then each view scope is stored in its own session attribute, which is only set again at the end of
+ * a request in which a bean of the view scope was created or obtained. The session scoped bean then holds only the IDs
+ * of the view scopes. Note that after a fail over, a view scope which is not accessed anymore before the session expires
+ * will not have its {@link PreDestroy} invoked.
  *
  * @author Radu Creanga {@literal <rdcrng@gmail.com>}
  * @author Bauke Scholtz
@@ -64,9 +64,14 @@ public class EagerBeansFilter extends HttpFilter {
 
 	@Override
 	public void doFilter(HttpServletRequest request, HttpServletResponse response, HttpSession session,	FilterChain chain) throws ServletException, IOException {
-		eagerBeansRepository.instantiateByRequestURI(getRequestRelativeURIWithoutPathParameters(request));
+		eagerBeansRepository.instantiateByRequestURI(request, getRequestRelativeURIWithoutPathParameters(request));
 
-		chain.doFilter(request, response);
+		try {
+			chain.doFilter(request, response);
+		}
+		finally {
+			PendingEagerBeans.destroy(request);
+		}
 
 		HttpSession newSession = request.getSession(false);
 
@@ -82,7 +87,7 @@ public class EagerBeansFilter extends HttpFilter {
 				// Even if we remove it immediately there's still a chance for a race, so test the boolean atomically
 				// and make sure only one thread sees the initial value of "true" returned.
 				if (sessionCreated.getAndSet(false)) {
-					eagerBeansRepository.instantiateSessionScoped();
+					eagerBeansRepository.instantiateSessionScoped(newSession);
 				}
 			}
 		}
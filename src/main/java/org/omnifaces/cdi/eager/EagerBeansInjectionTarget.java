@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.cdi.eager;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.InjectionPoint;
+import javax.enterprise.inject.spi.InjectionTarget;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.omnifaces.cdi.Eager;
+
+/**
+ * Injection target of an {@link Eager#async()} bean. It creates the instance in a background thread via
+ * {@link #create(CreationalContext)}, and hands it over to the CDI scope when the scope asks for the instance via
+ * {@link #produce(CreationalContext)}. The instance has then already been injected and post constructed, so the
+ * subsequent {@link #inject(Object, CreationalContext)} and {@link #postConstruct(Object)} on the same instance are
+ * skipped. If there's no pending instance in the current request or session, or if its creation hasn't started yet, in
+ * which case it's cancelled, this merely delegates, so that the scope doesn't wait for a thread to become available.
+ *
+ * @param <T> The generic bean type.
+ * @author agent
+ * @see PendingEagerBeans
+ * @since 2.1
+ */
+public class EagerBeansInjectionTarget<T> implements InjectionTarget<T> {
+
+	// Variables ------------------------------------------------------------------------------------------------------
+
+	private final InjectionTarget<T> delegate;
+	private final Class<T> beanClass;
+	private final boolean sessionScoped;
+	private final BeanManager beanManager;
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private final ThreadLocal<T> handedOverInstance = new ThreadLocal<>();
+	private final Map<T, CreationalContext<T>> handedOverContexts =
+		Collections.synchronizedMap(new IdentityHashMap<T, CreationalContext<T>>());
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	/**
+	 * Construct a new injection target of an {@link Eager#async()} bean.
+	 * @param delegate The original injection target of the bean.
+	 * @param beanClass The bean class.
+	 * @param sessionScoped Whether the bean is session scoped, else it is request scoped.
+	 * @param beanManager The bean manager.
+	 */
+	public EagerBeansInjectionTarget(InjectionTarget<T> delegate, Class<T> beanClass, boolean sessionScoped,
+		BeanManager beanManager)
+	{
+		this.delegate = delegate;
+		this.beanClass = beanClass;
+		this.sessionScoped = sessionScoped;
+		this.beanManager = beanManager;
+	}
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Create, inject and post construct a new instance. This is invoked in a background thread.
+	 * @param context The creational context of the instance.
+	 * @return The new instance.
+	 */
+	public T create(CreationalContext<T> context) {
+		T instance = delegate.produce(context);
+		delegate.inject(instance, context);
+		delegate.postConstruct(instance);
+		return instance;
+	}
+
+	@Override
+	public T produce(CreationalContext<T> context) {
+		PendingEagerBeans.Instance<T> pending = (pendingCount.get() > 0) ? claim() : null;
+
+		if (pending == null || pending.cancel()) {
+			return delegate.produce(context);
+		}
+
+		T instance = pending.get(); // Blocks only when the instance isn't ready yet.
+		handedOverInstance.set(instance);
+		handedOverContexts.put(instance, pending.getContext());
+		return instance;
+	}
+
+	@Override
+	public void inject(T instance, CreationalContext<T> context) {
+		if (handedOverInstance.get() != instance) {
+			delegate.inject(instance, context);
+		}
+	}
+
+	@Override
+	public void postConstruct(T instance) {
+		if (handedOverInstance.get() != instance) {
+			delegate.postConstruct(instance);
+		}
+		else {
+			handedOverInstance.remove();
+		}
+	}
+
+	@Override
+	public void preDestroy(T instance) {
+		delegate.preDestroy(instance);
+	}
+
+	@Override
+	public void dispose(T instance) {
+		delegate.dispose(instance);
+		CreationalContext<T> context = handedOverContexts.remove(instance);
+
+		if (context != null) { // The dependents of an instance created in background are in its own context.
+			context.release();
+		}
+	}
+
+	@Override
+	public Set<InjectionPoint> getInjectionPoints() {
+		return delegate.getInjectionPoints();
+	}
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Invoked by {@link PendingEagerBeans} when an instance of this bean is pending or not anymore.
+	 */
+	void updatePendingCount(int delta) {
+		pendingCount.addAndGet(delta);
+	}
+
+	/**
+	 * Claim the pending instance of this bean from the current request or session, if any.
+	 */
+	private PendingEagerBeans.Instance<T> claim() {
+		PendingEagerBeans pendingBeans;
+
+		try {
+			if (sessionScoped) {
+				pendingBeans = PendingEagerBeans.get(getBuiltInReference(HttpSession.class));
+			}
+			else {
+				pendingBeans = PendingEagerBeans.get(getBuiltInReference(HttpServletRequest.class));
+			}
+		}
+		catch (RuntimeException ignore) {
+			return null; // No current request or session, so there's nothing to claim.
+		}
+
+		return (pendingBeans != null) ? pendingBeans.claim(beanClass) : null;
+	}
+
+	/**
+	 * Returns a reference to the given CDI built-in bean representing the current request or session. The bean type
+	 * must be passed explicitly, because the bean class of a built-in bean is an implementation detail.
+	 */
+	private <R> R getBuiltInReference(Class<R> type) {
+		Bean<?> bean = beanManager.resolve(beanManager.getBeans(type));
+		return (bean != null) ? type.cast(beanManager.getReference(bean, type, beanManager.createCreationalContext(bean)))
+			: null;
+	}
+
+}
@@ -16,8 +16,10 @@
 package org.omnifaces.cdi.eager;
 
 import static javax.faces.event.PhaseId.RESTORE_VIEW;
+import static org.omnifaces.util.FacesLocal.getRequest;
 import static org.omnifaces.util.FacesLocal.getViewId;
 
+import javax.faces.context.FacesContext;
 import javax.faces.event.PhaseEvent;
 
 import org.omnifaces.config.BeanManager;
@@ -47,7 +49,8 @@ public class EagerBeansPhaseListener extends DefaultPhaseListener {
 
 	@Override
 	public void afterPhase(PhaseEvent event) {
-		eagerBeansRepository.instantiateByViewID(getViewId(event.getFacesContext()));
+		FacesContext context = event.getFacesContext();
+		eagerBeansRepository.instantiateByViewID(getRequest(context), getViewId(context));
 	}
 
 }
\ No newline at end of file
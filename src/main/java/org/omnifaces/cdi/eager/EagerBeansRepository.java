@@ -15,18 +15,57 @@
  */
 package org.omnifaces.cdi.eager;
 
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.logging.Level.FINE;
 import static org.omnifaces.util.Utils.isAnyEmpty;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
 
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.spi.CreationalContext;
 import javax.enterprise.inject.spi.Bean;
 import javax.enterprise.inject.spi.BeanManager;
 import javax.inject.Inject;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.omnifaces.cdi.Eager;
 
 /**
  * Bean repository via which various types of eager beans can be instantiated on demand.
+ * <p>
+ * Eager application scoped beans are instantiated in the order of their {@link Eager#after()}. When the context
+ * parameter {@value #PARAM_NAME_STARTUP_THREADS} is set to a number greater than 1, then they are instantiated
+ * concurrently by that many threads, whereby a bean is only instantiated when the beans it depends on have been
+ * instantiated. An exception during instantiation is rethrown in the thread which deploys the web application, exactly
+ * as if the beans were instantiated one after another.
+ * <p>
+ * Eager session and request scoped beans with {@link Eager#async()} are instantiated in background by at most
+ * {@value #PARAM_NAME_ASYNC_THREADS} threads, and handed over to their CDI scope by {@link EagerBeansInjectionTarget}.
+ * At most {@value #ASYNC_QUEUE_SIZE_PER_THREAD} beans per thread can be waiting for a thread. Beyond that, beans are
+ * instantiated synchronously, exactly as if they weren't asynchronous.
  *
  * @since 1.8
  * @author Arjan Tijms
@@ -35,52 +74,327 @@ import javax.inject.Inject;
 @ApplicationScoped
 public class EagerBeansRepository {
 
+	// Public constants -----------------------------------------------------------------------------------------------
+
+	/** OmniFaces specific context parameter name of amount of threads to instantiate eager application scoped beans. */
+	public static final String PARAM_NAME_STARTUP_THREADS = "org.omnifaces.EAGER_BEANS_STARTUP_THREADS";
+
+	/** OmniFaces specific context parameter name of amount of threads to instantiate asynchronous eager beans. */
+	public static final String PARAM_NAME_ASYNC_THREADS = "org.omnifaces.EAGER_BEANS_ASYNC_THREADS";
+
+	// Private constants ----------------------------------------------------------------------------------------------
+
+	private static final Logger logger = Logger.getLogger(EagerBeansRepository.class.getName());
+
+	private static final int ASYNC_QUEUE_SIZE_PER_THREAD = 64;
+
+	private static final String ERROR_THREADS = "The '%s' init param must be a number."
+		+ " Encountered an invalid value of '%s'.";
+	private static final String ERROR_INTERRUPTED = "Interrupted while instantiating eager application scoped beans.";
+	private static final String LOG_BEAN_INSTANTIATED = "Eager bean %s instantiated in %dms.";
+	private static final String LOG_BEANS_INSTANTIATED =
+		"%d eager application scoped beans instantiated in %dms by %d threads.";
+
+	// Variables ------------------------------------------------------------------------------------------------------
+
 	@Inject
 	private BeanManager beanManager;
 
 	private List<Bean<?>> applicationScopedBeans;
+	private Map<Bean<?>, List<Bean<?>>> applicationScopedBeanDependencies;
 	private List<Bean<?>> sessionScopedBeans;
-	private Map<String, List<Bean<?>>> requestScopedBeansViewId;
-	private Map<String, List<Bean<?>>> requestScopedBeansRequestURI;
+	private PathPatternTrie<Bean<?>> requestScopedBeansViewId;
+	private PathPatternTrie<Bean<?>> requestScopedBeansRequestURI;
+	private Map<Class<?>, EagerBeansInjectionTarget<?>> asyncInjectionTargets;
+	private volatile ExecutorService asyncExecutor;
+
+	// Actions --------------------------------------------------------------------------------------------------------
 
 	public void instantiateApplicationScoped() {
 		if (isAnyEmpty(applicationScopedBeans, beanManager)) {
 			return;
 		}
 
-		instantiateBeans(applicationScopedBeans);
+		for (Bean<?> bean : applicationScopedBeans) {
+			instantiateApplicationScopedBean(bean);
+		}
+	}
+
+	/**
+	 * Instantiate the eager application scoped beans, concurrently if so configured by
+	 * {@value #PARAM_NAME_STARTUP_THREADS} in the given servlet context.
+	 * @param servletContext The servlet context of the web application.
+	 * @since 2.1
+	 */
+	public void instantiateApplicationScoped(ServletContext servletContext) {
+		int threads = getThreads(servletContext, PARAM_NAME_STARTUP_THREADS, 1);
+
+		if (threads <= 1 || isAnyEmpty(applicationScopedBeans, beanManager) || applicationScopedBeans.size() == 1) {
+			instantiateApplicationScoped();
+			return;
+		}
+
+		long start = System.nanoTime();
+		instantiateApplicationScopedBeansConcurrently(Math.min(threads, applicationScopedBeans.size()));
+		logger.info(format(LOG_BEANS_INSTANTIATED, applicationScopedBeans.size(),
+			NANOSECONDS.toMillis(System.nanoTime() - start), Math.min(threads, applicationScopedBeans.size())));
 	}
 
 	public void instantiateSessionScoped() {
+		instantiateSessionScoped(null);
+	}
+
+	/**
+	 * Instantiate the eager session scoped beans, those with {@link Eager#async()} in background.
+	 * @param session The newly created session. If <code>null</code>, all beans are instantiated synchronously.
+	 * @since 2.1
+	 */
+	public void instantiateSessionScoped(HttpSession session) {
 		if (isAnyEmpty(sessionScopedBeans, beanManager)) {
 			return;
 		}
 
-		instantiateBeans(sessionScopedBeans);
+		instantiateBeans(sessionScopedBeans, null, session);
 	}
 
 	public void instantiateByRequestURI(String relativeRequestURI) {
-		instantiateRequestScopedBeans(requestScopedBeansRequestURI, relativeRequestURI);
+		instantiateByRequestURI(null, relativeRequestURI);
+	}
+
+	/**
+	 * Instantiate the eager request scoped beans of the given request URI, those with {@link Eager#async()} in
+	 * background.
+	 * @param request The current request. If <code>null</code>, all beans are instantiated synchronously.
+	 * @param relativeRequestURI The request URI relative to the context root.
+	 * @since 2.1
+	 */
+	public void instantiateByRequestURI(HttpServletRequest request, String relativeRequestURI) {
+		instantiateRequestScopedBeans(requestScopedBeansRequestURI, relativeRequestURI, request);
 	}
 
 	public void instantiateByViewID(String viewId) {
-		instantiateRequestScopedBeans(requestScopedBeansViewId, viewId);
+		instantiateByViewID(null, viewId);
+	}
+
+	/**
+	 * Instantiate the eager request scoped beans of the given view ID, those with {@link Eager#async()} in background.
+	 * @param request The current request. If <code>null</code>, all beans are instantiated synchronously.
+	 * @param viewId The view ID.
+	 * @since 2.1
+	 */
+	public void instantiateByViewID(HttpServletRequest request, String viewId) {
+		instantiateRequestScopedBeans(requestScopedBeansViewId, viewId, request);
+	}
+
+	/**
+	 * Shutdown the threads of asynchronous eager beans, if any.
+	 */
+	@PreDestroy
+	public void destroy() {
+		if (asyncExecutor != null) {
+			asyncExecutor.shutdownNow();
+		}
 	}
 
-	private void instantiateRequestScopedBeans(Map<String, List<Bean<?>>> beans, String key) {
-		if (isAnyEmpty(beans, beanManager) || !beans.containsKey(key)) {
+	private void instantiateRequestScopedBeans(PathPatternTrie<Bean<?>> beans, String path,
+		HttpServletRequest request)
+	{
+		if (beans == null || beanManager == null) {
 			return;
 		}
 
-		instantiateBeans(beans.get(key));
+		List<Bean<?>> matchingBeans = beans.match(path);
+
+		if (!matchingBeans.isEmpty()) {
+			instantiateBeans(matchingBeans, request, null);
+		}
 	}
 
+	// Helpers --------------------------------------------------------------------------------------------------------
+
 	private void instantiateBeans(List<Bean<?>> beans) {
 		for (Bean<?> bean : beans) {
-			beanManager.getReference(bean, bean.getBeanClass(), beanManager.createCreationalContext(bean)).toString();
+			instantiateBean(bean);
 		}
 	}
 
+	private void instantiateBeans(List<Bean<?>> beans, HttpServletRequest request, HttpSession session) {
+		boolean async = asyncInjectionTargets != null && (request != null || session != null);
+
+		for (Bean<?> bean : beans) {
+			EagerBeansInjectionTarget<?> target = async ? asyncInjectionTargets.get(bean.getBeanClass()) : null;
+
+			if (target != null) {
+				ExecutorService executor = getAsyncExecutor(
+					(session != null) ? session.getServletContext() : request.getServletContext());
+				instantiateAsync(bean, target, executor, (session != null)
+					? PendingEagerBeans.getOrCreate(session, executor)
+					: PendingEagerBeans.getOrCreate(request, executor));
+			}
+			else {
+				instantiateBean(bean);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> void instantiateAsync(Bean<T> bean, EagerBeansInjectionTarget<?> target, ExecutorService executor,
+		PendingEagerBeans pendingBeans)
+	{
+		final EagerBeansInjectionTarget<T> typedTarget = (EagerBeansInjectionTarget<T>) target;
+		final CreationalContext<T> context = beanManager.createCreationalContext(bean);
+		final AtomicBoolean started = new AtomicBoolean();
+		Future<T> future;
+
+		try {
+			future = executor.submit(new Callable<T>() {
+
+				@Override
+				public T call() {
+					return started.compareAndSet(false, true) ? typedTarget.create(context) : null; // Else cancelled.
+				}
+
+			});
+		}
+		catch (RejectedExecutionException e) { // Too many beans waiting for a thread, or application is shutting down.
+			instantiateBean(bean);
+			return;
+		}
+
+		pendingBeans.put(bean, typedTarget, context, future, started);
+	}
+
+	private void instantiateBean(Bean<?> bean) {
+		beanManager.getReference(bean, bean.getBeanClass(), beanManager.createCreationalContext(bean)).toString();
+	}
+
+	private void instantiateApplicationScopedBean(Bean<?> bean) {
+		long start = System.nanoTime();
+		instantiateBean(bean);
+
+		if (logger.isLoggable(FINE)) {
+			logger.fine(format(LOG_BEAN_INSTANTIATED, bean.getBeanClass().getName(),
+				NANOSECONDS.toMillis(System.nanoTime() - start)));
+		}
+	}
+
+	/**
+	 * Instantiate every eager application scoped bean as soon as all beans it depends on have been instantiated. The
+	 * beans are already sorted by their dependencies, so the dependencies of a bean always precede it.
+	 */
+	private void instantiateApplicationScopedBeansConcurrently(int threads) {
+		Map<Bean<?>, Integer> pendingDependencies = new HashMap<>();
+		Map<Bean<?>, List<Bean<?>>> dependents = new HashMap<>();
+
+		for (Bean<?> bean : applicationScopedBeans) {
+			List<Bean<?>> dependencies = getApplicationScopedBeanDependencies(bean);
+			pendingDependencies.put(bean, dependencies.size());
+
+			for (Bean<?> dependency : dependencies) {
+				List<Bean<?>> beans = dependents.get(dependency);
+
+				if (beans == null) {
+					beans = new ArrayList<>();
+					dependents.put(dependency, beans);
+				}
+
+				beans.add(bean);
+			}
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads,
+			new EagerThreadFactory("OmniFaces-Eager-", Thread.currentThread().getContextClassLoader()));
+		CompletionService<Bean<?>> completionService = new ExecutorCompletionService<>(executor);
+		int running = 0;
+
+		try {
+			for (Bean<?> bean : applicationScopedBeans) {
+				if (pendingDependencies.get(bean) == 0) {
+					completionService.submit(new Instantiation(bean));
+					running++;
+				}
+			}
+
+			while (running > 0) {
+				Bean<?> instantiatedBean = completionService.take().get();
+				running--;
+				List<Bean<?>> beans = dependents.get(instantiatedBean);
+
+				if (beans != null) {
+					for (Bean<?> bean : beans) {
+						int pending = pendingDependencies.get(bean) - 1;
+						pendingDependencies.put(bean, pending);
+
+						if (pending == 0) {
+							completionService.submit(new Instantiation(bean));
+							running++;
+						}
+					}
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(ERROR_INTERRUPTED, e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+
+			throw new IllegalStateException(cause);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private ExecutorService getAsyncExecutor(ServletContext servletContext) {
+		if (asyncExecutor == null) {
+			synchronized (this) {
+				if (asyncExecutor == null) {
+					int threads = getThreads(servletContext, PARAM_NAME_ASYNC_THREADS,
+						Runtime.getRuntime().availableProcessors());
+					ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+					threads = Math.max(1, threads);
+					asyncExecutor = new ThreadPoolExecutor(threads, threads, 0, MILLISECONDS,
+						new ArrayBlockingQueue<Runnable>(threads * ASYNC_QUEUE_SIZE_PER_THREAD),
+						new EagerThreadFactory("OmniFaces-Eager-Async-", classLoader));
+				}
+			}
+		}
+
+		return asyncExecutor;
+	}
+
+	private List<Bean<?>> getApplicationScopedBeanDependencies(Bean<?> bean) {
+		List<Bean<?>> dependencies = (applicationScopedBeanDependencies != null)
+			? applicationScopedBeanDependencies.get(bean) : null;
+		return (dependencies != null) ? dependencies : Collections.<Bean<?>>emptyList();
+	}
+
+	private static int getThreads(ServletContext servletContext, String name, int defaultValue) {
+		String value = servletContext.getInitParameter(name);
+
+		if (value == null) {
+			return defaultValue;
+		}
+
+		try {
+			return Integer.valueOf(value.trim());
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException(format(ERROR_THREADS, name, value), e);
+		}
+	}
+
+	// Getters/setters ------------------------------------------------------------------------------------------------
+
 	public void setApplicationScopedBeans(List<Bean<?>> applicationScopedBeans) {
 		this.applicationScopedBeans = applicationScopedBeans;
 	}
@@ -89,12 +403,63 @@ public class EagerBeansRepository {
 		this.sessionScopedBeans = sessionScopedBeans;
 	}
 
-	public void setRequestScopedBeansViewId(Map<String, List<Bean<?>>> requestScopedBeansViewId) {
+	public void setRequestScopedBeansViewId(PathPatternTrie<Bean<?>> requestScopedBeansViewId) {
 		this.requestScopedBeansViewId = requestScopedBeansViewId;
 	}
 
-	public void setRequestScopedBeansRequestURI(Map<String, List<Bean<?>>> requestScopedBeansRequestURI) {
+	public void setRequestScopedBeansRequestURI(PathPatternTrie<Bean<?>> requestScopedBeansRequestURI) {
 		this.requestScopedBeansRequestURI = requestScopedBeansRequestURI;
 	}
 
+	public void setApplicationScopedBeanDependencies(Map<Bean<?>, List<Bean<?>>> applicationScopedBeanDependencies) {
+		this.applicationScopedBeanDependencies = applicationScopedBeanDependencies;
+	}
+
+	public void setAsyncInjectionTargets(Map<Class<?>, EagerBeansInjectionTarget<?>> asyncInjectionTargets) {
+		this.asyncInjectionTargets = asyncInjectionTargets;
+	}
+
+	// Nested classes -------------------------------------------------------------------------------------------------
+
+	/**
+	 * Instantiates the given eager application scoped bean and returns the bean.
+	 */
+	private final class Instantiation implements Callable<Bean<?>> {
+
+		private final Bean<?> bean;
+
+		public Instantiation(Bean<?> bean) {
+			this.bean = bean;
+		}
+
+		@Override
+		public Bean<?> call() {
+			instantiateApplicationScopedBean(bean);
+			return bean;
+		}
+	}
+
+	/**
+	 * Creates daemon threads with the context class loader of the web application.
+	 */
+	private static final class EagerThreadFactory implements ThreadFactory {
+
+		private final String name;
+		private final ClassLoader classLoader;
+		private final AtomicInteger count = new AtomicInteger();
+
+		public EagerThreadFactory(String name, ClassLoader classLoader) {
+			this.name = name;
+			this.classLoader = classLoader;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, name + count.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setContextClassLoader(classLoader);
+			return thread;
+		}
+	}
+
 }
\ No newline at end of file
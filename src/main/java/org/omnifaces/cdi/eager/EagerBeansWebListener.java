@@ -65,7 +65,7 @@ public class EagerBeansWebListener implements HttpSessionListener, ServletReques
 	@Override
 	public void sessionCreated(HttpSessionEvent event) {
 		if (!disabled) {
-			eagerBeansRepository.instantiateSessionScoped();
+			eagerBeansRepository.instantiateSessionScoped(event.getSession());
 		}
 		else {
 			// Record a "session created" marker manually. HttpSession#isNew() not entirely accurate for our purpose.
@@ -76,10 +76,11 @@ public class EagerBeansWebListener implements HttpSessionListener, ServletReques
 	@Override
 	public void requestInitialized(ServletRequestEvent event) {
 		if (!disabled) {
-			String uri = getRequestRelativeURIWithoutPathParameters((HttpServletRequest) event.getServletRequest());
+			HttpServletRequest request = (HttpServletRequest) event.getServletRequest();
+			String uri = getRequestRelativeURIWithoutPathParameters(request);
 
 			try {
-				eagerBeansRepository.instantiateByRequestURI(uri);
+				eagerBeansRepository.instantiateByRequestURI(request, uri);
 			}
 			catch (Exception e) {
 				logger.log(SEVERE, format(POSSIBLY_REQUEST_SCOPE_NOT_ACTIVE, uri), e);
@@ -89,7 +90,7 @@ public class EagerBeansWebListener implements HttpSessionListener, ServletReques
 
 	@Override
 	public void requestDestroyed(ServletRequestEvent event) {
-		// NOOP.
+		PendingEagerBeans.destroy((HttpServletRequest) event.getServletRequest());
 	}
 
 	@Override
@@ -24,8 +24,11 @@ import static org.omnifaces.util.Utils.isEmpty;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -34,10 +37,12 @@ import javax.enterprise.context.SessionScoped;
 import javax.enterprise.event.Observes;
 import javax.enterprise.inject.spi.AfterDeploymentValidation;
 import javax.enterprise.inject.spi.Annotated;
+import javax.enterprise.inject.spi.AnnotatedType;
 import javax.enterprise.inject.spi.Bean;
 import javax.enterprise.inject.spi.BeanManager;
 import javax.enterprise.inject.spi.Extension;
 import javax.enterprise.inject.spi.ProcessBean;
+import javax.enterprise.inject.spi.ProcessInjectionTarget;
 
 import org.omnifaces.cdi.Eager;
 import org.omnifaces.cdi.ViewScoped;
@@ -64,16 +69,26 @@ public class EagerExtension implements Extension {
 		"Bean %s with scope %s was annotated with @Eager, but required attribute 'viewId' is missing."
 			+ " Bean will not be eagerly instantiated.";
 
+	private static final String INVALID_PATTERN =
+		"Bean %s was annotated with @Eager, but attribute 'requestURI' or 'viewId' is invalid: %s"
+			+ " Bean will not be eagerly instantiated.";
+
 	private static final String ERROR_EAGER_UNAVAILABLE =
 		"@Eager is unavailable. The EagerBeansRepository could not be obtained from CDI bean manager.";
 
+	private static final String ERROR_CIRCULAR_DEPENDENCY =
+		"Bean %s with scope %s was annotated with @Eager, but its attribute 'after' results in a circular dependency.";
+
 	// Variables ------------------------------------------------------------------------------------------------------
 
 	private List<Bean<?>> applicationScopedBeans = new ArrayList<>();
+	private Map<Bean<?>, Class<?>[]> applicationScopedBeansAfter = new HashMap<>();
 	private List<Bean<?>> sessionScopedBeans = new ArrayList<>();
 
-	private Map<String, List<Bean<?>>> requestScopedBeansViewId = new HashMap<>();
-	private Map<String, List<Bean<?>>> requestScopedBeansRequestURI = new HashMap<>();
+	private PathPatternTrie<Bean<?>> requestScopedBeansViewId = new PathPatternTrie<>();
+	private PathPatternTrie<Bean<?>> requestScopedBeansRequestURI = new PathPatternTrie<>();
+
+	private Map<Class<?>, EagerBeansInjectionTarget<?>> asyncInjectionTargets = new HashMap<>();
 
 	// Methods --------------------------------------------------------------------------------------------------------
 
@@ -88,20 +103,24 @@ public class EagerExtension implements Extension {
 
 			if (getAnnotation(beanManager, annotated, ApplicationScoped.class) != null) {
 				applicationScopedBeans.add(bean);
+
+				if (eager.after().length > 0) {
+					applicationScopedBeansAfter.put(bean, eager.after());
+				}
 			} else if (getAnnotation(beanManager, annotated, SessionScoped.class) != null) {
 				sessionScopedBeans.add(bean);
 			} else if (getAnnotation(beanManager, annotated, RequestScoped.class) != null) {
 
 				if (!isEmpty(eager.requestURI())) {
-					getRequestScopedBeansByRequestURI(eager.requestURI()).add(bean);
+					addPattern(requestScopedBeansRequestURI, eager.requestURI(), bean);
 				} else if (!isEmpty(eager.viewId())) {
-					getRequestScopedBeansByViewId(eager.viewId()).add(bean);
+					addPattern(requestScopedBeansViewId, eager.viewId(), bean);
 				} else {
 					logger.severe(format(MISSING_REQUEST_URI_OR_VIEW_ID, bean.getBeanClass().getName(), RequestScoped.class.getName()));
 				}
 			} else if (getAnnotation(beanManager, annotated, ViewScoped.class) != null) {
 				if (!isEmpty(eager.viewId())) {
-					getRequestScopedBeansByViewId(eager.viewId()).add(bean);
+					addPattern(requestScopedBeansViewId, eager.viewId(), bean);
 				} else {
 					logger.severe(format(MISSING_VIEW_ID, bean.getBeanClass().getName(), ViewScoped.class.getName()));
 				}
@@ -109,7 +128,24 @@ public class EagerExtension implements Extension {
 		}
 	}
 
-	public void load(@SuppressWarnings("unused") @Observes AfterDeploymentValidation event, BeanManager beanManager) {
+	public <T> void wrapAsync(@Observes ProcessInjectionTarget<T> event, BeanManager beanManager) {
+
+		AnnotatedType<T> type = event.getAnnotatedType();
+		Eager eager = getAnnotation(beanManager, type, Eager.class);
+
+		if (eager != null && eager.async()) {
+			boolean sessionScoped = getAnnotation(beanManager, type, SessionScoped.class) != null;
+
+			if (sessionScoped || getAnnotation(beanManager, type, RequestScoped.class) != null) {
+				EagerBeansInjectionTarget<T> target = new EagerBeansInjectionTarget<>(
+					event.getInjectionTarget(), type.getJavaClass(), sessionScoped, beanManager);
+				event.setInjectionTarget(target);
+				asyncInjectionTargets.put(type.getJavaClass(), target);
+			}
+		}
+	}
+
+	public void load(@Observes AfterDeploymentValidation event, BeanManager beanManager) {
 
 		EagerBeansRepository eagerBeansRepository = getReference(beanManager, EagerBeansRepository.class);
 
@@ -119,7 +155,19 @@ public class EagerExtension implements Extension {
 		}
 
 		if (!applicationScopedBeans.isEmpty()) {
-			eagerBeansRepository.setApplicationScopedBeans(unmodifiableList(applicationScopedBeans));
+			Map<Bean<?>, List<Bean<?>>> dependencies = getApplicationScopedBeanDependencies();
+			Set<Bean<?>> sortedBeans = new LinkedHashSet<>();
+
+			for (Bean<?> bean : applicationScopedBeans) {
+				if (!sort(bean, dependencies, sortedBeans, new HashSet<Bean<?>>())) {
+					event.addDeploymentProblem(new IllegalStateException(format(ERROR_CIRCULAR_DEPENDENCY,
+						bean.getBeanClass().getName(), ApplicationScoped.class.getName())));
+					return;
+				}
+			}
+
+			eagerBeansRepository.setApplicationScopedBeans(unmodifiableList(new ArrayList<>(sortedBeans)));
+			eagerBeansRepository.setApplicationScopedBeanDependencies(unmodifiableMap(dependencies));
 		}
 
 		if (!sessionScopedBeans.isEmpty()) {
@@ -127,32 +175,79 @@ public class EagerExtension implements Extension {
 		}
 
 		if (!requestScopedBeansRequestURI.isEmpty()) {
-			eagerBeansRepository.setRequestScopedBeansRequestURI(unmodifiableMap(requestScopedBeansRequestURI));
+			eagerBeansRepository.setRequestScopedBeansRequestURI(requestScopedBeansRequestURI);
 		}
 
 		if (!requestScopedBeansViewId.isEmpty()) {
-			eagerBeansRepository.setRequestScopedBeansViewId(unmodifiableMap(requestScopedBeansViewId));
+			eagerBeansRepository.setRequestScopedBeansViewId(requestScopedBeansViewId);
+		}
+
+		if (!asyncInjectionTargets.isEmpty()) {
+			eagerBeansRepository.setAsyncInjectionTargets(unmodifiableMap(asyncInjectionTargets));
 		}
 	}
 
-	private List<Bean<?>> getRequestScopedBeansByViewId(String viewId) {
-		List<Bean<?>> beans = requestScopedBeansViewId.get(viewId);
-		if (beans == null) {
-			beans = new ArrayList<>();
-			requestScopedBeansViewId.put(viewId, beans);
+	/**
+	 * Resolve the bean classes of {@link Eager#after()} to the eager application scoped beans they represent.
+	 */
+	private Map<Bean<?>, List<Bean<?>>> getApplicationScopedBeanDependencies() {
+		Map<Bean<?>, List<Bean<?>>> dependencies = new HashMap<>();
+
+		for (Map.Entry<Bean<?>, Class<?>[]> entry : applicationScopedBeansAfter.entrySet()) {
+			List<Bean<?>> beans = new ArrayList<>();
+
+			for (Class<?> type : entry.getValue()) {
+				for (Bean<?> bean : applicationScopedBeans) {
+					if (bean != entry.getKey() && type.isAssignableFrom(bean.getBeanClass())) {
+						beans.add(bean);
+					}
+				}
+			}
+
+			if (!beans.isEmpty()) {
+				dependencies.put(entry.getKey(), unmodifiableList(beans));
+			}
 		}
 
-		return beans;
+		return dependencies;
 	}
 
-	private List<Bean<?>> getRequestScopedBeansByRequestURI(String requestURI) {
-		List<Bean<?>> beans = requestScopedBeansRequestURI.get(requestURI);
-		if (beans == null) {
-			beans = new ArrayList<>();
-			requestScopedBeansRequestURI.put(requestURI, beans);
+	/**
+	 * Add the given bean to the given sorted beans, after its dependencies. Returns false on a circular dependency.
+	 */
+	private static boolean sort(Bean<?> bean, Map<Bean<?>, List<Bean<?>>> dependencies, Set<Bean<?>> sortedBeans,
+		Set<Bean<?>> visitingBeans)
+	{
+		if (sortedBeans.contains(bean)) {
+			return true;
+		}
+
+		if (!visitingBeans.add(bean)) {
+			return false;
 		}
 
-		return beans;
+		List<Bean<?>> beans = dependencies.get(bean);
+
+		if (beans != null) {
+			for (Bean<?> dependency : beans) {
+				if (!sort(dependency, dependencies, sortedBeans, visitingBeans)) {
+					return false;
+				}
+			}
+		}
+
+		visitingBeans.remove(bean);
+		sortedBeans.add(bean);
+		return true;
+	}
+
+	private static void addPattern(PathPatternTrie<Bean<?>> beans, String pattern, Bean<?> bean) {
+		try {
+			beans.add(pattern, bean);
+		}
+		catch (IllegalArgumentException e) {
+			logger.severe(format(INVALID_PATTERN, bean.getBeanClass().getName(), e.getMessage()));
+		}
 	}
 
 }
\ No newline at end of file
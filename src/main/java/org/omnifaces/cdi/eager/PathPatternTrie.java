@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.cdi.eager;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.omnifaces.cdi.Eager;
+
+/**
+ * Path patterns as used by {@link Eager#requestURI()} and {@link Eager#viewId()}, compiled into a trie of path
+ * segments, so that finding the values of all patterns matching a path takes time proportional to the length of the
+ * path, regardless of the amount of patterns. The patterns are matched segment by segment, whereby a segment of
+ * <code>*</code> matches exactly one non-empty segment and a last segment of <code>**</code> matches zero or more
+ * segments. Patterns without wildcards are matched by a plain map lookup.
+ * <p>
+ * This is not thread safe during {@link #add(String, Object)}. It is supposed to be filled during deployment and only
+ * be matched afterwards.
+ *
+ * @param <V> The generic value type.
+ * @author agent
+ * @see EagerExtension
+ * @since 2.1
+ */
+public final class PathPatternTrie<V> {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	private static final char SEPARATOR = '/';
+	private static final String WILDCARD = "*";
+	private static final String ANY_DEPTH_WILDCARD = "**";
+
+	private static final String ERROR_ANY_DEPTH_WILDCARD =
+		"The '**' wildcard is only allowed as last segment. Encountered an invalid pattern of '%s'.";
+	private static final String ERROR_PARTIAL_WILDCARD =
+		"The '*' wildcard is only allowed as whole segment. Encountered an invalid pattern of '%s'.";
+
+	// Variables ------------------------------------------------------------------------------------------------------
+
+	private final Map<String, List<V>> exactValues = new HashMap<>();
+	private final Node<V> root = new Node<>();
+	private boolean wildcards;
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Add the given value for the given pattern.
+	 * @param pattern The path pattern.
+	 * @param value The value to be returned by {@link #match(String)} when the pattern matches.
+	 * @throws IllegalArgumentException When the pattern contains a wildcard at an invalid position.
+	 */
+	public void add(String pattern, V value) {
+		if (!pattern.contains(WILDCARD)) {
+			List<V> values = exactValues.get(pattern);
+
+			if (values == null) {
+				values = new ArrayList<>(1);
+				exactValues.put(pattern, values);
+			}
+
+			values.add(value);
+			return;
+		}
+
+		String[] segments = pattern.split(String.valueOf(SEPARATOR), -1);
+		Node<V> node = root;
+
+		for (int i = 0; i < segments.length; i++) {
+			String segment = segments[i];
+
+			if (segment.equals(ANY_DEPTH_WILDCARD)) {
+				if (i < segments.length - 1) {
+					throw new IllegalArgumentException(String.format(ERROR_ANY_DEPTH_WILDCARD, pattern));
+				}
+
+				node.anyDepthValues = add(node.anyDepthValues, value);
+				wildcards = true;
+				return;
+			}
+			else if (segment.equals(WILDCARD)) {
+				if (node.wildcard == null) {
+					node.wildcard = new Node<>();
+				}
+
+				node = node.wildcard;
+			}
+			else if (segment.contains(WILDCARD)) {
+				throw new IllegalArgumentException(String.format(ERROR_PARTIAL_WILDCARD, pattern));
+			}
+			else {
+				node = node.child(segment);
+			}
+		}
+
+		node.values = add(node.values, value);
+		wildcards = true;
+	}
+
+	/**
+	 * Returns the values of all patterns matching the given path.
+	 * @param path The path, e.g. a request URI or view ID.
+	 * @return The values of all patterns matching the given path, in no particular order between patterns.
+	 */
+	public List<V> match(String path) {
+		List<V> values = exactValues.get(path);
+
+		if (!wildcards) {
+			return (values != null) ? unmodifiableList(values) : Collections.<V>emptyList();
+		}
+
+		List<V> matches = (values != null) ? new ArrayList<>(values) : null;
+		List<Node<V>> nodes = singletonList(root);
+		int start = 0;
+
+		while (true) {
+			int end = path.indexOf(SEPARATOR, start);
+			String segment = (end < 0) ? path.substring(start) : path.substring(start, end);
+			List<Node<V>> nextNodes = new ArrayList<>(2);
+
+			for (Node<V> node : nodes) {
+				matches = addAll(matches, node.anyDepthValues);
+				Node<V> child = (node.children != null) ? node.children.get(segment) : null;
+
+				if (child != null) {
+					nextNodes.add(child);
+				}
+
+				if (node.wildcard != null && !segment.isEmpty()) {
+					nextNodes.add(node.wildcard);
+				}
+			}
+
+			if (nextNodes.isEmpty()) {
+				return (matches != null) ? matches : Collections.<V>emptyList();
+			}
+
+			nodes = nextNodes;
+
+			if (end < 0) {
+				break;
+			}
+
+			start = end + 1;
+		}
+
+		for (Node<V> node : nodes) {
+			matches = addAll(matches, node.anyDepthValues);
+			matches = addAll(matches, node.values);
+		}
+
+		return (matches != null) ? matches : Collections.<V>emptyList();
+	}
+
+	/**
+	 * Returns whether no pattern has been added.
+	 * @return Whether no pattern has been added.
+	 */
+	public boolean isEmpty() {
+		return exactValues.isEmpty() && !wildcards;
+	}
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	private static <V> List<V> add(List<V> list, V value) {
+		List<V> newList = (list != null) ? list : new ArrayList<V>(1);
+		newList.add(value);
+		return newList;
+	}
+
+	private static <V> List<V> addAll(List<V> list, List<V> values) {
+		if (values == null) {
+			return list;
+		}
+
+		List<V> newList = (list != null) ? list : new ArrayList<V>(values.size());
+		newList.addAll(values);
+		return newList;
+	}
+
+	// Nested classes -------------------------------------------------------------------------------------------------
+
+	/**
+	 * A path segment in the trie.
+	 */
+	private static final class Node<V> {
+
+		private Map<String, Node<V>> children;
+		private Node<V> wildcard;
+		private List<V> values;
+		private List<V> anyDepthValues;
+
+		public Node<V> child(String segment) {
+			if (children == null) {
+				children = new HashMap<>();
+			}
+
+			Node<V> child = children.get(segment);
+
+			if (child == null) {
+				child = new Node<>();
+				children.put(segment, child);
+			}
+
+			return child;
+		}
+	}
+
+}
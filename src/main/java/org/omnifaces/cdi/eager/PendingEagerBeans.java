@@ -0,0 +1,283 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.cdi.eager;
+
+import static java.lang.String.format;
+import static java.util.logging.Level.SEVERE;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.spi.Bean;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+
+import org.omnifaces.cdi.Eager;
+
+/**
+ * The {@link Eager#async()} bean instances which are being created in background for a request or session and haven't
+ * been claimed by its CDI scope yet. This is stored as request or session attribute. The instances which are still
+ * unclaimed at the end of the request or session are destroyed in background once they are ready.
+ * <p>
+ * This is not replicated along with the session; an instance which is still pending during a fail over is simply
+ * created again by the CDI session scope on the other node.
+ *
+ * @author agent
+ * @see EagerBeansInjectionTarget
+ * @since 2.1
+ */
+class PendingEagerBeans implements Serializable, HttpSessionBindingListener {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	private static final long serialVersionUID = 42L;
+	private static final String NAME = PendingEagerBeans.class.getName();
+	private static final Logger logger = Logger.getLogger(PendingEagerBeans.class.getName());
+
+	private static final String ERROR_ASYNC_INSTANCE =
+		"Eager bean %s could not be asynchronously instantiated or destroyed.";
+
+	// Variables ------------------------------------------------------------------------------------------------------
+
+	private transient ConcurrentMap<Class<?>, Instance<?>> instances = new ConcurrentHashMap<>();
+	private transient Executor executor;
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	private PendingEagerBeans(Executor executor) {
+		this.executor = executor;
+	}
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Add the given instance which is being created in background. The given flag must be set by the background task
+	 * when it starts creating the instance, so that it can be cancelled as long as it hasn't started yet.
+	 */
+	<T> void put(Bean<T> bean, EagerBeansInjectionTarget<T> target, CreationalContext<T> context, Future<T> future,
+		AtomicBoolean started)
+	{
+		target.updatePendingCount(1);
+		Instance<T> instance = new Instance<>(bean, target, context, future, started);
+		Instance<?> previous = instances.put(bean.getBeanClass(), instance);
+
+		if (previous != null) {
+			previous.target.updatePendingCount(-1);
+			destroy(previous);
+		}
+	}
+
+	/**
+	 * Remove and return the pending instance of the given bean class, if any.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> Instance<T> claim(Class<T> beanClass) {
+		Instance<T> instance = (instances != null) ? (Instance<T>) instances.remove(beanClass) : null;
+
+		if (instance != null) {
+			instance.target.updatePendingCount(-1);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Destroy all unclaimed instances in background once they are ready.
+	 */
+	void destroy() {
+		if (instances != null) {
+			for (Class<?> beanClass : instances.keySet()) {
+				Instance<?> instance = claim(beanClass);
+
+				if (instance != null) {
+					destroy(instance);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void valueBound(HttpSessionBindingEvent event) {
+		// NOOP.
+	}
+
+	@Override
+	public void valueUnbound(HttpSessionBindingEvent event) {
+		destroy();
+	}
+
+	// Utility --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the pending eager beans of the given request, or <code>null</code> if there are none.
+	 */
+	static PendingEagerBeans get(HttpServletRequest request) {
+		return (request != null) ? (PendingEagerBeans) request.getAttribute(NAME) : null;
+	}
+
+	/**
+	 * Returns the pending eager beans of the given session, or <code>null</code> if there are none.
+	 */
+	static PendingEagerBeans get(HttpSession session) {
+		return (session != null) ? (PendingEagerBeans) session.getAttribute(NAME) : null;
+	}
+
+	/**
+	 * Returns the pending eager beans of the given request, creating them if necessary.
+	 */
+	static PendingEagerBeans getOrCreate(HttpServletRequest request, Executor executor) {
+		PendingEagerBeans pendingBeans = get(request);
+
+		if (pendingBeans == null) {
+			pendingBeans = new PendingEagerBeans(executor);
+			request.setAttribute(NAME, pendingBeans);
+		}
+
+		return pendingBeans;
+	}
+
+	/**
+	 * Returns the pending eager beans of the given session, creating them if necessary.
+	 */
+	static PendingEagerBeans getOrCreate(HttpSession session, Executor executor) {
+		PendingEagerBeans pendingBeans = get(session);
+
+		if (pendingBeans == null || pendingBeans.instances == null) { // Null instances means it was deserialized.
+			pendingBeans = new PendingEagerBeans(executor);
+			session.setAttribute(NAME, pendingBeans);
+		}
+
+		return pendingBeans;
+	}
+
+	/**
+	 * Destroy the unclaimed instances of the given request, if any. This must be invoked at the end of the request.
+	 */
+	static void destroy(HttpServletRequest request) {
+		PendingEagerBeans pendingBeans = get(request);
+
+		if (pendingBeans != null) {
+			request.removeAttribute(NAME);
+			pendingBeans.destroy();
+		}
+	}
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	private void destroy(final Instance<?> instance) {
+		if (instance.cancel()) {
+			return; // Wasn't created yet, so there's nothing to destroy.
+		}
+
+		Runnable destroyer = new Runnable() {
+
+			@Override
+			public void run() {
+				instance.destroy();
+			}
+
+		};
+
+		try {
+			executor.execute(destroyer);
+		}
+		catch (RejectedExecutionException e) { // Application is shutting down.
+			destroyer.run();
+		}
+	}
+
+	// Nested classes -------------------------------------------------------------------------------------------------
+
+	/**
+	 * An instance which is being created in background.
+	 */
+	static final class Instance<T> {
+
+		private final Bean<T> bean;
+		private final EagerBeansInjectionTarget<T> target;
+		private final CreationalContext<T> context;
+		private final Future<T> future;
+		private final AtomicBoolean started;
+
+		public Instance(Bean<T> bean, EagerBeansInjectionTarget<T> target, CreationalContext<T> context,
+			Future<T> future, AtomicBoolean started)
+		{
+			this.bean = bean;
+			this.target = target;
+			this.context = context;
+			this.future = future;
+			this.started = started;
+		}
+
+		/**
+		 * Cancels the creation of the instance if it hasn't started yet, and returns whether it has been cancelled.
+		 */
+		public boolean cancel() {
+			if (started.compareAndSet(false, true)) {
+				future.cancel(false);
+				return true;
+			}
+
+			return false;
+		}
+
+		/**
+		 * Returns the instance, waiting for it if it isn't ready yet. If its creation failed, the exception is thrown.
+		 */
+		public T get() {
+			try {
+				return future.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+			catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+
+				throw new IllegalStateException(cause);
+			}
+		}
+
+		public CreationalContext<T> getContext() {
+			return context;
+		}
+
+		private void destroy() {
+			try {
+				bean.destroy(get(), context);
+			}
+			catch (RuntimeException e) {
+				logger.log(SEVERE, format(ERROR_ASYNC_INSTANCE, bean.getBeanClass().getName()), e);
+			}
+		}
+	}
+
+}
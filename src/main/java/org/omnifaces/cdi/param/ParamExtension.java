@@ -34,6 +34,9 @@ import org.omnifaces.cdi.Param;
  * This extension collects the target types of each injection point qualified with
  * the {@link Param} annotation and dynamically registers Beans that effectively
  * represents producers for each type.
+ * <p>
+ * Additionally, it compiles the metadata of each such injection point once, so that
+ * {@link RequestParameterProducer} doesn't need to resolve it again on every injection.
  *
  * @since 2.0
  * @author Arjan Tijms
@@ -44,8 +47,12 @@ public class ParamExtension implements Extension {
 
 	public <T> void collect(@Observes ProcessManagedBean<T> event) {
 		for (AnnotatedField<? super T> field : event.getAnnotatedBeanClass().getFields()) {
-			if (field.isAnnotationPresent(Param.class) && field.getBaseType() instanceof Class) {
-				types.add(field.getBaseType());
+			if (field.isAnnotationPresent(Param.class)) {
+				ParamMetadata.compile(field);
+
+				if (field.getBaseType() instanceof Class) {
+					types.add(field.getBaseType());
+				}
 			}
 		}
 	}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.cdi.param;
+
+import static java.util.Collections.unmodifiableMap;
+import static org.omnifaces.util.Faces.evaluateExpressionGet;
+import static org.omnifaces.util.Utils.isEmpty;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Member;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.enterprise.inject.spi.AnnotatedField;
+import javax.enterprise.inject.spi.InjectionPoint;
+
+import org.omnifaces.cdi.Param;
+
+/**
+ * The immutable metadata of a {@link Param} injection point, compiled once by {@link ParamExtension} during deployment,
+ * so that {@link RequestParameterProducer} only has to do the request dependent work on every injection. Attributes
+ * which are not EL expressions are resolved beforehand and attributes which are EL expressions are evaluated on every
+ * injection. Converters and validators are still created on every injection, because they are not necessarily thread
+ * safe.
+ *
+ * @author agent
+ * @see ParamExtension
+ * @see RequestParameterProducer
+ * @since 2.1
+ */
+final class ParamMetadata {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	private static final ConcurrentMap<Member, ParamMetadata> METADATA = new ConcurrentHashMap<>();
+
+	// Variables ------------------------------------------------------------------------------------------------------
+
+	private final Param param;
+	private final Class<?> targetType;
+	private final boolean wrapped;
+	private final String memberName;
+	private final Value name;
+	private final Value label;
+	private final Value converterMessage;
+	private final Value validatorMessage;
+	private final Value requiredMessage;
+	private final Attributes converterAttributes;
+	private final Attributes validatorAttributes;
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	private ParamMetadata(Param param, Type type, String memberName) {
+		this.param = param;
+		targetType = getTargetType(type);
+		wrapped = type instanceof ParameterizedType && ((ParameterizedType) type).getRawType().equals(ParamValue.class);
+		this.memberName = memberName;
+		name = isEmpty(param.name()) ? new Value(memberName) : new Value(param.name());
+		label = isEmpty(param.label()) ? name : new Value(param.label());
+		converterMessage = new Value(param.converterMessage());
+		validatorMessage = new Value(param.validatorMessage());
+		requiredMessage = new Value(param.requiredMessage());
+		converterAttributes = new Attributes(param.converterAttributes());
+		validatorAttributes = new Attributes(param.validatorAttributes());
+	}
+
+	// Utility --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Compile the metadata of the given {@link Param} annotated field. This is invoked by {@link ParamExtension}.
+	 */
+	static void compile(AnnotatedField<?> field) {
+		Member member = field.getJavaMember();
+		Param param = field.getAnnotation(Param.class);
+		METADATA.put(member, new ParamMetadata(param, field.getBaseType(), member.getName()));
+	}
+
+	/**
+	 * Returns the metadata of the given {@link Param} injection point. If the injection point is a field which is not
+	 * compiled during deployment, then it will be compiled and cached now. Other injection points, such as parameters,
+	 * are compiled on every call, as they can't be identified by their member alone.
+	 */
+	static ParamMetadata of(InjectionPoint injectionPoint) {
+		Member member = injectionPoint.getMember();
+		ParamMetadata metadata = METADATA.get(member);
+
+		if (metadata == null) {
+			metadata = new ParamMetadata(getQualifier(injectionPoint, Param.class), injectionPoint.getType(),
+				member.getName());
+
+			if (injectionPoint.getAnnotated() instanceof AnnotatedField) {
+				METADATA.putIfAbsent(member, metadata);
+			}
+		}
+
+		return metadata;
+	}
+
+	// Getters --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the {@link Param} annotation.
+	 */
+	public Param getParam() {
+		return param;
+	}
+
+	/**
+	 * Returns the type to convert the request parameter to.
+	 */
+	public Class<?> getTargetType() {
+		return targetType;
+	}
+
+	/**
+	 * Returns whether the injection point is of type {@link ParamValue}.
+	 */
+	public boolean isWrapped() {
+		return wrapped;
+	}
+
+	/**
+	 * Returns the name of the injection point member, which is also the property name for bean validation.
+	 */
+	public String getMemberName() {
+		return memberName;
+	}
+
+	/**
+	 * Returns the request parameter name.
+	 */
+	public String getName() {
+		return name.get();
+	}
+
+	/**
+	 * Returns the label, which defaults to the request parameter name.
+	 */
+	public String getLabel() {
+		return label.get();
+	}
+
+	public String getConverterMessage() {
+		return converterMessage.get();
+	}
+
+	public String getValidatorMessage() {
+		return validatorMessage.get();
+	}
+
+	public String getRequiredMessage() {
+		return requiredMessage.get();
+	}
+
+	/**
+	 * Returns the converter attributes. This is an empty map when there are none.
+	 */
+	public Map<String, Object> getConverterAttributes() {
+		return converterAttributes.get();
+	}
+
+	/**
+	 * Returns the validator attributes. This is an empty map when there are none.
+	 */
+	public Map<String, Object> getValidatorAttributes() {
+		return validatorAttributes.get();
+	}
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	private static Class<?> getTargetType(Type type) {
+		if (type instanceof ParameterizedType) {
+			// Assumes ParamValue now. Needs to be adjusted later.
+			return (Class<?>) ((ParameterizedType) type).getActualTypeArguments()[0];
+		}
+		else if (type instanceof Class) {
+			// Direct injection into class type using dynamic producer
+			return (Class<?>) type;
+		}
+
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T getQualifier(InjectionPoint injectionPoint, Class<T> annotationClass) {
+		for (Annotation annotation : injectionPoint.getQualifiers()) {
+			if (annotationClass.isAssignableFrom(annotation.getClass())) {
+				return (T) annotation;
+			}
+		}
+
+		return null;
+	}
+
+	private static boolean isExpression(String value) {
+		return value.contains("#{") || value.contains("${");
+	}
+
+	// Nested classes -------------------------------------------------------------------------------------------------
+
+	/**
+	 * A string attribute which is either a literal or an EL expression.
+	 */
+	private static final class Value {
+
+		private final String value;
+		private final boolean expression;
+
+		public Value(String value) {
+			this.value = value;
+			expression = !isEmpty(value) && isExpression(value);
+		}
+
+		public String get() {
+			if (!expression) {
+				return value;
+			}
+
+			Object expressionResult = evaluateExpressionGet(value);
+			return (expressionResult != null) ? expressionResult.toString() : null;
+		}
+	}
+
+	/**
+	 * The converter or validator attributes. When none of them is an EL expression, the map is created only once.
+	 */
+	private static final class Attributes {
+
+		private final Attribute[] attributes;
+		private final Map<String, Object> literals;
+
+		public Attributes(Attribute[] attributes) {
+			Map<String, Object> literals = new HashMap<>();
+
+			for (Attribute attribute : attributes) {
+				if (isExpression(attribute.value())) {
+					literals = null;
+					break;
+				}
+
+				literals.put(attribute.name(), attribute.value());
+			}
+
+			this.attributes = attributes;
+			this.literals = (literals == null) ? null : literals.isEmpty()
+				? Collections.<String, Object>emptyMap() : unmodifiableMap(literals);
+		}
+
+		public Map<String, Object> get() {
+			if (literals != null) {
+				return literals;
+			}
+
+			Map<String, Object> attributeMap = new HashMap<>();
+
+			for (Attribute attribute : attributes) {
+				attributeMap.put(attribute.name(), evaluateExpressionGet(attribute.value()));
+			}
+
+			return attributeMap;
+		}
+	}
+
+}
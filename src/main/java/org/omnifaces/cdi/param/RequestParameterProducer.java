@@ -26,9 +26,6 @@ import static org.omnifaces.util.Reflection.setPropertiesWithCoercion;
 import static org.omnifaces.util.Utils.containsByClassName;
 import static org.omnifaces.util.Utils.isEmpty;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -70,19 +67,22 @@ public class RequestParameterProducer {
 	@Param
 	public <V> ParamValue<V> produce(InjectionPoint injectionPoint) {
 
+		// The metadata holds all data for this request parameter which doesn't depend on the request
+		ParamMetadata metadata = ParamMetadata.of(injectionPoint);
+
 		// @Param is the annotation on the injection point that holds all data for this request parameter
-		Param requestParameter = getQualifier(injectionPoint, Param.class);
+		Param requestParameter = metadata.getParam();
 
 		FacesContext context = FacesContext.getCurrentInstance();
 		UIComponent component = context.getViewRoot();
 
-		String label = getLabel(requestParameter, injectionPoint);
+		String label = metadata.getLabel();
 
 		// TODO: Save/restore existing potentially existing label?
 		component.getAttributes().put("label", label);
 
 		// Get raw submitted value from the request
-		String submittedValue = getRequestParameter(context, getName(requestParameter, injectionPoint));
+		String submittedValue = getRequestParameter(context, metadata.getName());
 		Object convertedValue = null;
 		boolean valid = true;
 
@@ -90,8 +90,9 @@ public class RequestParameterProducer {
 
 			// Convert the submitted value
 
-			Converter converter = getConverter(requestParameter, getTargetType(injectionPoint));
+			Converter converter = createConverter(requestParameter, metadata.getTargetType());
 			if (converter != null) {
+				setAttributes(converter, metadata.getConverterAttributes());
 				convertedValue = converter.getAsObject(context, component, submittedValue);
 			} else {
 				convertedValue = submittedValue;
@@ -100,7 +101,7 @@ public class RequestParameterProducer {
 			// Check for required
 
 			if (requestParameter.required() && isEmpty(convertedValue)) {
-				addRequiredMessage(context, component, label, submittedValue, getRequiredMessage(requestParameter));
+				addRequiredMessage(context, component, label, submittedValue, metadata.getRequiredMessage());
 			}
 
 			// Validate the converted value
@@ -108,7 +109,7 @@ public class RequestParameterProducer {
 			// 1. Use Bean Validation validators
 			if (shouldDoBeanValidation(requestParameter)) {
 
-				Set<ConstraintViolation<?>> violations = doBeanValidation(convertedValue, injectionPoint);
+				Set<ConstraintViolation<?>> violations = doBeanValidation(convertedValue, injectionPoint, metadata);
 
 				valid = violations.isEmpty();
 
@@ -118,17 +119,17 @@ public class RequestParameterProducer {
 			}
 
 			// 2. Use JSF native validators
-			for (Validator validator : getValidators(requestParameter)) {
+			for (Validator validator : getValidators(requestParameter, metadata.getValidatorAttributes())) {
 				try {
 					validator.validate(context, component, convertedValue);
 				} catch (ValidatorException ve) {
 					valid = false;
-					addValidatorMessages(context, component, label, submittedValue, ve, getValidatorMessage(requestParameter));
+					addValidatorMessages(context, component, label, submittedValue, ve, metadata.getValidatorMessage());
 				}
 			}
 		} catch (ConverterException ce) {
 			valid = false;
-			addConverterMessage(context, component, label, submittedValue, ce, getConverterMessage(requestParameter));
+			addConverterMessage(context, component, label, submittedValue, ce, metadata.getConverterMessage());
 		}
 
 		if (!valid) {
@@ -136,11 +137,22 @@ public class RequestParameterProducer {
 			convertedValue = null;
 		}
 
-		return (ParamValue<V>) new ParamValue<>(submittedValue, requestParameter, getTargetType(injectionPoint), convertedValue);
+		return (ParamValue<V>) new ParamValue<>(submittedValue, requestParameter, metadata.getTargetType(), convertedValue);
 	}
 
 	public static Converter getConverter(Param requestParameter, Class<?> targetType) {
 
+		Converter converter = createConverter(requestParameter, targetType);
+
+		if (converter != null) {
+			setAttributes(converter, getConverterAttributes(requestParameter));
+		}
+
+		return converter;
+	}
+
+	private static Converter createConverter(Param requestParameter, Class<?> targetType) {
+
 		Class<? extends Converter> converterClass = requestParameter.converterClass();
 		String converterName = requestParameter.converter();
 
@@ -165,78 +177,15 @@ public class RequestParameterProducer {
 			}
 		}
 
-		if (converter != null) {
-			setPropertiesWithCoercion(converter, getConverterAttributes(requestParameter));
-		}
-
 		return converter;
 	}
 
-	@SuppressWarnings("unchecked")
-	private <V> Class<V> getTargetType(InjectionPoint injectionPoint) {
-		Type type = injectionPoint.getType();
-		if (type instanceof ParameterizedType) {
-			// Assumes ParamValue now. Needs to be adjusted later.
-			return (Class<V>) ((ParameterizedType) type).getActualTypeArguments()[0];
-		} else if (type instanceof Class) {
-			// Direct injection into class type using dynamic producer
-			return  (Class<V>)  type;
-		}
-
-		return null;
-	}
-
-	private String getName(Param requestParameter, InjectionPoint injectionPoint) {
-
-		String name = requestParameter.name();
-
-		if (isEmpty(name)) {
-			name = injectionPoint.getMember().getName();
-		} else {
-			name = evaluateExpressionAsString(name);
-		}
-
-		return name;
-	}
-
-	private String getLabel(Param requestParameter, InjectionPoint injectionPoint) {
-
-		String label = requestParameter.label();
-
-		if (isEmpty(label)) {
-			label = getName(requestParameter, injectionPoint);
-		} else {
-			label = evaluateExpressionAsString(label);
-		}
-
-		return label;
-	}
-
-	private String getValidatorMessage(Param requestParameter) {
-		return evaluateExpressionAsString(requestParameter.validatorMessage());
-	}
-
-	private String getConverterMessage(Param requestParameter) {
-		return evaluateExpressionAsString(requestParameter.converterMessage());
-	}
-
-	private String getRequiredMessage(Param requestParameter) {
-		return evaluateExpressionAsString(requestParameter.requiredMessage());
-	}
-
-	private String evaluateExpressionAsString(String expression) {
+	private static void setAttributes(Object converterOrValidator, Map<String, Object> attributes) {
 
-		if (isEmpty(expression)) {
-			return expression;
+		// Avoid the introspection of the converter or validator when there's nothing to set, which is the usual case
+		if (!attributes.isEmpty()) {
+			setPropertiesWithCoercion(converterOrValidator, attributes);
 		}
-
-		Object expressionResult = evaluateExpressionGet(expression);
-
-		if (expressionResult == null) {
-			return null;
-		}
-
-		return expressionResult.toString();
 	}
 
 	private boolean shouldDoBeanValidation(Param requestParameter) {
@@ -255,21 +204,18 @@ public class RequestParameterProducer {
 		return isBeanValidationAvailable();
 	}
 
-	private Set<ConstraintViolation<?>> doBeanValidation(Object value, InjectionPoint injectionPoint) {
-
+	private Set<ConstraintViolation<?>> doBeanValidation(Object value, InjectionPoint injectionPoint,
+		ParamMetadata metadata)
+	{
 		Class<?> base = injectionPoint.getBean().getBeanClass();
-		String property = injectionPoint.getMember().getName();
-		Type type = injectionPoint.getType();
-		
+		String property = metadata.getMemberName();
+
 		// Check if the target property in which we are injecting in our special holder/wrapper type
 		// ParamValue or not. If it's the latter, pre-wrap our value (otherwise types for bean validation
 		// would not match)
 		Object valueOrWrapper = value;
-		if (type instanceof ParameterizedType) {
-			Type propertyRawType = ((ParameterizedType) type).getRawType();
-			if (propertyRawType.equals(ParamValue.class)) {
-				valueOrWrapper = new ParamValue<>(null, null, null, value);
-			}
+		if (metadata.isWrapped()) {
+			valueOrWrapper = new ParamValue<>(null, null, null, value);
 		}
 
 		@SuppressWarnings("rawtypes")
@@ -281,7 +227,7 @@ public class RequestParameterProducer {
 		return violations;
 	}
 
-	private List<Validator> getValidators(Param requestParameter) {
+	private List<Validator> getValidators(Param requestParameter, Map<String, Object> validatorAttributes) {
 
 		List<Validator> validators = new ArrayList<>();
 
@@ -318,9 +264,8 @@ public class RequestParameterProducer {
 
 		// Set the attributes on all instantiated validators. We don't distinguish here
 		// which attribute should go to which validator.
-		Map<String, Object> validatorAttributes = getValidatorAttributes(requestParameter);
 		for (Validator validator : validators) {
-			setPropertiesWithCoercion(validator, validatorAttributes);
+			setAttributes(validator, validatorAttributes);
 		}
 
 		return validators;
@@ -338,18 +283,6 @@ public class RequestParameterProducer {
 		return attributeMap;
 	}
 
-	private Map<String, Object> getValidatorAttributes(Param requestParameter) {
-
-		Map<String, Object> attributeMap = new HashMap<>();
-
-		Attribute[] attributes = requestParameter.validatorAttributes();
-		for (Attribute attribute : attributes) {
-			attributeMap.put(attribute.name(), evaluateExpressionGet(attribute.value()));
-		}
-
-		return attributeMap;
-	}
-
 	
 
 	private void addConverterMessage(FacesContext context, UIComponent component, String label, String submittedValue, ConverterException ce, String converterMessage) {
@@ -418,15 +351,4 @@ public class RequestParameterProducer {
 		return facesMessages;
 	}
 
-	@SuppressWarnings("unchecked")
-	private static <T> T getQualifier(InjectionPoint injectionPoint, Class<T> annotationClass) {
-		for (Annotation annotation : injectionPoint.getQualifiers()) {
-			if (annotationClass.isAssignableFrom(annotation.getClass())) {
-				return (T) annotation;
-			}
-		}
-
-		return null;
-	}
-
 }
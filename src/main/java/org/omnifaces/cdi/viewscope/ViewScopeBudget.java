@@ -0,0 +1,260 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.cdi.viewscope;
+
+import static org.omnifaces.util.Faces.getInitParameter;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+
+import org.omnifaces.cdi.BeanStorage;
+import org.omnifaces.util.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import org.omnifaces.util.concurrentlinkedhashmap.EvictionListener;
+import org.omnifaces.util.concurrentlinkedhashmap.Weigher;
+
+/**
+ * A node-wide weight budget for the view scopes of all sessions. When the total weight of all active view scopes
+ * exceeds {@value #PARAM_NAME_MAX_TOTAL_WEIGHT}, the least recently used view scopes of the whole node are evicted from
+ * their session by {@link ViewScopeManager}, exactly as if the session's own maximum active view scopes was exceeded.
+ * Thus, their beans are destroyed, or passivated if configured so. The per-session maximum still applies.
+ * <p>
+ * The weight is expressed in kilobytes. By default, it is estimated at {@value #ESTIMATED_BEAN_WEIGHT}KB per bean. When
+ * {@value #PARAM_NAME_WEIGHER} is set to <code>serialized</code>, it is measured as the serialized size of the view
+ * scope instead, which is more accurate but costs a serialization every time a bean is added to the view scope.
+ * <p>
+ * The budget is disabled when {@value #PARAM_NAME_MAX_TOTAL_WEIGHT} is not set. The current weight and the amount of
+ * evictions are available via {@link #getWeightedSize()} and {@link #getEvictionCount()}.
+ *
+ * @author agent
+ * @see ViewScopeManager
+ * @since 2.1
+ */
+@ApplicationScoped
+public class ViewScopeBudget {
+
+	// Public constants -----------------------------------------------------------------------------------------------
+
+	/** OmniFaces specific context parameter name of maximum total weight in KB of active view scopes in the node. */
+	public static final String PARAM_NAME_MAX_TOTAL_WEIGHT = "org.omnifaces.VIEW_SCOPE_MANAGER_MAX_TOTAL_WEIGHT";
+
+	/** OmniFaces specific context parameter name of the weigher of view scopes, "estimated" or "serialized". */
+	public static final String PARAM_NAME_WEIGHER = "org.omnifaces.VIEW_SCOPE_MANAGER_WEIGHER";
+
+	/** The estimated weight in KB of a single view scoped bean. */
+	public static final int ESTIMATED_BEAN_WEIGHT = 4;
+
+	// Private constants ----------------------------------------------------------------------------------------------
+
+	private static final int KILOBYTE = 1024;
+	private static final String ERROR_MAX_TOTAL_WEIGHT = "The '%s' init param must be a number."
+		+ " Encountered an invalid value of '%s'.";
+	private static final String ERROR_WEIGHER = "The '%s' init param must be 'estimated' or 'serialized'."
+		+ " Encountered an invalid value of '%s'.";
+
+	// Variables ------------------------------------------------------------------------------------------------------
+
+	private ConcurrentLinkedHashMap<UUID, Entry> activeViewScopes;
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Create the node-wide LRU map of active view scopes, if a maximum total weight is configured.
+	 */
+	@PostConstruct
+	public void init() {
+		String maxTotalWeight = getInitParameter(PARAM_NAME_MAX_TOTAL_WEIGHT);
+
+		if (maxTotalWeight == null) {
+			return;
+		}
+
+		long capacity;
+
+		try {
+			capacity = Long.valueOf(maxTotalWeight);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException(
+				String.format(ERROR_MAX_TOTAL_WEIGHT, PARAM_NAME_MAX_TOTAL_WEIGHT, maxTotalWeight), e);
+		}
+
+		String weigher = getInitParameter(PARAM_NAME_WEIGHER);
+
+		if (weigher != null && !weigher.equals("estimated") && !weigher.equals("serialized")) {
+			throw new IllegalArgumentException(String.format(ERROR_WEIGHER, PARAM_NAME_WEIGHER, weigher));
+		}
+
+		activeViewScopes = new ConcurrentLinkedHashMap.Builder<UUID, Entry>()
+			.maximumWeightedCapacity(capacity)
+			.weigher(new EntryWeigher("serialized".equals(weigher)))
+			.listener(new EvictionListener<UUID, Entry>() {
+
+				@Override
+				public void onEviction(UUID id, Entry entry) {
+					evictionCount.incrementAndGet();
+					entry.owner.evictViewScope(id);
+				}
+
+			})
+			.build();
+	}
+
+	/**
+	 * Returns whether the budget is enabled.
+	 * @return <code>true</code> if {@value #PARAM_NAME_MAX_TOTAL_WEIGHT} is set.
+	 */
+	public boolean isEnabled() {
+		return activeViewScopes != null;
+	}
+
+	/**
+	 * Register the given view scope, or weigh it again if it's already registered. This may evict other view scopes.
+	 * @param owner The view scope manager of the session the view scope belongs to.
+	 * @param id The ID of the view scope.
+	 * @param storage The bean storage of the view scope.
+	 */
+	public void register(ViewScopeManager owner, UUID id, BeanStorage storage) {
+		activeViewScopes.put(id, new Entry(owner, storage));
+	}
+
+	/**
+	 * Mark the given view scope as recently used, and register it again if it isn't registered yet or if it's
+	 * registered with another view scope manager or bean storage, which may happen after the session has been failed
+	 * over from another node, or has been passivated and activated.
+	 * @param owner The view scope manager of the session the view scope belongs to.
+	 * @param id The ID of the view scope.
+	 * @param storage The bean storage of the view scope.
+	 */
+	public void access(ViewScopeManager owner, UUID id, BeanStorage storage) {
+		Entry entry = activeViewScopes.get(id);
+
+		if (entry == null || entry.owner != owner || entry.storage != storage) {
+			register(owner, id, storage);
+		}
+	}
+
+	/**
+	 * Unregister the given view scope, because it has been evicted or destroyed by its session.
+	 * @param id The ID of the view scope.
+	 */
+	public void unregister(UUID id) {
+		activeViewScopes.remove(id);
+	}
+
+	// Getters --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the maximum total weight in KB of active view scopes.
+	 * @return The maximum total weight in KB of active view scopes, or 0 if the budget is disabled.
+	 */
+	public long getCapacity() {
+		return isEnabled() ? activeViewScopes.capacity() : 0;
+	}
+
+	/**
+	 * Returns the current total weight in KB of active view scopes.
+	 * @return The current total weight in KB of active view scopes, or 0 if the budget is disabled.
+	 */
+	public long getWeightedSize() {
+		return isEnabled() ? activeViewScopes.weightedSize() : 0;
+	}
+
+	/**
+	 * Returns the current amount of active view scopes.
+	 * @return The current amount of active view scopes, or 0 if the budget is disabled.
+	 */
+	public int getSize() {
+		return isEnabled() ? activeViewScopes.size() : 0;
+	}
+
+	/**
+	 * Returns the amount of view scopes which have been evicted because the budget was exceeded.
+	 * @return The amount of view scopes which have been evicted because the budget was exceeded.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	// Nested classes -------------------------------------------------------------------------------------------------
+
+	/**
+	 * A view scope along with the view scope manager of the session it belongs to.
+	 */
+	private static final class Entry {
+
+		private final ViewScopeManager owner;
+		private final BeanStorage storage;
+
+		public Entry(ViewScopeManager owner, BeanStorage storage) {
+			this.owner = owner;
+			this.storage = storage;
+		}
+	}
+
+	/**
+	 * Weighs a view scope in KB, either estimated based on the amount of beans, or measured based on its serialized
+	 * size. A view scope which cannot be serialized is estimated.
+	 */
+	private static final class EntryWeigher implements Weigher<Entry> {
+
+		private final boolean serialized;
+
+		public EntryWeigher(boolean serialized) {
+			this.serialized = serialized;
+		}
+
+		@Override
+		public int weightOf(Entry entry) {
+			if (serialized) {
+				CountingOutputStream counter = new CountingOutputStream();
+
+				try (ObjectOutputStream output = new ObjectOutputStream(counter)) {
+					output.writeObject(entry.storage);
+					output.flush();
+					return Math.max(1, (int) ((counter.count + KILOBYTE - 1) / KILOBYTE));
+				}
+				catch (IOException ignore) {
+					// Not serializable, so estimate it instead.
+				}
+			}
+
+			return Math.max(1, entry.storage.getBeanCount() * ESTIMATED_BEAN_WEIGHT);
+		}
+	}
+
+	/**
+	 * Output stream which merely counts the bytes written to it.
+	 */
+	private static final class CountingOutputStream extends OutputStream {
+
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+			count += length;
+		}
+	}
+
+}
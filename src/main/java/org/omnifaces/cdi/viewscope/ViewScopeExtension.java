@@ -20,12 +20,15 @@ import javax.enterprise.inject.spi.AfterBeanDiscovery;
 import javax.enterprise.inject.spi.Bean;
 import javax.enterprise.inject.spi.BeanManager;
 import javax.enterprise.inject.spi.Extension;
+import javax.enterprise.inject.spi.PassivationCapable;
+import javax.enterprise.inject.spi.ProcessBean;
 import javax.enterprise.inject.spi.ProcessManagedBean;
 
+import org.omnifaces.cdi.BeanStorage;
 import org.omnifaces.cdi.ViewScoped;
 
 /**
- * Register the CDI view scope context.
+ * Register the CDI view scope context, and assign a {@link BeanStorage} slot to every view scoped bean.
  *
  * @author Radu Creanga {@literal <rdcrng@gmail.com>}
  * @author Bauke Scholtz
@@ -50,6 +53,18 @@ public class ViewScopeExtension implements Extension {
 		bean = event.getBean();
 	}
 
+	/**
+	 * Assign a dense {@link BeanStorage} slot to every view scoped bean during deployment.
+	 * @param event The process bean event.
+	 */
+	protected void processBeans(@Observes ProcessBean<?> event) {
+		Bean<?> viewScopedBean = event.getBean();
+
+		if (viewScopedBean.getScope() == ViewScoped.class && viewScopedBean instanceof PassivationCapable) {
+			BeanStorage.registerSlot(((PassivationCapable) viewScopedBean).getId());
+		}
+	}
+
 	/**
 	 * Register a new view scope context, wrapping the given bean manager and view scope manager bean, in the current
 	 * CDI context.
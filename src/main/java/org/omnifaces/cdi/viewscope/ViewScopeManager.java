@@ -15,13 +15,33 @@
  */
 package org.omnifaces.cdi.viewscope;
 
+import static javax.faces.event.PhaseId.ANY_PHASE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.faces.event.PhaseId.RENDER_RESPONSE;
+import static org.omnifaces.util.Events.subscribeToRequestAfterPhase;
 import static org.omnifaces.util.Faces.getInitParameter;
-import static org.omnifaces.util.Faces.getViewAttribute;
-import static org.omnifaces.util.Faces.setViewAttribute;
-
+import static org.omnifaces.util.FacesLocal.getSession;
+import static org.omnifaces.util.FacesLocal.getViewAttribute;
+import static org.omnifaces.util.FacesLocal.isAjaxRequest;
+import static org.omnifaces.util.FacesLocal.setViewAttribute;
+import static org.omnifaces.util.Utils.escapeJS;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -29,11 +49,18 @@ import javax.enterprise.context.SessionScoped;
 import javax.enterprise.context.spi.Contextual;
 import javax.enterprise.context.spi.CreationalContext;
 import javax.enterprise.inject.spi.BeanManager;
+import javax.faces.component.UIOutput;
+import javax.faces.component.UIViewRoot;
+import javax.faces.component.html.HtmlOutputText;
+import javax.faces.context.FacesContext;
+import javax.faces.event.PhaseId;
 import javax.inject.Inject;
+import javax.servlet.http.HttpSession;
 
 import org.omnifaces.application.ViewScopeEventListener;
 import org.omnifaces.cdi.BeanStorage;
 import org.omnifaces.cdi.ViewScoped;
+import org.omnifaces.util.Callback;
 import org.omnifaces.util.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
 import org.omnifaces.util.concurrentlinkedhashmap.EvictionListener;
 
@@ -65,30 +92,61 @@ public class ViewScopeManager implements Serializable {
 	public static final String PARAM_NAME_MYFACES_NUMBER_OF_VIEWS =
 		"org.apache.myfaces.NUMBER_OF_VIEWS_IN_SESSION";
 
+	/** OmniFaces specific context parameter name of whether to passivate evicted view scopes instead of destroying. */
+	public static final String PARAM_NAME_PASSIVATE_EVICTED_VIEW_SCOPES =
+		"org.omnifaces.VIEW_SCOPE_MANAGER_PASSIVATE_EVICTED_VIEW_SCOPES";
+
+	/** OmniFaces specific context parameter name of whether to destroy view scopes on page unload, defaults to false. */
+	public static final String PARAM_NAME_DESTROY_ON_UNLOAD =
+		"org.omnifaces.VIEW_SCOPE_MANAGER_DESTROY_ON_UNLOAD";
+
+	/** OmniFaces specific context parameter name of whether to store each view scope in its own session attribute. */
+	public static final String PARAM_NAME_REPLICATE_VIEW_SCOPES_SEPARATELY =
+		"org.omnifaces.VIEW_SCOPE_MANAGER_REPLICATE_VIEW_SCOPES_SEPARATELY";
+
 	/** Default value of maximum active view scopes in session. */
 	public static final int DEFAULT_MAX_ACTIVE_VIEW_SCOPES = 20; // Mojarra's default is 15 and MyFaces' default is 20.
 
 	// Private constants ----------------------------------------------------------------------------------------------
 
-	private static final long serialVersionUID = 42L;
+	private static final long serialVersionUID = 43L;
 	private static final String[] PARAM_NAMES_MAX_ACTIVE_VIEW_SCOPES = {
 		PARAM_NAME_MAX_ACTIVE_VIEW_SCOPES, PARAM_NAME_MOJARRA_NUMBER_OF_VIEWS, PARAM_NAME_MYFACES_NUMBER_OF_VIEWS
 	};
-	private static final int DEFAULT_BEANS_PER_VIEW_SCOPE = 3;
+	private static final String LOOKUP = ViewScopeManager.class.getName() + ".LOOKUP";
+	private static final String UNLOAD_SCRIPT_ADDED = ViewScopeManager.class.getName() + ".UNLOAD_SCRIPT_ADDED";
+	private static final String UNLOAD_SCRIPT = "<script>OmniFaces.Unload.init('%s','%s','%s');</script>";
+	private static final String REPLICATION_SCHEDULED = ViewScopeManager.class.getName() + ".REPLICATION_SCHEDULED";
+	private static final String REPLICA_PREFIX = ViewScopeManager.class.getName() + ".";
+	private static final ThreadLocal<SecureRandom> RANDOM = new ThreadLocal<>();
 	private static final String ERROR_MAX_ACTIVE_VIEW_SCOPES = "The '%s' init param must be a number."
 		+ " Encountered an invalid value of '%s'.";
 
 	// Static variables -----------------------------------------------------------------------------------------------
 
 	private static Integer maxActiveViewScopes;
+	private static Boolean passivateEvictedViewScopes;
+	private static Boolean destroyOnUnload;
+	private static Boolean replicateViewScopesSeparately;
 
 	// Variables ------------------------------------------------------------------------------------------------------
 
-	private ConcurrentMap<UUID, BeanStorage> activeViewScopes;
+	private transient ConcurrentLinkedHashMap<UUID, BeanStorage> activeViewScopes;
+	private Set<UUID> passivatedViewScopes;
+	private boolean replicated;
+	private String unloadSecret;
+	private transient volatile HttpSession session;
+	private transient volatile List<UUID> replicatedViewScopes;
 
 	@Inject
 	private BeanManager manager;
 
+	@Inject
+	private ViewScopePassivationStore passivationStore;
+
+	@Inject
+	private ViewScopeBudget budget;
+
 	// Actions --------------------------------------------------------------------------------------------------------
 
 	/**
@@ -97,10 +155,17 @@ public class ViewScopeManager implements Serializable {
 	 */
 	@PostConstruct
 	public void postConstructSession() {
-		activeViewScopes = new ConcurrentLinkedHashMap.Builder<UUID, BeanStorage>()
-			.maximumWeightedCapacity(getMaxActiveViewScopes())
-			.listener(new BeanStorageEvictionListener())
-			.build();
+		activeViewScopes = createActiveViewScopes(getMaxActiveViewScopes());
+
+		if (isPassivateEvictedViewScopes()) {
+			passivatedViewScopes = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+		}
+
+		replicated = isReplicateViewScopesSeparately();
+
+		if (isDestroyOnUnload()) {
+			unloadSecret = new BigInteger(128, getRandom()).toString(Character.MAX_RADIX);
+		}
 	}
 
 	/**
@@ -111,7 +176,14 @@ public class ViewScopeManager implements Serializable {
 	 * @return The created CDI view scoped managed bean from the current JSF view scope.
 	 */
 	public <T> T createBean(Contextual<T> type, CreationalContext<T> context) {
-		return activeViewScopes.get(getBeanStorageId(true)).createBean(type, context);
+		Lookup lookup = getLookup(true);
+		T bean = lookup.storage.createBean(type, context);
+
+		if (budget.isEnabled()) {
+			budget.register(this, lookup.id, lookup.storage); // Weigh it again.
+		}
+
+		return bean;
 	}
 
 	/**
@@ -121,7 +193,7 @@ public class ViewScopeManager implements Serializable {
 	 * @return The CDI view scoped managed bean from the current JSF view scope.
 	 */
 	public <T> T getBean(Contextual<T> type) {
-		return activeViewScopes.get(getBeanStorageId(true)).getBean(type, manager);
+		return getLookup(true).storage.getBean(type, manager);
 	}
 
 	/**
@@ -129,10 +201,48 @@ public class ViewScopeManager implements Serializable {
 	 * current active view scope.
 	 */
 	public void preDestroyView() {
-		BeanStorage storage = activeViewScopes.remove(getBeanStorageId(false));
+		UUID id = getLookup(false).id;
+		FacesContext.getCurrentInstance().getAttributes().remove(LOOKUP);
+		BeanStorage storage = activeViewScopes.remove(id);
 
 		if (storage != null) {
-			storage.destroyBeans();
+			unregister(id);
+			removeReplica(id);
+			storage.destroyBeans(manager);
+		}
+	}
+
+	/**
+	 * This method is invoked by {@link ViewScopeUnloadPhaseListener} when the enduser has left the page, in that case
+	 * destroy all beans in the view scope of the given ID, if it belongs to this session and the given token is the
+	 * one which was rendered along with the view scope ID in the page, so that other sites can't destroy it.
+	 * @param id The ID of the view scope to be destroyed.
+	 * @param token The unload token of the view scope to be destroyed.
+	 * @since 2.1
+	 */
+	public void destroyViewScope(UUID id, String token) {
+		if (token == null || unloadSecret == null
+			|| !MessageDigest.isEqual(getUnloadToken(id).getBytes(UTF_8), token.getBytes(UTF_8)))
+		{
+			return;
+		}
+
+		if (replicated) {
+			attachSession(FacesContext.getCurrentInstance());
+		}
+
+		BeanStorage storage = activeViewScopes.remove(id);
+
+		if (storage != null) {
+			unregister(id);
+			removeReplica(id);
+		}
+		else if (passivatedViewScopes != null && passivatedViewScopes.remove(id)) {
+			storage = passivationStore.restore(id);
+		}
+
+		if (storage != null) {
+			storage.destroyBeans(manager);
 		}
 	}
 
@@ -141,13 +251,172 @@ public class ViewScopeManager implements Serializable {
 	 */
 	@PreDestroy
 	public void preDestroySession() {
-		for (BeanStorage storage : activeViewScopes.values()) {
-			storage.destroyBeans();
+		for (Entry<UUID, BeanStorage> entry : activeViewScopes.entrySet()) {
+			unregister(entry.getKey());
+			entry.getValue().destroyBeans(manager);
+		}
+
+		activeViewScopes.clear();
+
+		if (passivatedViewScopes != null) {
+			for (UUID id : passivatedViewScopes) {
+				BeanStorage storage = passivationStore.restore(id);
+
+				if (storage != null) {
+					storage.destroyBeans(manager);
+				}
+			}
+
+			passivatedViewScopes.clear();
+		}
+	}
+
+	/**
+	 * This method is invoked by {@link ViewScopeBudget} when the node-wide budget is exceeded, in that case evict the
+	 * given view scope from this session, exactly as if the maximum active view scopes in session was exceeded.
+	 * @param id The ID of the view scope to be evicted.
+	 */
+	void evictViewScope(UUID id) {
+		BeanStorage storage = activeViewScopes.remove(id);
+
+		if (storage != null) {
+			evict(id, storage);
+		}
+	}
+
+	/**
+	 * This method is invoked by {@link ViewScopePassivationStore} when the given passivated view scope is evicted from
+	 * the store, in that case forget about it, so that the set of passivated view scopes doesn't keep growing.
+	 * @param id The ID of the passivated view scope.
+	 */
+	void forgetPassivatedViewScope(UUID id) {
+		if (passivatedViewScopes != null) {
+			passivatedViewScopes.remove(id);
 		}
 	}
 
 	// Helpers --------------------------------------------------------------------------------------------------------
 
+	/**
+	 * Passivate the given evicted view scope if enabled, else destroy its beans.
+	 */
+	private void evict(UUID id, BeanStorage storage) {
+		storage.setDestroyed(true); // Also when passivated, so that a memoized lookup of it is repeated.
+		removeReplica(id);
+
+		if (passivatedViewScopes != null) {
+			passivatedViewScopes.add(id); // Before passivating, as the store may already evict it in the meanwhile.
+
+			if (passivationStore.passivate(this, id, storage)) {
+				return;
+			}
+
+			passivatedViewScopes.remove(id);
+		}
+
+		storage.destroyBeans(manager);
+	}
+
+	/**
+	 * Unregister the given view scope from the node-wide budget, if enabled.
+	 */
+	private void unregister(UUID id) {
+		if (budget.isEnabled()) {
+			budget.unregister(id);
+		}
+	}
+
+	/**
+	 * Create a new LRU map of active view scopes with the given maximum weighted capacity.
+	 */
+	private ConcurrentLinkedHashMap<UUID, BeanStorage> createActiveViewScopes(long capacity) {
+		return new ConcurrentLinkedHashMap.Builder<UUID, BeanStorage>()
+			.maximumWeightedCapacity(capacity)
+			.listener(new BeanStorageEvictionListener())
+			.build();
+	}
+
+	/**
+	 * Remember the session this view scope manager belongs to, so that the session attributes of its view scopes can
+	 * also be managed when a view scope is evicted during a request of another session. Then re-attach the view scopes
+	 * which were replicated along with this view scope manager, if any; their bean storages are to be found in their
+	 * own session attributes.
+	 */
+	private void attachSession(FacesContext context) {
+		if (session == null) {
+			session = getSession(context);
+		}
+
+		List<UUID> ids = replicatedViewScopes;
+
+		if (ids != null) {
+			replicatedViewScopes = null;
+
+			for (UUID id : ids) {
+				BeanStorage storage = (BeanStorage) session.getAttribute(REPLICA_PREFIX + id);
+
+				if (storage != null) {
+					storage.setDirty(false);
+					activeViewScopes.put(id, storage);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Subscribe {@link #replicate()} to the end of every phase of the current request, if not already done.
+	 */
+	private void scheduleReplication(FacesContext context) {
+		if (context.getAttributes().put(REPLICATION_SCHEDULED, true) != null) {
+			return;
+		}
+
+		subscribeToRequestAfterPhase(ANY_PHASE, new Callback.Void() {
+
+			@Override
+			public void invoke() {
+				replicate();
+			}
+
+		});
+	}
+
+	/**
+	 * Set the bean storage of every dirty view scope as session attribute again, so that a container which replicates
+	 * only changed session attributes will replicate exactly those view scopes.
+	 */
+	private void replicate() {
+		try {
+			for (Entry<UUID, BeanStorage> entry : activeViewScopes.entrySet()) {
+				BeanStorage storage = entry.getValue();
+
+				if (storage.isDirty()) {
+					storage.setDirty(false);
+					session.setAttribute(REPLICA_PREFIX + entry.getKey(), storage);
+				}
+			}
+		}
+		catch (IllegalStateException ignore) {
+			// Session has been invalidated during the request, e.g. by a logout action, so there's nothing to replicate.
+		}
+	}
+
+	/**
+	 * Remove the session attribute of the given view scope, if any.
+	 */
+	private void removeReplica(UUID id) {
+		HttpSession currentSession = session;
+
+		if (currentSession != null) {
+			try {
+				currentSession.removeAttribute(REPLICA_PREFIX + id);
+			}
+			catch (IllegalStateException ignore) {
+				// Session is already invalidated, so there's nothing to remove.
+			}
+		}
+	}
+
 	/**
 	 * Returns the max active view scopes depending on available context params. This will be calculated lazily once
 	 * and re-returned everytime; the faces context is namely not available during class' initialization/construction,
@@ -175,39 +444,271 @@ public class ViewScopeManager implements Serializable {
 	}
 
 	/**
-	 * Returns the unique ID from the current JSF view scope which is to be associated with the CDI bean storage.
+	 * Returns whether view scopes should be destroyed on page unload depending on the context param. This will be
+	 * calculated lazily once and re-returned everytime.
+	 */
+	private boolean isDestroyOnUnload() {
+		if (destroyOnUnload == null) {
+			destroyOnUnload = Boolean.valueOf(getInitParameter(PARAM_NAME_DESTROY_ON_UNLOAD));
+		}
+
+		return destroyOnUnload;
+	}
+
+	/**
+	 * Returns whether each view scope should be stored in its own session attribute depending on the context param.
+	 * This will be calculated lazily once and re-returned everytime.
+	 */
+	private boolean isReplicateViewScopesSeparately() {
+		if (replicateViewScopesSeparately == null) {
+			replicateViewScopesSeparately =
+				Boolean.valueOf(getInitParameter(PARAM_NAME_REPLICATE_VIEW_SCOPES_SEPARATELY));
+		}
+
+		return replicateViewScopesSeparately;
+	}
+
+	/**
+	 * Add the script which notifies {@link ViewScopeUnloadPhaseListener} when the enduser leaves the page to the end
+	 * of body, if not already done during the current full page render. The components are transient, so they don't
+	 * end up in the view state.
+	 */
+	private void addUnloadScript(FacesContext context, UUID id) {
+		if (context.getCurrentPhaseId() != RENDER_RESPONSE || isAjaxRequest(context)
+			|| context.getAttributes().put(UNLOAD_SCRIPT_ADDED, true) != null)
+		{
+			return;
+		}
+
+		UIViewRoot view = context.getViewRoot();
+		UIOutput resource = new UIOutput();
+		resource.getAttributes().put("library", "omnifaces");
+		resource.getAttributes().put("name", "omnifaces.js");
+		resource.setRendererType("javax.faces.resource.Script");
+		resource.setTransient(true);
+		view.addComponentResource(context, resource, "body");
+
+		String url = context.getExternalContext().encodeActionURL(
+			context.getApplication().getViewHandler().getActionURL(context, view.getViewId()));
+		HtmlOutputText script = new HtmlOutputText();
+		script.setEscape(false);
+		script.setValue(String.format(UNLOAD_SCRIPT, id, getUnloadToken(id), escapeJS(url, true)));
+		script.setTransient(true);
+		view.addComponentResource(context, script, "body");
+	}
+
+	/**
+	 * Returns the token which the unload notification of the view scope of the given ID must carry. This is the hash of
+	 * the given ID along with the secret of this session, so it can't be derived by other sites.
+	 */
+	private String getUnloadToken(UUID id) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest((unloadSecret + id).getBytes(UTF_8));
+			return new BigInteger(1, hash).toString(Character.MAX_RADIX);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns whether evicted view scopes should be passivated depending on the context param. This will be calculated
+	 * lazily once and re-returned everytime.
+	 */
+	private boolean isPassivateEvictedViewScopes() {
+		if (passivateEvictedViewScopes == null) {
+			passivateEvictedViewScopes = Boolean.valueOf(getInitParameter(PARAM_NAME_PASSIVATE_EVICTED_VIEW_SCOPES));
+		}
+
+		return passivateEvictedViewScopes;
+	}
+
+	/**
+	 * Returns the unique ID from the current JSF view scope along with the associated CDI bean storage, memoized for
+	 * the current view and phase of the current request, so that the many bean references during a request don't need
+	 * to repeat the lookup. The memoized bean storage is only trusted as long as it's not destroyed, as it may have been
+	 * evicted or destroyed by another request in the meanwhile.
 	 * If none is found, then a new ID will be auto-created. If <code>create</code> is <code>true</code>, then a new
-	 * CDI bean storage will also be auto-created.
+	 * CDI bean storage will also be auto-created. If the CDI bean storage of the found ID has been passivated, then it
+	 * will be restored.
+	 */
+	private Lookup getLookup(boolean create) {
+		FacesContext context = FacesContext.getCurrentInstance();
+		Lookup lookup = (Lookup) context.getAttributes().get(LOOKUP);
+
+		if (lookup == null || !lookup.isValid(context) || (create && lookup.storage == null)
+			|| (lookup.storage != null && lookup.storage.isDestroyed()))
+		{
+			lookup = new Lookup(context, getBeanStorageId(context, create));
+			lookup.storage = activeViewScopes.get(lookup.id);
+			context.getAttributes().put(LOOKUP, lookup);
+		}
+
+		return lookup;
+	}
+
+	/**
+	 * Returns the unique ID from the current JSF view scope which is to be associated with the CDI bean storage.
+	 * See {@link #getLookup(boolean)}.
 	 */
-	private UUID getBeanStorageId(boolean create) {
-		UUID id = (UUID) getViewAttribute(ViewScopeManager.class.getName());
+	private UUID getBeanStorageId(FacesContext context, boolean create) {
+		if (replicated) {
+			attachSession(context);
+		}
 
-		if (id == null || activeViewScopes.get(id) == null) {
-			id = UUID.randomUUID();
+		UUID id = getViewAttribute(context, ViewScopeManager.class.getName());
+
+		if (id != null && passivatedViewScopes != null && passivatedViewScopes.remove(id)) {
+			BeanStorage storage = passivationStore.restore(id);
+
+			if (storage != null) {
+				activeViewScopes.put(id, storage);
+			}
+		}
+
+		BeanStorage storage = (id != null) ? activeViewScopes.get(id) : null;
+
+		if (storage == null) {
+			id = randomUUID();
 
 			if (create) {
-				activeViewScopes.put(id, new BeanStorage(DEFAULT_BEANS_PER_VIEW_SCOPE));
+				storage = new BeanStorage(0); // Grows to the highest slot in use.
+				activeViewScopes.put(id, storage);
 			}
 
-			setViewAttribute(ViewScopeManager.class.getName(), id);
+			setViewAttribute(context, ViewScopeManager.class.getName(), id);
+		}
+
+		if (storage != null && budget.isEnabled()) {
+			budget.access(this, id, storage);
+		}
+
+		if (storage != null && isDestroyOnUnload()) {
+			addUnloadScript(context, id);
+		}
+
+		if (storage != null && replicated) {
+			scheduleReplication(context);
 		}
 
 		return id;
 	}
 
+	/**
+	 * Returns a random type 4 UUID based on a per-thread {@link SecureRandom} instead of the single and thus contended
+	 * one of {@link UUID#randomUUID()}. The view scope ID must be unguessable, as it's also rendered in the page.
+	 */
+	private static UUID randomUUID() {
+		SecureRandom random = getRandom();
+		long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L; // Version 4.
+		long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L; // IETF variant.
+		return new UUID(mostSigBits, leastSigBits);
+	}
+
+	/**
+	 * Returns the {@link SecureRandom} of the current thread. This doesn't use an anonymous {@link ThreadLocal}
+	 * subclass with an initial value, because that would keep this class and thus the web application class loader
+	 * referenced from the threads of the container after undeploy.
+	 */
+	private static SecureRandom getRandom() {
+		SecureRandom random = RANDOM.get();
+
+		if (random == null) {
+			random = new SecureRandom();
+			RANDOM.set(random);
+		}
+
+		return random;
+	}
+
+	/**
+	 * Write the active view scopes in LRU order. When each view scope is stored in its own session attribute, then
+	 * only their IDs are written, so that the serialized form of this view scope manager stays small.
+	 */
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		output.defaultWriteObject();
+		Map<UUID, BeanStorage> viewScopes = activeViewScopes.ascendingMap();
+		List<UUID> pendingViewScopes = replicatedViewScopes;
+		output.writeLong(activeViewScopes.capacity());
+		output.writeInt(viewScopes.size() + (pendingViewScopes != null ? pendingViewScopes.size() : 0));
+
+		if (pendingViewScopes != null) { // Not yet attached since the previous replication.
+			for (UUID id : pendingViewScopes) {
+				output.writeObject(id);
+			}
+		}
+
+		for (Entry<UUID, BeanStorage> entry : viewScopes.entrySet()) {
+			output.writeObject(entry.getKey());
+
+			if (!replicated) {
+				output.writeObject(entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Read the active view scopes in LRU order. When each view scope is stored in its own session attribute, then
+	 * they are re-attached during the first request, see {@link #attachSession(FacesContext)}.
+	 */
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+		input.defaultReadObject();
+		activeViewScopes = createActiveViewScopes(input.readLong());
+		int size = input.readInt();
+		List<UUID> pendingViewScopes = new ArrayList<>(size);
+
+		for (int i = 0; i < size; i++) {
+			UUID id = (UUID) input.readObject();
+
+			if (replicated) {
+				pendingViewScopes.add(id);
+			}
+			else {
+				activeViewScopes.put(id, (BeanStorage) input.readObject());
+			}
+		}
+
+		if (replicated && !pendingViewScopes.isEmpty()) {
+			replicatedViewScopes = pendingViewScopes;
+		}
+	}
+
 	// Nested classes -------------------------------------------------------------------------------------------------
 
+	/**
+	 * The view scope ID and bean storage as looked up during the current view and phase of the current request.
+	 */
+	private static final class Lookup {
+
+		private final UIViewRoot view;
+		private final PhaseId phaseId;
+		private final UUID id;
+		private BeanStorage storage;
+
+		public Lookup(FacesContext context, UUID id) {
+			this.view = context.getViewRoot();
+			this.phaseId = context.getCurrentPhaseId();
+			this.id = id;
+		}
+
+		public boolean isValid(FacesContext context) {
+			return view == context.getViewRoot() && phaseId == context.getCurrentPhaseId();
+		}
+	}
+
 	/**
 	 * Listener for {@link ConcurrentLinkedHashMap} which will be invoked when an entry is evicted. It will in turn
-	 * invoke {@link BeanStorage#destroyBeans()}.
+	 * passivate the {@link BeanStorage} into the {@link ViewScopePassivationStore} if enabled, or else invoke
+	 * {@link BeanStorage#destroyBeans(BeanManager)}.
 	 */
-	private static final class BeanStorageEvictionListener implements EvictionListener<UUID, BeanStorage>, Serializable {
+	private final class BeanStorageEvictionListener implements EvictionListener<UUID, BeanStorage>, Serializable {
 
 		private static final long serialVersionUID = 42L;
 
 		@Override
 		public void onEviction(UUID id, BeanStorage storage) {
-			storage.destroyBeans();
+			unregister(id);
+			evict(id, storage);
 		}
 
 	}
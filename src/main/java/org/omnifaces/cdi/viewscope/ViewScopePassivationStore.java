@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.cdi.viewscope;
+
+import static java.util.logging.Level.WARNING;
+import static org.omnifaces.util.Faces.getInitParameter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.inject.Inject;
+
+import org.omnifaces.cdi.BeanStorage;
+import org.omnifaces.util.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import org.omnifaces.util.concurrentlinkedhashmap.EvictionListener;
+
+/**
+ * A bounded store on local disk for view scopes which are evicted from a session by {@link ViewScopeManager}, so that
+ * they can be restored when the enduser returns to the view. The store is shared by all sessions. When the maximum
+ * amount of passivated view scopes is exceeded, the least recently passivated one is restored and destroyed, so that
+ * its beans get their {@link PreDestroy} invoked as if they were evicted without passivation, and the view scope
+ * manager of its session is notified, so that it forgets about it.
+ * <p>
+ * This is only used when {@value org.omnifaces.cdi.viewscope.ViewScopeManager#PARAM_NAME_PASSIVATE_EVICTED_VIEW_SCOPES}
+ * is set to <code>true</code>. The maximum amount of passivated view scopes can be set by
+ * {@value #PARAM_NAME_MAX_PASSIVATED_VIEW_SCOPES} and defaults to {@value #DEFAULT_MAX_PASSIVATED_VIEW_SCOPES}.
+ *
+ * @author agent
+ * @see ViewScopeManager
+ * @since 2.1
+ */
+@ApplicationScoped
+public class ViewScopePassivationStore {
+
+	// Public constants -----------------------------------------------------------------------------------------------
+
+	/** OmniFaces specific context parameter name of maximum passivated view scopes in the whole application. */
+	public static final String PARAM_NAME_MAX_PASSIVATED_VIEW_SCOPES =
+		"org.omnifaces.VIEW_SCOPE_MANAGER_MAX_PASSIVATED_VIEW_SCOPES";
+
+	/** Default value of maximum passivated view scopes in the whole application. */
+	public static final int DEFAULT_MAX_PASSIVATED_VIEW_SCOPES = 1000;
+
+	// Private constants ----------------------------------------------------------------------------------------------
+
+	private static final Logger logger = Logger.getLogger(ViewScopePassivationStore.class.getName());
+
+	private static final String ERROR_MAX_PASSIVATED_VIEW_SCOPES = "The '%s' init param must be a number."
+		+ " Encountered an invalid value of '%s'.";
+	private static final String ERROR_PASSIVATE = "Cannot passivate view scope %s, it will be destroyed instead.";
+	private static final String ERROR_RESTORE = "Cannot restore view scope %s, it will be recreated instead.";
+
+	// Variables ------------------------------------------------------------------------------------------------------
+
+	@Inject
+	private BeanManager manager;
+
+	private File directory;
+	private ConcurrentLinkedHashMap<UUID, Entry> passivatedViewScopes;
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Create the directory and the LRU map of passivated view scopes.
+	 */
+	@PostConstruct
+	public void init() {
+		try {
+			directory = Files.createTempDirectory("omnifaces-viewscopes").toFile();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		passivatedViewScopes = new ConcurrentLinkedHashMap.Builder<UUID, Entry>()
+			.maximumWeightedCapacity(getMaxPassivatedViewScopes())
+			.listener(new EvictionListener<UUID, Entry>() {
+
+				@Override
+				public void onEviction(UUID id, Entry entry) {
+					entry.owner.forgetPassivatedViewScope(id);
+					BeanStorage storage = read(id, entry.file);
+
+					if (storage != null) {
+						storage.destroyBeans(manager);
+					}
+				}
+
+			})
+			.build();
+	}
+
+	/**
+	 * Serialize the given bean storage to disk.
+	 * @param owner The view scope manager of the session the view scope belongs to.
+	 * @param id The ID of the view scope.
+	 * @param storage The bean storage of the view scope.
+	 * @return <code>true</code> if the bean storage is passivated, or <code>false</code> if it can't be serialized, in
+	 * which case the caller should destroy it.
+	 */
+	public boolean passivate(ViewScopeManager owner, UUID id, BeanStorage storage) {
+		File file = new File(directory, id + ".ser");
+
+		try (ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			output.writeObject(storage);
+		}
+		catch (IOException e) {
+			logger.log(WARNING, String.format(ERROR_PASSIVATE, id), (e instanceof NotSerializableException) ? null : e);
+			file.delete();
+			return false;
+		}
+
+		passivatedViewScopes.put(id, new Entry(owner, file));
+		return true;
+	}
+
+	/**
+	 * Remove the bean storage of the given view scope from disk and return it.
+	 * @param id The ID of the view scope.
+	 * @return The restored bean storage, or <code>null</code> if there is none, e.g. because it was evicted from the
+	 * store in the meanwhile, or because the session was failed over to another node.
+	 */
+	public BeanStorage restore(UUID id) {
+		Entry entry = passivatedViewScopes.remove(id);
+		return (entry != null) ? read(id, entry.file) : null;
+	}
+
+	/**
+	 * Delete all passivated view scopes which are still on disk, along with the directory.
+	 */
+	@PreDestroy
+	public void destroy() {
+		for (Entry entry : passivatedViewScopes.values()) {
+			entry.file.delete();
+		}
+
+		passivatedViewScopes.clear();
+		directory.delete();
+	}
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the max passivated view scopes depending on the context param.
+	 */
+	private static int getMaxPassivatedViewScopes() {
+		String value = getInitParameter(PARAM_NAME_MAX_PASSIVATED_VIEW_SCOPES);
+
+		if (value == null) {
+			return DEFAULT_MAX_PASSIVATED_VIEW_SCOPES;
+		}
+
+		try {
+			return Integer.valueOf(value);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException(
+				String.format(ERROR_MAX_PASSIVATED_VIEW_SCOPES, PARAM_NAME_MAX_PASSIVATED_VIEW_SCOPES, value), e);
+		}
+	}
+
+	/**
+	 * Deserialize the bean storage from the given file and delete the file.
+	 */
+	private static BeanStorage read(UUID id, File file) {
+		try (ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			return (BeanStorage) input.readObject();
+		}
+		catch (IOException | ClassNotFoundException e) {
+			logger.log(WARNING, String.format(ERROR_RESTORE, id), e);
+			return null;
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	// Nested classes -------------------------------------------------------------------------------------------------
+
+	/**
+	 * A passivated view scope along with the view scope manager of the session it belongs to.
+	 */
+	private static final class Entry {
+
+		private final ViewScopeManager owner;
+		private final File file;
+
+		public Entry(ViewScopeManager owner, File file) {
+			this.owner = owner;
+			this.file = file;
+		}
+	}
+
+}
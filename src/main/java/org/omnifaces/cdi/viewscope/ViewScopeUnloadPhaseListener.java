@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.cdi.viewscope;
+
+import static javax.faces.event.PhaseId.RESTORE_VIEW;
+import static javax.servlet.http.HttpServletResponse.SC_NO_CONTENT;
+import static org.omnifaces.util.Servlets.getRequestQueryStringMap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.faces.context.FacesContext;
+import javax.faces.event.PhaseEvent;
+import javax.servlet.http.HttpServletRequest;
+
+import org.omnifaces.config.BeanManager;
+import org.omnifaces.eventlistener.DefaultPhaseListener;
+
+/**
+ * Handles the unload notification which is sent by <code>OmniFaces.Unload</code> in <code>omnifaces.js</code> when the
+ * enduser leaves a page with view scoped beans. It destroys the view scope of the given ID right away, before the view
+ * is restored, and completes the response without further processing. The notification must carry the unload token
+ * which was rendered along with the view scope ID, else it's ignored, so that other sites can't destroy view scopes of
+ * the enduser. The request parameters are taken from the query
+ * string only, so that the request body is not parsed before the request character encoding is set on other requests.
+ *
+ * @author agent
+ * @see ViewScopeManager
+ * @since 2.1
+ */
+public class ViewScopeUnloadPhaseListener extends DefaultPhaseListener {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	private static final long serialVersionUID = 42L;
+	private static final String UNLOAD_QUERY_STRING = "omnifaces.event=unload";
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	/**
+	 * This phase listener runs before {@link javax.faces.event.PhaseId#RESTORE_VIEW}.
+	 */
+	public ViewScopeUnloadPhaseListener() {
+		super(RESTORE_VIEW);
+	}
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * If the current request is an unload notification, destroy the view scope and complete the response.
+	 */
+	@Override
+	public void beforePhase(PhaseEvent event) {
+		FacesContext context = event.getFacesContext();
+		HttpServletRequest request = (HttpServletRequest) context.getExternalContext().getRequest();
+		String queryString = request.getQueryString();
+
+		if (queryString == null || !queryString.contains(UNLOAD_QUERY_STRING) || !"POST".equals(request.getMethod())) {
+			return;
+		}
+
+		Map<String, List<String>> parameters = getRequestQueryStringMap(request);
+		List<String> ids = parameters.get("id");
+		List<String> tokens = parameters.get("token");
+
+		if (ids != null && tokens != null && request.getSession(false) != null) {
+			try {
+				BeanManager.INSTANCE.getReference(ViewScopeManager.class)
+					.destroyViewScope(UUID.fromString(ids.get(0)), tokens.get(0));
+			}
+			catch (IllegalArgumentException ignore) {
+				// Not an UUID, so there's nothing to destroy.
+			}
+		}
+
+		context.getExternalContext().setResponseStatus(SC_NO_CONTENT);
+		context.responseComplete();
+	}
+
+}
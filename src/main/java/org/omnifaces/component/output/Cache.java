@@ -19,29 +19,37 @@ import static org.omnifaces.component.output.Cache.PropertyKeys.disabled;
 import static org.omnifaces.component.output.Cache.PropertyKeys.key;
 import static org.omnifaces.component.output.Cache.PropertyKeys.reset;
 import static org.omnifaces.component.output.Cache.PropertyKeys.scope;
+import static org.omnifaces.component.output.Cache.PropertyKeys.tags;
 import static org.omnifaces.component.output.Cache.PropertyKeys.time;
 import static org.omnifaces.component.output.Cache.PropertyKeys.useBuffer;
-import static org.omnifaces.filter.OnDemandResponseBufferFilter.BUFFERED_RESPONSE;
+import static org.omnifaces.filter.OnDemandResponseBufferFilter.CAPTURING_RESPONSE;
 import static org.omnifaces.util.Events.subscribeToRequestAfterPhase;
 import static org.omnifaces.util.Events.subscribeToViewEvent;
 import static org.omnifaces.util.Faces.getRequestAttribute;
+import static org.omnifaces.util.Utils.csvToList;
 
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import javax.faces.component.FacesComponent;
 import javax.faces.component.visit.VisitContext;
 import javax.faces.context.FacesContext;
 import javax.faces.context.ResponseWriter;
+import javax.faces.event.PhaseId;
 import javax.faces.event.PreRenderViewEvent;
 import javax.faces.event.SystemEvent;
 
 import org.omnifaces.component.output.cache.CacheFactory;
 import org.omnifaces.component.output.cache.CacheInitializer;
+import org.omnifaces.component.output.cache.CacheWarmer;
+import org.omnifaces.component.output.cache.OffHeapCache;
 import org.omnifaces.component.output.cache.el.CacheValue;
 import org.omnifaces.filter.OnDemandResponseBufferFilter;
-import org.omnifaces.servlet.BufferedHttpServletResponse;
+import org.omnifaces.io.CapturingWriter.Capture;
+import org.omnifaces.servlet.CapturingHttpServletResponse;
 import org.omnifaces.util.Callback;
 import org.omnifaces.util.State;
 
@@ -60,6 +68,12 @@ import org.omnifaces.util.State;
  * For each scope a maximum capacity can be set. If the capacity for that scope is exceeded, an element will be
  * removed following a least recently used policy (LRU).
  * <p>
+ * Cached content can be tagged via the <code>tags</code> attribute. All content tagged with a certain tag can then be
+ * removed from the cache, regardless of its key and scope, via {@link CacheFactory#invalidateTag(String)}.
+ * <p>
+ * Application scoped content can be rendered in the background at startup and before it expires, by declaring the
+ * views containing it as warm-up targets. See {@link CacheWarmer} for the configuration.
+ * <p>
  * Via a cache provider mechanism an alternative cache implementation can be configured in web.xml. The default
  * cache is based on <a href="http://code.google.com/p/concurrentlinkedhashmap">http://code.google.com/p/concurrentlinkedhashmap</a>.
  *
@@ -76,6 +90,8 @@ public class Cache extends OutputFamily {
 	public static final String START_CONTENT_MARKER = "<!-- START CACHE FOR %s -->";
 	public static final String END_CONTENT_MARKER = "<!-- END CACHE FOR %s -->";
 
+	private static final String LOOKUPS = Cache.class.getName() + ".LOOKUPS";
+
 	private static final String ERROR_NO_BUFFERED_RESPONSE = String.format(
 		"No buffered response found in request, but 'useBuffer' set to true. Check setting the '%s' context parameter or installing the '%s' filter manually.",
 		CacheInitializer.CACHE_INSTALL_BUFFER_FILTER, OnDemandResponseBufferFilter.class
@@ -85,7 +101,7 @@ public class Cache extends OutputFamily {
 	private final State state = new State(getStateHelper());
 
 	enum PropertyKeys {
-		key, scope, time, useBuffer, reset, disabled
+		key, scope, time, useBuffer, reset, disabled, tags
 	}
 
 	public Cache() {
@@ -101,29 +117,22 @@ public class Cache extends OutputFamily {
 
 				if (!isDisabled() && isUseBuffer() && !hasCachedValue(context)) {
 
-					final BufferedHttpServletResponse bufferedHttpServletResponse = getRequestAttribute(BUFFERED_RESPONSE);
+					CapturingHttpServletResponse capturingHttpServletResponse = getRequestAttribute(CAPTURING_RESPONSE);
 
-					if (bufferedHttpServletResponse == null) {
+					if (capturingHttpServletResponse == null) {
 						throw new IllegalStateException(ERROR_NO_BUFFERED_RESPONSE);
 					}
 
-					// Start buffering the response from now on
-					bufferedHttpServletResponse.setPassThrough(false);
+					// Start capturing the area we need to cache from the response, while it's streamed to the client.
+					final Capture capture =
+						capturingHttpServletResponse.capture(getStartContentMarker(), getEndContentMarker());
 
-					// After the RENDER_RESPONSE phase, copy the area we need to cache from the response buffer
-					// and insert it into our cache
+					// After the RENDER_RESPONSE phase, insert the captured area into our cache
 					subscribeToRequestAfterPhase(RENDER_RESPONSE, new Callback.Void() {
 
 						@Override
 						public void invoke() {
-							String content = null;
-
-							try {
-								content = getContentFromBuffer(bufferedHttpServletResponse.getBufferAsString());
-							}
-							catch (IOException e) {
-								throw new IllegalStateException(e);
-							}
+							String content = capture.getContent();
 
 							if (content != null) {
 								cacheContent(context, content);
@@ -149,11 +158,17 @@ public class Cache extends OutputFamily {
 		ResponseWriter responseWriter = context.getResponseWriter();
 		org.omnifaces.component.output.cache.Cache scopedCache = getCacheImpl(context);
 
-		if (isReset()) {
+		if (isReset() || isWarmup(context)) {
 			scopedCache.remove(key);
 		}
 
+		if (scopedCache instanceof OffHeapCache && ((OffHeapCache) scopedCache).writeTo(key, responseWriter)) {
+			return; // Decoded straight from off-heap memory into the response writer.
+		}
+
+		// Always consult the cache itself here, since it may have been changed earlier in this phase.
 		String childRendering = scopedCache.get(key);
+		getLookup(context).setValue(context, key, childRendering);
 
 		if (childRendering == null) {
 			Writer bufferWriter = new StringWriter();
@@ -221,7 +236,7 @@ public class Cache extends OutputFamily {
 	}
 
 	private void cacheContent(FacesContext context, String content) {
-		cacheContent(context, CacheFactory.getCache(context, getScope()), getKeyWithDefault(context), content);
+		cacheContent(context, getCacheImpl(context), getKeyWithDefault(context), content);
 	}
 
 	private void cacheContent(FacesContext context, org.omnifaces.component.output.cache.Cache scopedCache, String key, String content) {
@@ -232,6 +247,9 @@ public class Cache extends OutputFamily {
 			scopedCache.put(key, content);
 		}
 
+		CacheFactory.getTagIndex().register(scopedCache, key, csvToList(getTags()));
+		getLookup(context).setValue(context, key, content);
+
 		// Marker to register we added a value to the cache during this request
 		context.getExternalContext().getRequestMap().put(VALUE_SET, TRUE);
 	}
@@ -239,14 +257,46 @@ public class Cache extends OutputFamily {
 	private String getKeyWithDefault(FacesContext context) {
 		String key = getKey();
 		if (key == null) {
-			key = context.getViewRoot().getViewId() + "_" + this.getClientId(context);
+			Lookup lookup = getLookup(context);
+			String clientId = getClientId(context);
+
+			// The client ID only changes when this component is inside an iterating component.
+			if (!clientId.equals(lookup.clientId)) {
+				lookup.clientId = clientId;
+				lookup.defaultKey = context.getViewRoot().getViewId() + "_" + clientId;
+			}
+
+			key = lookup.defaultKey;
 		}
 
 		return key;
 	}
 
 	private org.omnifaces.component.output.cache.Cache getCacheImpl(FacesContext context) {
-		return CacheFactory.getCache(context, getScope());
+		return getLookup(context).scopedCache;
+	}
+
+	/**
+	 * Returns the lookups memoized for the current request, resolving the scoped cache if not done yet. They are kept
+	 * in the faces context attributes, so they can't outlive the request.
+	 */
+	private Lookup getLookup(FacesContext context) {
+		@SuppressWarnings("unchecked")
+		Map<Cache, Lookup> lookups = (Map<Cache, Lookup>) context.getAttributes().get(LOOKUPS);
+
+		if (lookups == null) {
+			lookups = new IdentityHashMap<>();
+			context.getAttributes().put(LOOKUPS, lookups);
+		}
+
+		Lookup lookup = lookups.get(this);
+
+		if (lookup == null) {
+			lookup = new Lookup(CacheFactory.getCache(context, getScope()));
+			lookups.put(this, lookup);
+		}
+
+		return lookup;
 	}
 
 	/**
@@ -264,7 +314,23 @@ public class Cache extends OutputFamily {
 	 * @return true if there is a value in the cache corresponding to this component, false otherwise
 	 */
 	private boolean hasCachedValue(FacesContext context) {
-		return CacheFactory.getCache(context, getScope()).get(getKeyWithDefault(context)) != null;
+		String key = getKeyWithDefault(context);
+		Lookup lookup = getLookup(context);
+
+		if (!lookup.hasValue(context, key)) {
+			lookup.setValue(context, key, lookup.scopedCache.get(key));
+		}
+
+		return lookup.value != null;
+	}
+
+	/**
+	 *
+	 * @param context the FacesContext
+	 * @return true if this is an application scoped cache and the current request is a warm-up request, false otherwise
+	 */
+	private boolean isWarmup(FacesContext context) {
+		return "application".equals(getScope()) && CacheWarmer.isWarmupRequest(context);
 	}
 
 	private String getStartContentMarker() {
@@ -275,25 +341,6 @@ public class Cache extends OutputFamily {
 		return String.format(END_CONTENT_MARKER, getClientId());
 	}
 
-	private String getContentFromBuffer(String buffer) {
-		String startMarker = getStartContentMarker();
-		int startIndex = buffer.indexOf(startMarker);
-
-		if (startIndex != -1) {
-
-			String endMarker = getEndContentMarker();
-			int endIndex = buffer.indexOf(endMarker);
-
-			if (endIndex != -1) {
-
-				return buffer.substring(startIndex + startMarker.length(), endIndex);
-			}
-		}
-
-		return null;
-	}
-
-
 	// Attribute getters/setters --------------------------------------------------------------------------------------
 
 	public String getKey() {
@@ -354,4 +401,53 @@ public class Cache extends OutputFamily {
 		state.put(disabled, disabledValue);
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Returns the comma separated tags of the cached content.
+	 * @return The comma separated tags of the cached content.
+	 * @since 2.1
+	 */
+	public String getTags() {
+		return state.get(tags);
+	}
+
+	/**
+	 * Sets the comma separated tags of the cached content.
+	 * @param tagsValue The comma separated tags of the cached content.
+	 * @since 2.1
+	 */
+	public void setTags(String tagsValue) {
+		state.put(tags, tagsValue);
+	}
+
+	// Nested classes -------------------------------------------------------------------------------------------------
+
+	/**
+	 * The scoped cache, the default key and the cached value as looked up during the current request, so that the many
+	 * tree visits during a request don't need to repeat them. The value is looked up again once per phase, so that
+	 * changes to the cache which are made during e.g. the invoke application phase are reflected in the render response.
+	 */
+	private static final class Lookup {
+
+		private final org.omnifaces.component.output.cache.Cache scopedCache;
+		private String clientId;
+		private String defaultKey;
+		private String valueKey;
+		private PhaseId valuePhaseId;
+		private String value;
+
+		public Lookup(org.omnifaces.component.output.cache.Cache scopedCache) {
+			this.scopedCache = scopedCache;
+		}
+
+		public boolean hasValue(FacesContext context, String key) {
+			return valuePhaseId == context.getCurrentPhaseId() && key.equals(valueKey);
+		}
+
+		public void setValue(FacesContext context, String key, String value) {
+			this.valueKey = key;
+			this.valuePhaseId = context.getCurrentPhaseId();
+			this.value = value;
+		}
+	}
+
+}
@@ -12,6 +12,9 @@
  */
 package org.omnifaces.component.output;
 
+import static org.omnifaces.component.output.ResourceInclude.PropertyKeys.cacheKey;
+import static org.omnifaces.component.output.ResourceInclude.PropertyKeys.cacheScope;
+import static org.omnifaces.component.output.ResourceInclude.PropertyKeys.cacheTime;
 import static org.omnifaces.util.Components.validateHasNoChildren;
 
 import java.io.IOException;
@@ -20,12 +23,18 @@ import javax.faces.FacesException;
 import javax.faces.component.FacesComponent;
 import javax.faces.context.ExternalContext;
 import javax.faces.context.FacesContext;
+import javax.faces.context.ResponseWriter;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.omnifaces.component.output.cache.Cache;
+import org.omnifaces.component.output.cache.CacheFactory;
+import org.omnifaces.component.output.cache.CacheWarmer;
+import org.omnifaces.component.output.cache.OffHeapCache;
 import org.omnifaces.servlet.BufferedHttpServletResponse;
 import org.omnifaces.servlet.HttpServletResponseOutputWrapper;
+import org.omnifaces.util.State;
 
 /**
  * <p>
@@ -35,11 +44,20 @@ import org.omnifaces.servlet.HttpServletResponseOutputWrapper;
  * <p>
  * Note that this isn't recommended as a lasting solution, but it might ease a migration from legacy JSP with
  * smelly scriptlets and all on them to a more sane and modern Facelets application.
+ * <p>
+ * The output of the resource can be cached via the same cache as <code>&lt;o:cache&gt;</code> by setting the
+ * <code>cacheKey</code> and/or <code>cacheScope</code> attribute. The resource is then only included when there is no
+ * cached output for the key, which defaults to the path. The <code>cacheScope</code> defaults to "session" and the
+ * <code>cacheTime</code> defaults to the default time of the scope.
+ * <pre>
+ * &lt;o:resourceInclude path="/legacy/menu.jsp" cacheScope="application" cacheTime="300" /&gt;
+ * </pre>
  *
  * @author Arjan Tijms
  * @author Bauke Scholtz
  * @see BufferedHttpServletResponse
  * @see HttpServletResponseOutputWrapper
+ * @see CacheFactory
  */
 @FacesComponent(ResourceInclude.COMPONENT_TYPE)
 public class ResourceInclude extends OutputFamily {
@@ -49,29 +67,165 @@ public class ResourceInclude extends OutputFamily {
 	/** The component type. */
 	public static final String COMPONENT_TYPE = "org.omnifaces.component.output.ResourceInclude";
 
+	// Private constants ----------------------------------------------------------------------------------------------
+
+	private static final String DEFAULT_CACHE_SCOPE = org.omnifaces.component.output.Cache.DEFAULT_SCOPE;
+
+	enum PropertyKeys {
+		cacheKey, cacheScope, cacheTime
+	}
+
+	// Variables ------------------------------------------------------------------------------------------------------
+
+	private final State state = new State(getStateHelper());
+
 	// UIComponent overrides ------------------------------------------------------------------------------------------
 
 	/**
 	 * Create a dispatcher for the resource given by the component's path attribute, catch its output and write it to
-	 * the JSF response writer.
+	 * the JSF response writer. If caching is enabled, then the cached output is written instead, if any.
 	 */
 	@Override
 	public void encodeBegin(FacesContext context) throws IOException {
 		validateHasNoChildren(this);
 
+		if (!isCached()) {
+			include(context, null);
+			return;
+		}
+
+		String key = getCacheKeyWithDefault();
+		String scope = getCacheScope();
+		Cache cache = CacheFactory.getCache(context, scope);
+		ResponseWriter responseWriter = context.getResponseWriter();
+
+		if ("application".equals(scope) && CacheWarmer.isWarmupRequest(context)) {
+			cache.remove(key);
+		}
+		else if (cache instanceof OffHeapCache && ((OffHeapCache) cache).writeTo(key, responseWriter)) {
+			return; // Decoded straight from off-heap memory into the response writer.
+		}
+		else {
+			String content = cache.get(key);
+
+			if (content != null) {
+				responseWriter.write(content);
+				return;
+			}
+		}
+
+		include(context, cache);
+	}
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Include the resource and write its output to the JSF response writer. If the given cache is not null, then put
+	 * the output in there as well.
+	 */
+	private void include(FacesContext context, Cache cache) throws IOException {
 		ExternalContext externalContext = context.getExternalContext();
 		HttpServletRequest request = (HttpServletRequest) externalContext.getRequest();
 		HttpServletResponse response = (HttpServletResponse) externalContext.getResponse();
 		BufferedHttpServletResponse bufferedResponse = new BufferedHttpServletResponse(response);
 
 		try {
-			request.getRequestDispatcher((String) getAttributes().get("path")).include(request, bufferedResponse);
+			request.getRequestDispatcher(getPath()).include(request, bufferedResponse);
 		}
 		catch (ServletException e) {
 			throw new FacesException(e);
 		}
 
-		context.getResponseWriter().write(bufferedResponse.getBufferAsString());
+		try {
+			if (cache == null) {
+				bufferedResponse.writeBufferTo(context.getResponseWriter());
+			}
+			else {
+				String content = bufferedResponse.getBufferAsString();
+				Integer time = getCacheTime();
+
+				if (time != null && time > 0) {
+					cache.put(getCacheKeyWithDefault(), content, time);
+				}
+				else {
+					cache.put(getCacheKeyWithDefault(), content);
+				}
+
+				context.getResponseWriter().write(content);
+			}
+		}
+		finally {
+			bufferedResponse.releaseBuffer();
+		}
+	}
+
+	private boolean isCached() {
+		return getCacheKey() != null || state.get(cacheScope) != null;
+	}
+
+	private String getCacheKeyWithDefault() {
+		String key = getCacheKey();
+		return (key != null) ? key : getPath();
+	}
+
+	private String getPath() {
+		return (String) getAttributes().get("path");
+	}
+
+	// Attribute getters/setters --------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the key under which the output of the resource is cached.
+	 * @return The key under which the output of the resource is cached.
+	 * @since 2.1
+	 */
+	public String getCacheKey() {
+		return state.get(cacheKey);
+	}
+
+	/**
+	 * Sets the key under which the output of the resource is cached. Setting this enables caching.
+	 * @param cacheKeyValue The key under which the output of the resource is cached.
+	 * @since 2.1
+	 */
+	public void setCacheKey(String cacheKeyValue) {
+		state.put(cacheKey, cacheKeyValue);
+	}
+
+	/**
+	 * Returns the scope of the cache, "session" or "application". Defaults to "session".
+	 * @return The scope of the cache.
+	 * @since 2.1
+	 */
+	public String getCacheScope() {
+		return state.get(cacheScope, DEFAULT_CACHE_SCOPE);
+	}
+
+	/**
+	 * Sets the scope of the cache. Setting this enables caching.
+	 * @param cacheScopeValue The scope of the cache.
+	 * @since 2.1
+	 */
+	public void setCacheScope(String cacheScopeValue) {
+		state.put(cacheScope, cacheScopeValue);
+	}
+
+	/**
+	 * Returns the amount of seconds the output of the resource is cached.
+	 * @return The amount of seconds the output of the resource is cached.
+	 * @since 2.1
+	 */
+	public Integer getCacheTime() {
+		return state.get(cacheTime);
+	}
+
+	/**
+	 * Sets the amount of seconds the output of the resource is cached. Defaults to the default time of the scope.
+	 * @param cacheTimeValue The amount of seconds the output of the resource is cached.
+	 * @since 2.1
+	 */
+	public void setCacheTime(Integer cacheTimeValue) {
+		state.put(cacheTime, cacheTimeValue);
 	}
 
-}
\ No newline at end of file
+}
@@ -26,6 +26,7 @@ public final class CacheFactory {
 
 	public static final String CACHE_PROVIDER_PARAM_NAME = "org.omnifaces.cacheprovider";
 	private static final CacheProvider DEFAULT_PROVIDER = new DefaultCacheProvider();
+	private static final CacheTagIndex TAG_INDEX = new CacheTagIndex();
 
 	private CacheFactory() {
 	}
@@ -84,4 +85,28 @@ public final class CacheFactory {
 		return DEFAULT_PROVIDER;
 	}
 
+	/**
+	 * Returns the index of tags to the cache entries that have been tagged with them.
+	 *
+	 * @return the tag index
+	 * @since 2.1
+	 */
+	public static CacheTagIndex getTagIndex() {
+		return TAG_INDEX;
+	}
+
+	/**
+	 * Removes all entries that have been tagged with the given tag, for example via the <code>tags</code> attribute of
+	 * the Cache component, from their caches, regardless of their scope. This does not need a faces context, so it can
+	 * also be invoked from e.g. a background job or a message listener.
+	 *
+	 * @param tag
+	 *            the tag to invalidate, e.g. <code>product:42</code>
+	 * @return the amount of entries that have been removed
+	 * @since 2.1
+	 */
+	public static int invalidateTag(String tag) {
+		return TAG_INDEX.invalidate(tag);
+	}
+
 }
@@ -15,6 +15,8 @@ package org.omnifaces.component.output.cache;
 import static java.util.Collections.list;
 import static org.omnifaces.util.Platform.getFacesServletRegistration;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -49,7 +51,8 @@ public class CacheInitializer {
 		CacheProvider cacheProvider = getCacheProvider(context);
 
 		// Build a map of settings for either the custom- or the default cache provider and set them.
-		cacheProvider.setParameters(getCacheSetting(context));
+		Map<String, String> settings = getCacheSetting(context);
+		cacheProvider.setParameters(settings);
 
 		// Installs a filter that on demands buffers the response from the Faces Servlet, in order to grab child content
 		// from the buffer.
@@ -58,6 +61,31 @@ public class CacheInitializer {
 			FilterRegistration bufferFilterRegistration = context.addFilter(OnDemandResponseBufferFilter.class.getName(), OnDemandResponseBufferFilter.class);
 			bufferFilterRegistration.addMappingForServletNames(null, true, facesServletRegistration.getName());
 		}
+
+		// Starts rendering the configured warm-up targets in the background, if any.
+		CacheWarmer.start(context, settings);
+	}
+
+	/**
+	 * Stops the {@link CacheWarmer}, if any, and closes the configured cache provider if it's {@link Closeable}, so
+	 * that it can release or persist its resources.
+	 *
+	 * @param context The involved servlet context.
+	 * @since 2.1
+	 */
+	public static void closeProvider(ServletContext context) {
+		CacheWarmer.stop(context);
+
+		CacheProvider cacheProvider = CacheFactory.getCacheProvider(context);
+
+		if (cacheProvider instanceof Closeable) {
+			try {
+				((Closeable) cacheProvider).close();
+			}
+			catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
 	}
 
 	private static CacheProvider getCacheProvider(ServletContext context) {
@@ -86,7 +86,7 @@ public abstract class CacheInstancePerScopeProvider implements CacheProvider {
 		if (!applicationMap.containsKey(DEFAULT_CACHE_PARAM_NAME)) {
 			synchronized (DefaultCacheProvider.class) {
 				if (!applicationMap.containsKey(DEFAULT_CACHE_PARAM_NAME)) {
-					applicationMap.put(DEFAULT_CACHE_PARAM_NAME, createCache(appDefaultTimeToLive, appMaxCapacity));
+					applicationMap.put(DEFAULT_CACHE_PARAM_NAME, createCache("application", appDefaultTimeToLive, appMaxCapacity));
 				}
 
 			}
@@ -102,7 +102,7 @@ public abstract class CacheInstancePerScopeProvider implements CacheProvider {
 			Object session = context.getExternalContext().getSession(true);
 			synchronized (session) {
 				if (!sessionMap.containsKey(DEFAULT_CACHE_PARAM_NAME)) {
-					sessionMap.put(DEFAULT_CACHE_PARAM_NAME, createCache(sessionDefaultTimeToLive, sessionMaxCapacity));
+					sessionMap.put(DEFAULT_CACHE_PARAM_NAME, createCache("session", sessionDefaultTimeToLive, sessionMaxCapacity));
 				}
 			}
 		}
@@ -110,6 +110,21 @@ public abstract class CacheInstancePerScopeProvider implements CacheProvider {
 		return (Cache) sessionMap.get(DEFAULT_CACHE_PARAM_NAME);
 	}
 
+	/**
+	 * Creates a new cache instance for the given scope. The default implementation ignores the scope and delegates to
+	 * {@link #createCache(Integer, Integer)}. Providers that need a different kind of cache for a specific scope can
+	 * override this.
+	 *
+	 * @param scope the scope for which the cache is created, either "application" or "session".
+	 * @param timeToLive the default time to live in seconds, or null if none is configured for the scope.
+	 * @param maxCapacity the maximum capacity, or null if none is configured for the scope.
+	 * @return a new cache instance for the given scope.
+	 * @since 2.1
+	 */
+	protected Cache createCache(String scope, Integer timeToLive, Integer maxCapacity) {
+		return createCache(timeToLive, maxCapacity);
+	}
+
 	protected abstract Cache createCache(Integer timeToLive, Integer maxCapacity);
 
 }
\ No newline at end of file
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.component.output.cache;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Index of tags to the cache entries that have been tagged with them, across all caches and scopes. This makes it
+ * possible to invalidate all entries that depend on e.g. a certain product in one call, without knowing their keys.
+ * <p>
+ * The cache implementations of OmniFaces {@link #unregister(Cache, String) unregister} the keys of entries which are
+ * removed, evicted or found expired, and a tag is removed from the index as soon as it has no keys anymore. The index
+ * thus doesn't outgrow the caches, even with tags which are unique per entry, such as <code>product:#{id}</code>.
+ * Caches are weakly referenced, so the index doesn't keep e.g. the caches of expired sessions alive; their entries are
+ * periodically purged from the index.
+ * <p>
+ * Note that a session scoped cache that has been passivated or replicated is a new instance which is not in the index
+ * anymore until its entries are cached again.
+ *
+ * @since 2.1
+ * @author agent
+ * @see CacheFactory#invalidateTag(String)
+ */
+public final class CacheTagIndex {
+
+	private static final int PURGE_INTERVAL = 1000;
+
+	private final ConcurrentMap<String, Set<TaggedKey>> index = new ConcurrentHashMap<>();
+	private final ConcurrentMap<TaggedKey, Set<String>> tagsByKey = new ConcurrentHashMap<>();
+	private final AtomicInteger registrations = new AtomicInteger();
+
+	/**
+	 * Registers the given key of the given cache under the given tags.
+	 *
+	 * @param cache the cache in which the entry is stored.
+	 * @param key the key of the entry.
+	 * @param tags the tags of the entry.
+	 */
+	public void register(Cache cache, String key, Collection<String> tags) {
+		if (tags.isEmpty()) {
+			return;
+		}
+
+		TaggedKey taggedKey = new TaggedKey(cache, key);
+		getOrCreate(tagsByKey, taggedKey).addAll(tags);
+
+		for (String tag : tags) {
+			Set<TaggedKey> taggedKeys;
+
+			do {
+				taggedKeys = getOrCreate(index, tag);
+				taggedKeys.add(taggedKey);
+			}
+			while (index.get(tag) != taggedKeys); // Tag has been removed in the meanwhile because it was empty.
+		}
+
+		if (registrations.incrementAndGet() % PURGE_INTERVAL == 0) {
+			purge();
+		}
+	}
+
+	/**
+	 * Unregisters the given key of the given cache from all of its tags. Cache implementations should invoke this when
+	 * an entry is removed, evicted or found expired. Tags which have no keys anymore are removed from the index.
+	 *
+	 * @param cache the cache in which the entry was stored.
+	 * @param key the key of the entry.
+	 */
+	public void unregister(Cache cache, String key) {
+		if (tagsByKey.isEmpty()) {
+			return;
+		}
+
+		TaggedKey taggedKey = new TaggedKey(cache, key);
+		Set<String> tags = tagsByKey.remove(taggedKey);
+
+		if (tags == null) {
+			return;
+		}
+
+		for (String tag : tags) {
+			Set<TaggedKey> taggedKeys = index.get(tag);
+
+			if (taggedKeys != null) {
+				taggedKeys.remove(taggedKey);
+				removeIfEmpty(tag, taggedKeys);
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries that have been tagged with the given tag from their caches.
+	 *
+	 * @param tag the tag to invalidate.
+	 * @return the amount of entries that have been removed, not counting entries that were already gone.
+	 */
+	public int invalidate(String tag) {
+		Set<TaggedKey> taggedKeys = index.remove(tag);
+
+		if (taggedKeys == null) {
+			return 0;
+		}
+
+		int removed = 0;
+
+		for (TaggedKey taggedKey : taggedKeys) {
+			Cache cache = taggedKey.get();
+
+			if (cache != null) {
+				if (cache.get(taggedKey.key) != null) {
+					removed++;
+				}
+
+				cache.remove(taggedKey.key);
+				unregister(cache, taggedKey.key); // In case the cache implementation doesn't.
+			}
+		}
+
+		return removed;
+	}
+
+	/**
+	 * Removes the keys of garbage collected caches, the keys which have lost a race with unregister(), and the tags
+	 * that have no keys anymore.
+	 */
+	private void purge() {
+		for (Iterator<TaggedKey> iterator = tagsByKey.keySet().iterator(); iterator.hasNext();) {
+			if (iterator.next().get() == null) {
+				iterator.remove();
+			}
+		}
+
+		for (Entry<String, Set<TaggedKey>> entry : index.entrySet()) {
+			Set<TaggedKey> taggedKeys = entry.getValue();
+
+			for (Iterator<TaggedKey> iterator = taggedKeys.iterator(); iterator.hasNext();) {
+				TaggedKey taggedKey = iterator.next();
+
+				if (taggedKey.get() == null || !tagsByKey.containsKey(taggedKey)) {
+					iterator.remove();
+				}
+			}
+
+			removeIfEmpty(entry.getKey(), taggedKeys);
+		}
+	}
+
+	private void removeIfEmpty(String tag, Set<TaggedKey> taggedKeys) {
+		if (taggedKeys.isEmpty()) {
+			index.remove(tag, taggedKeys); // A concurrent register() will notice this and add its key again.
+		}
+	}
+
+	private static <K, V> Set<V> getOrCreate(ConcurrentMap<K, Set<V>> map, K key) {
+		Set<V> set = map.get(key);
+
+		if (set == null) {
+			Set<V> newSet = Collections.newSetFromMap(new ConcurrentHashMap<V, Boolean>());
+			set = map.putIfAbsent(key, newSet);
+
+			if (set == null) {
+				set = newSet;
+			}
+		}
+
+		return set;
+	}
+
+	/**
+	 * A key in a weakly referenced cache. Caches are compared by identity.
+	 */
+	private static final class TaggedKey extends WeakReference<Cache> {
+
+		private final String key;
+		private final int hashCode;
+
+		public TaggedKey(Cache cache, String key) {
+			super(cache);
+			this.key = key;
+			hashCode = 31 * System.identityHashCode(cache) + key.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (this == object) {
+				return true;
+			}
+
+			if (!(object instanceof TaggedKey)) {
+				return false;
+			}
+
+			TaggedKey other = (TaggedKey) object;
+			Cache cache = get();
+			return cache != null && cache == other.get() && key.equals(other.key);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.component.output.cache;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.logging.Level.WARNING;
+import static org.omnifaces.util.Platform.getFacesServletRegistration;
+import static org.omnifaces.util.Utils.csvToList;
+import static org.omnifaces.util.Utils.isEmpty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+import javax.faces.context.FacesContext;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRegistration;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.ServletRequestListener;
+
+import org.omnifaces.component.output.Cache;
+
+/**
+ * Renders the configured warm-up targets in the background, so that the application scoped {@link Cache} fragments on
+ * them are put in the configured {@link CacheProvider} before real traffic arrives.
+ * <p>
+ * The targets are view IDs with optional request parameters, e.g. <code>/index.xhtml, /products.xhtml?type=new</code>,
+ * and are set via the {@value #CACHE_WARMUP_TARGETS} context parameter. They are requested via HTTP on the server
+ * itself, at the base URL as set via the {@value #CACHE_WARMUP_BASE_URL} context parameter, or, if absent, at the local
+ * address and port on which the first request to the application was received. The host name of that request is never
+ * used, as it's controlled by the client. Set the base URL explicitly when the local address is not reachable with the
+ * scheme of that request, e.g. when HTTPS is only served with a certificate for a host name. Warm-up requests carry a
+ * secret token, and the application scoped cache components re-render their content for those requests instead of
+ * serving the cached content.
+ * <p>
+ * The targets are rendered again every {@value #CACHE_WARMUP_INTERVAL} seconds. This defaults to 90% of the
+ * <code>APPLICATION_TTL</code> cache setting, so that fresh content is put in the cache before the old content expires.
+ * If neither is set, the targets are rendered only once at startup.
+ *
+ * @since 2.1
+ * @author agent
+ * @see CacheInitializer
+ */
+public final class CacheWarmer {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	public static final String CACHE_WARMUP_TARGETS = "org.omnifaces.CACHE_WARMUP_TARGETS";
+	public static final String CACHE_WARMUP_BASE_URL = "org.omnifaces.CACHE_WARMUP_BASE_URL";
+	public static final String CACHE_WARMUP_INTERVAL = "org.omnifaces.CACHE_WARMUP_INTERVAL";
+
+	public static final String WARMUP_HEADER = "X-OmniFaces-Cache-Warmup";
+
+	private static final String WARMER_ATTRIBUTE_NAME = "org.omnifaces.cachewarmer";
+	private static final String APPLICATION_TTL_SETTING = CacheInstancePerScopeProvider.APP_TTL_PARAM_NAME;
+	private static final int STARTUP_RETRY_DELAY = 5;
+	private static final int STARTUP_RETRIES = 12;
+
+	private static final Logger logger = Logger.getLogger(CacheWarmer.class.getName());
+
+	private static final String LOG_WARMUP_FAILED = "Warming up o:cache fragments of '%s' failed.";
+
+	// Properties -----------------------------------------------------------------------------------------------------
+
+	private final String token = UUID.randomUUID().toString();
+	private final String contextPath;
+	private final List<String> paths;
+	private final Integer interval;
+	private final ScheduledExecutorService executor;
+	private volatile String baseURL;
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	private CacheWarmer(ServletContext context, List<String> paths, Integer interval) {
+		this.contextPath = context.getContextPath();
+		this.paths = paths;
+		this.interval = interval;
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, CacheWarmer.class.getSimpleName());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Starts warming up the targets configured in the given servlet context, if any.
+	 * @param context The involved servlet context.
+	 * @param settings The cache settings, used to derive the default interval.
+	 */
+	static void start(ServletContext context, Map<String, String> settings) {
+		List<String> targets = csvToList(context.getInitParameter(CACHE_WARMUP_TARGETS));
+
+		if (targets.isEmpty()) {
+			return;
+		}
+
+		List<String> paths = new ArrayList<>();
+
+		for (String target : targets) {
+			paths.add(toPath(context, target));
+		}
+
+		final CacheWarmer warmer = new CacheWarmer(context, paths, getInterval(context, settings));
+		context.setAttribute(WARMER_ATTRIBUTE_NAME, warmer);
+		String baseURL = context.getInitParameter(CACHE_WARMUP_BASE_URL);
+
+		if (!isEmpty(baseURL)) {
+			warmer.start(baseURL.replaceAll("/+$", ""));
+		}
+		else {
+			context.addListener(new ServletRequestListener() {
+
+				@Override
+				public void requestInitialized(ServletRequestEvent event) {
+					if (warmer.baseURL == null) {
+						warmer.start(getLocalBaseURL(event.getServletRequest()));
+					}
+				}
+
+				@Override
+				public void requestDestroyed(ServletRequestEvent event) {
+					// NOOP.
+				}
+			});
+		}
+	}
+
+	/**
+	 * Stops warming up the targets of the given servlet context, if any.
+	 * @param context The involved servlet context.
+	 */
+	static void stop(ServletContext context) {
+		CacheWarmer warmer = (CacheWarmer) context.getAttribute(WARMER_ATTRIBUTE_NAME);
+
+		if (warmer != null) {
+			warmer.executor.shutdownNow();
+			context.removeAttribute(WARMER_ATTRIBUTE_NAME);
+		}
+	}
+
+	/**
+	 * Returns whether the current request is a warm-up request of this application. Application scoped caches should
+	 * then render and cache their content afresh.
+	 * @param context The involved faces context.
+	 * @return Whether the current request is a warm-up request of this application.
+	 */
+	public static boolean isWarmupRequest(FacesContext context) {
+		String header = context.getExternalContext().getRequestHeaderMap().get(WARMUP_HEADER);
+
+		if (header == null) {
+			return false;
+		}
+
+		CacheWarmer warmer = (CacheWarmer) context.getExternalContext().getApplicationMap().get(WARMER_ATTRIBUTE_NAME);
+		return warmer != null && warmer.token.equals(header);
+	}
+
+	private synchronized void start(String baseURL) {
+		if (this.baseURL != null) {
+			return;
+		}
+
+		this.baseURL = baseURL;
+		executor.submit(new Runnable() {
+
+			private int retries;
+
+			@Override
+			public void run() {
+				if (!warmup() && retries++ < STARTUP_RETRIES) {
+					executor.schedule(this, STARTUP_RETRY_DELAY, SECONDS); // Server is possibly not accepting requests yet.
+				}
+				else if (interval != null) {
+					executor.scheduleWithFixedDelay(new Runnable() {
+						@Override
+						public void run() {
+							warmup();
+						}
+					}, interval, interval, SECONDS);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Requests all targets and returns <code>false</code> if the server could not be connected.
+	 */
+	private boolean warmup() {
+		for (String path : paths) {
+			try {
+				request(baseURL + contextPath + path);
+			}
+			catch (ConnectException e) {
+				return false;
+			}
+			catch (IOException | RuntimeException e) {
+				logger.log(WARNING, String.format(LOG_WARMUP_FAILED, path), e);
+			}
+
+			if (Thread.currentThread().isInterrupted()) {
+				break;
+			}
+		}
+
+		return true;
+	}
+
+	private void request(String url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestProperty(WARMUP_HEADER, token);
+		connection.setInstanceFollowRedirects(false);
+
+		try {
+			int status = connection.getResponseCode();
+
+			if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+				throw new IOException("HTTP status " + status);
+			}
+
+			try (InputStream input = connection.getInputStream()) {
+				while (input.read(new byte[8192]) != -1) {
+					// Just consume the response, so that the connection can be reused.
+				}
+			}
+		}
+		finally {
+			connection.disconnect();
+		}
+	}
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Converts the given view ID with optional query string to a path which is mapped on the faces servlet.
+	 */
+	private static String toPath(ServletContext context, String target) {
+		int queryStringIndex = target.indexOf('?');
+		String viewId = (queryStringIndex < 0) ? target : target.substring(0, queryStringIndex);
+		String queryString = (queryStringIndex < 0) ? "" : target.substring(queryStringIndex);
+		ServletRegistration registration = getFacesServletRegistration(context);
+
+		if (registration != null) {
+			for (String mapping : registration.getMappings()) {
+				if (mapping.startsWith("*.")) {
+					int extensionIndex = viewId.lastIndexOf('.');
+					String path = (extensionIndex > viewId.lastIndexOf('/')) ? viewId.substring(0, extensionIndex) : viewId;
+					return path + mapping.substring(1) + queryString;
+				}
+				else if (mapping.startsWith("/") && mapping.endsWith("/*")) {
+					return mapping.substring(0, mapping.length() - 2) + viewId + queryString;
+				}
+			}
+		}
+
+		return target;
+	}
+
+	/**
+	 * Returns the scheme, local address and local port of the given request as base URL. Unlike the request URL, this
+	 * can't be forged by the client via the <code>Host</code> header.
+	 */
+	private static String getLocalBaseURL(ServletRequest request) {
+		String address = request.getLocalAddr();
+
+		if (address.indexOf(':') >= 0) {
+			address = "[" + address + "]"; // IPv6 literal.
+		}
+
+		return request.getScheme() + "://" + address + ":" + request.getLocalPort();
+	}
+
+	private static Integer getInterval(ServletContext context, Map<String, String> settings) {
+		String interval = context.getInitParameter(CACHE_WARMUP_INTERVAL);
+
+		if (!isEmpty(interval)) {
+			return Integer.valueOf(interval);
+		}
+
+		String timeToLive = settings.get(APPLICATION_TTL_SETTING);
+
+		if (!isEmpty(timeToLive)) {
+			return Math.max(1, Integer.valueOf(timeToLive) * 9 / 10);
+		}
+
+		return null;
+	}
+
+}
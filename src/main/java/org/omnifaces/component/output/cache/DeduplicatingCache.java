@@ -0,0 +1,252 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.component.output.cache;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpSessionActivationListener;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import javax.servlet.http.HttpSessionEvent;
+
+import org.omnifaces.util.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import org.omnifaces.util.concurrentlinkedhashmap.EvictionListener;
+
+/**
+ * A session scoped cache implementation which doesn't store the cached content itself, but only a reference to it in a
+ * {@link SharedFragmentPool}, which is shared by all sessions on this node. Identical content, such as a role based menu
+ * which is rendered for thousands of users, is thus stored only once per node, and the sessions, as well as their
+ * serialized form for passivation and replication, only hold small content hashes.
+ * <p>
+ * References are released when entries are replaced, removed, evicted or found expired, and when the cache is unbound
+ * from its session or the session is passivated. Entries which are gone are also unregistered from the
+ * {@link CacheTagIndex}. Every entry remembers whether it still holds its reference, so that
+ * it's never released twice. When the cache is deserialized on another node, or activated after passivation, only the
+ * entries whose content is present in the pool of that node are kept; the others are just a cache miss.
+ *
+ * @since 2.1
+ * @author agent
+ * @see DefaultCacheProvider
+ */
+public class DeduplicatingCache implements Cache, HttpSessionBindingListener, HttpSessionActivationListener {
+
+	private static final long serialVersionUID = -3936478815617285476L;
+
+	private final Integer defaultTimeToLive;
+	private final ConcurrentMap<String, SharedEntry> cacheStore;
+
+	/**
+	 * Creates a new deduplicating cache.
+	 *
+	 * @param defaultTimeToLive the default time to live in seconds, or null if entries should not expire by default.
+	 * @param maxCapacity the maximum amount of entries, or null if unbounded.
+	 */
+	public DeduplicatingCache(Integer defaultTimeToLive, Integer maxCapacity) {
+		this.defaultTimeToLive = defaultTimeToLive;
+
+		if (maxCapacity != null) {
+			cacheStore = new ConcurrentLinkedHashMap.Builder<String, SharedEntry>()
+				.maximumWeightedCapacity(maxCapacity)
+				.listener(new ReleasingListener())
+				.build();
+		}
+		else {
+			cacheStore = new ConcurrentHashMap<>();
+		}
+	}
+
+	@Override
+	public String get(String key) {
+		SharedEntry entry = getValidEntry(key);
+		return (entry != null && entry.getValue() != null) ? SharedFragmentPool.getInstance().get(entry.getValue()) : null;
+	}
+
+	@Override
+	public void put(String key, String value) {
+		if (defaultTimeToLive != null) {
+			put(key, value, defaultTimeToLive);
+		} else {
+			put(key, value, -1);
+		}
+	}
+
+	@Override
+	public void put(String key, String value, int timeToLive) {
+		String hash = SharedFragmentPool.getInstance().acquire(value);
+		SharedEntry entry = new SharedEntry(hash, timeToLiveToDate(timeToLive));
+		SharedEntry oldEntry = getValidEntry(key);
+
+		if (oldEntry != null) {
+			entry.getAttributes().putAll(oldEntry.getAttributes());
+		}
+
+		// Replace the entry as a whole, so that the reference of the replaced entry is released exactly once.
+		release(cacheStore.put(key, entry));
+	}
+
+	@Override
+	public Object getAttribute(String key, String name) {
+		SharedEntry entry = getValidEntry(key);
+		return entry != null ? entry.getAttributes().get(name) : null;
+	}
+
+	@Override
+	public void putAttribute(String key, String name, Object value, int timeToLive) {
+		SharedEntry entry = getValidEntry(key);
+
+		if (entry == null) {
+			// NOTE: timeToLive is only used when a new entry is created
+			entry = new SharedEntry(null, timeToLiveToDate(timeToLive));
+			release(cacheStore.put(key, entry));
+		}
+
+		entry.getAttributes().put(name, value);
+	}
+
+	@Override
+	public void remove(String key) {
+		release(cacheStore.remove(key));
+		unregister(key);
+	}
+
+	@Override
+	public void valueBound(HttpSessionBindingEvent event) {
+		// NOOP.
+	}
+
+	@Override
+	public void valueUnbound(HttpSessionBindingEvent event) {
+		releaseAll();
+
+		for (String key : cacheStore.keySet()) {
+			unregister(key);
+		}
+	}
+
+	@Override
+	public void sessionWillPassivate(HttpSessionEvent event) {
+		releaseAll(); // The entries themselves are kept, so that they can be reacquired after activation.
+	}
+
+	@Override
+	public void sessionDidActivate(HttpSessionEvent event) {
+		reacquireAll(); // NOOP for the entries which were already reacquired during deserialization.
+	}
+
+	private SharedEntry getValidEntry(String key) {
+		SharedEntry entry = cacheStore.get(key);
+
+		if (entry != null && !entry.isValid()) {
+			if (cacheStore.remove(key, entry)) {
+				release(entry);
+				unregister(key);
+			}
+
+			return null;
+		}
+
+		return entry;
+	}
+
+	private void releaseAll() {
+		for (SharedEntry entry : cacheStore.values()) {
+			entry.release();
+		}
+	}
+
+	private void reacquireAll() {
+		for (Iterator<SharedEntry> iterator = cacheStore.values().iterator(); iterator.hasNext();) {
+			if (!iterator.next().reacquire()) {
+				iterator.remove(); // Content is not present on this node.
+			}
+		}
+	}
+
+	private void unregister(String key) {
+		CacheFactory.getTagIndex().unregister(this, key);
+	}
+
+	private static void release(SharedEntry entry) {
+		if (entry != null) {
+			entry.release();
+		}
+	}
+
+	private static Date timeToLiveToDate(int timeToLive) {
+		return (timeToLive != -1) ? new Date(currentTimeMillis() + SECONDS.toMillis(timeToLive)) : null;
+	}
+
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+		input.defaultReadObject();
+		reacquireAll();
+	}
+
+	/**
+	 * A cache entry which remembers whether it holds a reference to its content in the pool. The reference is released
+	 * at most once, and only reacquired when it's not held anymore.
+	 */
+	private static final class SharedEntry extends CacheEntry {
+
+		private static final long serialVersionUID = 1L;
+
+		private transient boolean held;
+
+		public SharedEntry(String hash, Date validTill) {
+			super(hash, validTill);
+			held = true;
+		}
+
+		public synchronized void release() {
+			if (held) {
+				held = false;
+
+				if (getValue() != null) {
+					SharedFragmentPool.getInstance().release(getValue());
+				}
+			}
+		}
+
+		public synchronized boolean reacquire() {
+			if (!held) {
+				held = getValue() == null || SharedFragmentPool.getInstance().acquireExisting(getValue());
+			}
+
+			return held;
+		}
+	}
+
+	/**
+	 * Releases the references of evicted entries and unregisters their keys. It's serializable, since it's serialized
+	 * along with the cache store.
+	 */
+	private final class ReleasingListener implements EvictionListener<String, SharedEntry>, Serializable {
+
+		private static final long serialVersionUID = 2L;
+
+		@Override
+		public void onEviction(String key, SharedEntry entry) {
+			release(entry);
+			unregister(key);
+		}
+	}
+
+}
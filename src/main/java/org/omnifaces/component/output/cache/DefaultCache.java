@@ -12,10 +12,12 @@
  */
 package org.omnifaces.component.output.cache;
 
+import java.io.Serializable;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.omnifaces.util.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import org.omnifaces.util.concurrentlinkedhashmap.EvictionListener;
 
 /**
  * An in-memory cache implementation that's used if the user did not configure an explicit caching provider.
@@ -42,10 +44,25 @@ public class DefaultCache extends TimeToLiveCache {
 		if (maxCapacity != null) {
 			return new ConcurrentLinkedHashMap.Builder<String, CacheEntry>()
 						    .maximumWeightedCapacity(maxCapacity)
+						    .listener(new UnregisteringEvictionListener())
 						    .build();
 		} else {
 			return new ConcurrentHashMap<>();
 		}
 	}
 
+	/**
+	 * Unregisters evicted entries from the {@link CacheTagIndex}. It's serializable, since it's serialized along with
+	 * the cache store.
+	 */
+	private final class UnregisteringEvictionListener implements EvictionListener<String, CacheEntry>, Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void onEviction(String key, CacheEntry entry) {
+			unregister(key);
+		}
+	}
+
 }
\ No newline at end of file
@@ -12,6 +12,8 @@
  */
 package org.omnifaces.component.output.cache;
 
+import java.util.Map;
+
 import org.omnifaces.util.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
 
 /**
@@ -21,6 +23,10 @@ import org.omnifaces.util.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
  * This will create a Cache instance that uses a repackaged {@link ConcurrentLinkedHashMap} for the actual implementation.
  * <p>
  * <b>See:</b> <a href="http://code.google.com/p/concurrentlinkedhashmap">http://code.google.com/p/concurrentlinkedhashmap</a>
+ * <p>
+ * When the <code>SESSION_DEDUPLICATION</code> setting is set to <code>true</code> via the
+ * <code>org.omnifaces.CACHE_SETTING_SESSION_DEDUPLICATION</code> context parameter, session scoped caches store only a
+ * reference to content which is shared among all sessions. See {@link DeduplicatingCache}.
  *
  * @since 1.1
  * @author Arjan Tijms
@@ -28,6 +34,25 @@ import org.omnifaces.util.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
  */
 public class DefaultCacheProvider extends CacheInstancePerScopeProvider {
 
+	public static final String SESSION_DEDUPLICATION_PARAM_NAME = "SESSION_DEDUPLICATION";
+
+	private boolean sessionDeduplication;
+
+	@Override
+	public void setParameters(Map<String, String> parameters) {
+		super.setParameters(parameters);
+		sessionDeduplication = Boolean.valueOf(parameters.get(SESSION_DEDUPLICATION_PARAM_NAME));
+	}
+
+	@Override
+	protected Cache createCache(String scope, Integer timeToLive, Integer maxCapacity) {
+		if (sessionDeduplication && "session".equals(scope)) {
+			return new DeduplicatingCache(timeToLive, maxCapacity);
+		}
+
+		return createCache(timeToLive, maxCapacity);
+	}
+
 	@Override
 	protected Cache createCache(Integer timeToLive, Integer maxCapacity) {
 		return new DefaultCache(timeToLive, maxCapacity);
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.component.output.cache;
+
+import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.omnifaces.component.output.cache.MappedSegmentFile.Record;
+import org.omnifaces.util.Callback;
+import org.omnifaces.util.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import org.omnifaces.util.concurrentlinkedhashmap.EvictionListener;
+
+/**
+ * A two-tier cache implementation. Hot entries are kept in a repackaged {@link ConcurrentLinkedHashMap}, exactly like
+ * the {@link DefaultCache}. Entries which are evicted from it because its maximum capacity is exceeded are not discarded,
+ * but spilled to an append-only segment in a memory-mapped file on local disk. When such an entry is accessed again,
+ * it's promoted back to the hot tier.
+ * <p>
+ * The segment file survives restarts, so a redeploy does not start with a cold cache. To also keep the hot entries,
+ * {@link #close()} spills them to disk as well; this is done by the {@link DiskOverflowCacheProvider} when the
+ * application is shut down.
+ * <p>
+ * Attributes are spilled along with the value when they are serializable, otherwise they are dropped, which only means
+ * that the associated cached value expressions will be re-evaluated.
+ * <p>
+ * Instances of this cache are not serializable, and are therefore only suitable for the application scope.
+ *
+ * @since 2.1
+ * @author agent
+ * @see DiskOverflowCacheProvider
+ */
+public class DiskOverflowCache extends TimeToLiveCache implements Closeable {
+
+	private static final long serialVersionUID = -5587426470452329521L;
+
+	private final transient MappedSegmentFile disk;
+	private final transient ConcurrentLinkedHashMap<String, CacheEntry> hotStore;
+
+	/**
+	 * Creates a new two-tier cache.
+	 *
+	 * @param defaultTimeToLive the default time to live in seconds, or null if entries should not expire by default.
+	 * @param maxCapacity the maximum amount of entries in the hot tier.
+	 * @param segmentFile the segment file for the disk tier. Will be created if it doesn't exist yet.
+	 * @param segmentSize the size of the segment file in bytes.
+	 * @throws IOException When the segment file cannot be opened or mapped.
+	 */
+	public DiskOverflowCache(Integer defaultTimeToLive, int maxCapacity, File segmentFile, int segmentSize) throws IOException {
+		super(defaultTimeToLive);
+		disk = new MappedSegmentFile(segmentFile, segmentSize, new Callback.WithArgument<String>() {
+
+			@Override
+			public void invoke(String key) {
+				if (!hotStore.containsKey(key)) {
+					unregister(key);
+				}
+			}
+		});
+		hotStore = new ConcurrentLinkedHashMap.Builder<String, CacheEntry>()
+			.maximumWeightedCapacity(maxCapacity)
+			.listener(new EvictionListener<String, CacheEntry>() {
+
+				@Override
+				public void onEviction(String key, CacheEntry entry) {
+					spill(key, entry);
+				}
+			})
+			.build();
+		setCacheStore(hotStore);
+	}
+
+	@Override
+	public String get(String key) {
+		promote(key);
+		return super.get(key);
+	}
+
+	@Override
+	public void put(String key, String value, int timeToLive) {
+		disk.remove(key); // Any disk record is outdated now, so there's no need to promote it first.
+		super.put(key, value, timeToLive);
+	}
+
+	@Override
+	public Object getAttribute(String key, String name) {
+		promote(key);
+		return super.getAttribute(key, name);
+	}
+
+	@Override
+	public void putAttribute(String key, String name, Object value, int timeToLive) {
+		promote(key); // The attribute is added to the existing value and attributes, so they must be hot first.
+		disk.remove(key);
+		super.putAttribute(key, name, value, timeToLive);
+	}
+
+	@Override
+	public void remove(String key) {
+		super.remove(key);
+		disk.remove(key);
+	}
+
+	/**
+	 * Spills all hot entries, flushes the segment file and closes it. After this, the cache should not be used anymore.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (Entry<String, CacheEntry> entry : hotStore.entrySet()) {
+			spill(entry.getKey(), entry.getValue());
+		}
+
+		disk.close();
+	}
+
+	private void promote(String key) {
+		if (hotStore.containsKey(key) || !disk.contains(key)) {
+			return;
+		}
+
+		Record record = disk.read(key);
+
+		if (record == null) {
+			return;
+		}
+
+		if (record.validTill != -1 && record.validTill <= currentTimeMillis()) {
+			disk.remove(key);
+			unregister(key);
+			return;
+		}
+
+		CacheEntry entry = new CacheEntry(record.value != null ? new String(record.value, UTF_8) : null, record.validTill != -1 ? new Date(record.validTill) : null);
+		entry.getAttributes().putAll(deserialize(record.attributes));
+		hotStore.putIfAbsent(key, entry); // The disk record is kept; it's still up to date until the entry is modified.
+	}
+
+	/**
+	 * Appends the given entry to disk, even if there's already a record for the key. That record may namely be
+	 * outdated, e.g. when the eviction of an older entry for the same key interleaved with a put. The newest record
+	 * always wins.
+	 */
+	private void spill(String key, CacheEntry entry) {
+		byte[] value = entry.getValue() != null ? entry.getValue().getBytes(UTF_8) : null;
+		long validTill = entry.getValidTill() != null ? entry.getValidTill().getTime() : -1;
+
+		if (!entry.isValid() || !disk.append(key, validTill, value, serialize(entry.getAttributes()))) {
+			unregister(key); // Entry is gone for good.
+		}
+	}
+
+	private static byte[] serialize(Map<String, Object> attributes) {
+		if (attributes.isEmpty()) {
+			return null;
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+			output.writeObject(new HashMap<>(attributes));
+		}
+		catch (IOException ignore) {
+			return null; // Not serializable. The cached value expressions will just be re-evaluated.
+		}
+
+		return bytes.toByteArray();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> deserialize(byte[] attributes) {
+		if (attributes != null) {
+			try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(attributes))) {
+				return (Map<String, Object>) input.readObject();
+			}
+			catch (IOException | ClassNotFoundException ignore) {
+				// Class has changed or disappeared since the last deploy. The cached value expressions will just be re-evaluated.
+			}
+		}
+
+		return new HashMap<>();
+	}
+
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		throw new NotSerializableException(DiskOverflowCache.class.getName() + " can only be used in application scope.");
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.component.output.cache;
+
+import static org.omnifaces.util.Faces.getServletContext;
+import static org.omnifaces.util.Utils.isEmpty;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A cache provider that backs the application scoped cache by a local disk, so that large amounts of rarely changing
+ * content, such as footers, sitemaps and report tables, can be cached without keeping all of it in memory. Session
+ * scoped caches are kept in memory only, exactly as with the {@link DefaultCacheProvider}.
+ * <p>
+ * The <code>APPLICATION_MAX_CAPACITY</code> setting determines the amount of entries in the hot tier, and defaults to
+ * 1000 for this provider. Entries evicted from it are spilled to disk; see {@link DiskOverflowCache}. Besides the
+ * settings supported by {@link CacheInstancePerScopeProvider}, the following settings are supported via
+ * <code>org.omnifaces.CACHE_SETTING_</code> prefixed context parameters:
+ * <ul>
+ * <li><code>DISK_OVERFLOW_DIRECTORY</code>: the directory of the segment file, which is named after the context path.
+ * Defaults to an <code>omnifaces-cache</code> directory in the <code>java.io.tmpdir</code>.
+ * <li><code>DISK_OVERFLOW_SIZE</code>: the size of the segment file in bytes. Defaults to 256MB.
+ * </ul>
+ *
+ * @since 2.1
+ * @author agent
+ * @see DiskOverflowCache
+ */
+public class DiskOverflowCacheProvider extends CacheInstancePerScopeProvider implements Closeable {
+
+	public static final String DISK_OVERFLOW_DIRECTORY_PARAM_NAME = "DISK_OVERFLOW_DIRECTORY";
+	public static final String DISK_OVERFLOW_SIZE_PARAM_NAME = "DISK_OVERFLOW_SIZE";
+
+	private static final int DEFAULT_HOT_CAPACITY = 1000;
+	private static final int DEFAULT_SIZE = 256 * 1024 * 1024;
+
+	private File directory = new File(System.getProperty("java.io.tmpdir"), "omnifaces-cache");
+	private int size = DEFAULT_SIZE;
+	private volatile DiskOverflowCache applicationCache;
+
+	@Override
+	public void setParameters(Map<String, String> parameters) {
+		super.setParameters(parameters);
+
+		if (parameters.containsKey(DISK_OVERFLOW_DIRECTORY_PARAM_NAME)) {
+			directory = new File(parameters.get(DISK_OVERFLOW_DIRECTORY_PARAM_NAME));
+		}
+		if (parameters.containsKey(DISK_OVERFLOW_SIZE_PARAM_NAME)) {
+			size = Integer.valueOf(parameters.get(DISK_OVERFLOW_SIZE_PARAM_NAME));
+		}
+	}
+
+	@Override
+	protected Cache createCache(String scope, Integer timeToLive, Integer maxCapacity) {
+		if ("application".equals(scope)) {
+			String contextPath = getServletContext().getContextPath();
+			File segmentFile = new File(directory, (isEmpty(contextPath) ? "ROOT" : contextPath.substring(1).replace('/', '#')) + ".segment");
+
+			try {
+				applicationCache = new DiskOverflowCache(timeToLive, maxCapacity != null ? maxCapacity : DEFAULT_HOT_CAPACITY, segmentFile, size);
+			}
+			catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+
+			return applicationCache;
+		}
+
+		return createCache(timeToLive, maxCapacity);
+	}
+
+	@Override
+	protected Cache createCache(Integer timeToLive, Integer maxCapacity) {
+		return new DefaultCache(timeToLive, maxCapacity);
+	}
+
+	/**
+	 * Spills the hot entries of the application scoped cache to disk and closes its segment file, so that they are
+	 * available again after a restart.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (applicationCache != null) {
+			applicationCache.close();
+		}
+	}
+
+}
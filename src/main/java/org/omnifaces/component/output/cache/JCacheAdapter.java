@@ -0,0 +1,245 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.component.output.cache;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A {@link Cache} that adapts a JSR-107 {@link javax.cache.Cache}.
+ * <p>
+ * The main value is stored under the given key, together with its own time to live, since JCache only supports a cache
+ * wide {@link javax.cache.expiry.ExpiryPolicy}. Attributes are stored as separate entries under a composite key
+ * consisting of the key, the version of the main entry and the attribute name. The version changes whenever a new main
+ * entry is created, which makes the attributes of a removed or expired main entry unreachable, without the need to
+ * know their names. Those orphans are then cleaned up by the expiry policy or eviction of the underlying cache.
+ * <p>
+ * All keys can be prefixed, which is used to share a single underlying cache among multiple sessions.
+ * <p>
+ * The adapter itself is not serializable; it's held by the {@link JCacheProvider} and not stored in a scope, while the
+ * entries live in the underlying cache anyway.
+ *
+ * @since 2.1
+ * @author agent
+ * @see JCacheProvider
+ */
+public class JCacheAdapter implements Cache {
+
+	private static final long serialVersionUID = 6279183839473526637L;
+
+	private final transient javax.cache.Cache<Object, Object> cache;
+	private final String keyPrefix;
+	private final Integer defaultTimeToLive;
+
+	/**
+	 * Creates a new adapter for the given JCache cache.
+	 *
+	 * @param cache the JCache cache to adapt.
+	 * @param keyPrefix the prefix for all keys, or an empty string if the cache is not shared.
+	 * @param defaultTimeToLive the default time to live in seconds, or null if entries should not expire by default.
+	 */
+	public JCacheAdapter(javax.cache.Cache<Object, Object> cache, String keyPrefix, Integer defaultTimeToLive) {
+		this.cache = cache;
+		this.keyPrefix = keyPrefix;
+		this.defaultTimeToLive = defaultTimeToLive;
+	}
+
+	@Override
+	public String get(String key) {
+		Entry entry = getValidEntry(key);
+		return entry != null ? entry.value : null;
+	}
+
+	@Override
+	public void put(String key, String value) {
+		if (defaultTimeToLive != null) {
+			put(key, value, defaultTimeToLive);
+		} else {
+			put(key, value, -1);
+		}
+	}
+
+	@Override
+	public void put(String key, String value, int timeToLive) {
+		Entry entry = getValidEntry(key);
+		String version = (entry != null) ? entry.version : UUID.randomUUID().toString();
+		cache.put(new Key(keyPrefix + key, null, null), new Entry(value, timeToLiveToMillis(timeToLive), version));
+	}
+
+	@Override
+	public Object getAttribute(String key, String name) {
+		Entry entry = getValidEntry(key);
+		return entry != null ? cache.get(new Key(keyPrefix + key, entry.version, name)) : null;
+	}
+
+	@Override
+	public void putAttribute(String key, String name, Object value, int timeToLive) {
+		if (value == null) {
+			return; // JCache doesn't support null values. A null attribute is anyway treated as absent.
+		}
+
+		Entry entry = getValidEntry(key);
+
+		if (entry == null) {
+			// NOTE: timeToLive is only used when a new entry is created
+			entry = new Entry(null, timeToLiveToMillis(timeToLive), UUID.randomUUID().toString());
+			cache.put(new Key(keyPrefix + key, null, null), entry);
+		}
+
+		cache.put(new Key(keyPrefix + key, entry.version, name), value);
+	}
+
+	@Override
+	public void remove(String key) {
+		cache.remove(new Key(keyPrefix + key, null, null));
+		CacheFactory.getTagIndex().unregister(this, key);
+	}
+
+	/**
+	 * Removes all entries with the key prefix of this adapter, including their attributes, from the underlying cache.
+	 * This iterates over the whole underlying cache.
+	 */
+	public void clear() {
+		Set<Object> keys = new HashSet<>();
+
+		for (javax.cache.Cache.Entry<Object, Object> entry : cache) {
+			Object cacheKey = entry.getKey();
+
+			if (cacheKey instanceof Key && ((Key) cacheKey).key.startsWith(keyPrefix)) {
+				keys.add(cacheKey);
+
+				if (((Key) cacheKey).name == null) {
+					CacheFactory.getTagIndex().unregister(this, ((Key) cacheKey).key.substring(keyPrefix.length()));
+				}
+			}
+		}
+
+		cache.removeAll(keys);
+	}
+
+	private Entry getValidEntry(String key) {
+		Key entryKey = new Key(keyPrefix + key, null, null);
+		Entry entry = (Entry) cache.get(entryKey);
+
+		if (entry != null && entry.validTill != -1 && entry.validTill <= currentTimeMillis()) {
+			cache.remove(entryKey, entry);
+			entry = null;
+		}
+
+		if (entry == null) { // Expired or evicted. JCache doesn't notify evictions, so this is the earliest moment.
+			CacheFactory.getTagIndex().unregister(this, key);
+		}
+
+		return entry;
+	}
+
+	private static long timeToLiveToMillis(int timeToLive) {
+		return (timeToLive != -1) ? currentTimeMillis() + SECONDS.toMillis(timeToLive) : -1;
+	}
+
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		throw new NotSerializableException(JCacheAdapter.class.getName() + " can only be obtained via JCacheProvider.");
+	}
+
+	/**
+	 * The key of both the main entries and the attributes. For main entries the version and name are null.
+	 */
+	static final class Key implements Serializable {
+
+		private static final long serialVersionUID = -3391848123787735409L;
+
+		private final String key;
+		private final String version;
+		private final String name;
+
+		Key(String key, String version, String name) {
+			this.key = key;
+			this.version = version;
+			this.name = name;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (this == object) {
+				return true;
+			}
+
+			if (!(object instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) object;
+			return key.equals(other.key) && equals(version, other.version) && equals(name, other.name);
+		}
+
+		@Override
+		public int hashCode() {
+			int hashCode = key.hashCode();
+			hashCode = 31 * hashCode + (version != null ? version.hashCode() : 0);
+			hashCode = 31 * hashCode + (name != null ? name.hashCode() : 0);
+			return hashCode;
+		}
+
+		@Override
+		public String toString() {
+			return (name == null) ? key : (key + "#" + version + "#" + name);
+		}
+
+		private static boolean equals(String left, String right) {
+			return (left == null) ? right == null : left.equals(right);
+		}
+	}
+
+	/**
+	 * The main entry; the value, its expiration time and the version of its attributes.
+	 */
+	static final class Entry implements Serializable {
+
+		private static final long serialVersionUID = 1493412447012462390L;
+
+		private final String value;
+		private final long validTill;
+		private final String version;
+
+		Entry(String value, long validTill, String version) {
+			this.value = value;
+			this.validTill = validTill;
+			this.version = version;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Entry)) {
+				return false;
+			}
+
+			Entry other = (Entry) object;
+			return version.equals(other.version) && validTill == other.validTill
+				&& (value == null ? other.value == null : value.equals(other.value));
+		}
+
+		@Override
+		public int hashCode() {
+			return version.hashCode();
+		}
+	}
+
+}
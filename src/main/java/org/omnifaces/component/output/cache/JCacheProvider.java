@@ -0,0 +1,230 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.component.output.cache;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.omnifaces.component.output.cache.CacheInstancePerScopeProvider.APP_TTL_PARAM_NAME;
+import static org.omnifaces.component.output.cache.CacheInstancePerScopeProvider.SESSION_TTL_PARAM_NAME;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.Factory;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.EternalExpiryPolicy;
+import javax.cache.expiry.ExpiryPolicy;
+import javax.cache.spi.CachingProvider;
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+
+/**
+ * A cache provider that adapts any JSR-107 (JCache) implementation, for example to have the OmniFaces Cache component
+ * use a clustered in-memory data grid.
+ * <p>
+ * The "application" and "session" scopes are mapped onto two named caches, which are obtained from the JCache
+ * {@link CacheManager}, or created if the JCache implementation isn't already configured with them. All sessions share
+ * the session cache; its keys are prefixed with the session ID, and the entries of a session are removed from it when
+ * the session is destroyed. Note that this iterates over the whole session cache. When created, the caches get a
+ * {@link CreatedExpiryPolicy} based on the <code>APPLICATION_TTL</code> and <code>SESSION_TTL</code> settings. Since
+ * JCache has no standard notion of a maximum capacity, that should be configured in the JCache implementation itself.
+ * <p>
+ * This provider can be installed via the <code>org.omnifaces.CACHE_PROVIDER</code> context parameter. Besides the
+ * TTL settings, the following settings are supported via <code>org.omnifaces.CACHE_SETTING_</code> prefixed context
+ * parameters:
+ * <ul>
+ * <li><code>JCACHE_PROVIDER</code>: the fully qualified class name of the JCache {@link CachingProvider}. Defaults to
+ * the one and only JCache implementation on the classpath.
+ * <li><code>JCACHE_URI</code>: the implementation specific URI of the {@link CacheManager} configuration. Defaults to
+ * the default URI of the caching provider.
+ * <li><code>APPLICATION_CACHE_NAME</code>: the name of the application scoped cache. Defaults to
+ * <code>org.omnifaces.application</code>.
+ * <li><code>SESSION_CACHE_NAME</code>: the name of the session scoped cache. Defaults to
+ * <code>org.omnifaces.session</code>.
+ * </ul>
+ *
+ * @since 2.1
+ * @author agent
+ * @see JCacheAdapter
+ */
+public class JCacheProvider implements CacheProvider {
+
+	public static final String JCACHE_PROVIDER_PARAM_NAME = "JCACHE_PROVIDER";
+	public static final String JCACHE_URI_PARAM_NAME = "JCACHE_URI";
+	public static final String APP_CACHE_NAME_PARAM_NAME = "APPLICATION_CACHE_NAME";
+	public static final String SESSION_CACHE_NAME_PARAM_NAME = "SESSION_CACHE_NAME";
+
+	private static final String DEFAULT_APP_CACHE_NAME = "org.omnifaces.application";
+	private static final String DEFAULT_SESSION_CACHE_NAME = "org.omnifaces.session";
+	private static final String SESSION_CLEANER_ATTRIBUTE_NAME = JCacheProvider.class.getName() + ".SESSION_CLEANER";
+
+	private Map<String, String> parameters = Collections.emptyMap();
+	private Integer appDefaultTimeToLive;
+	private Integer sessionDefaultTimeToLive;
+
+	private volatile JCacheAdapter appCache;
+	private volatile javax.cache.Cache<Object, Object> sessionCache;
+	private final ConcurrentMap<String, JCacheAdapter> sessionCaches = new ConcurrentHashMap<>();
+
+	@Override
+	public Cache getCache(FacesContext context, String scope) {
+		if ("application".equals(scope)) {
+			return getAppScopeCache();
+		} else if ("session".equals(scope)) {
+			return getSessionScopeCache(context);
+		}
+
+		throw new IllegalArgumentException("Scope " + scope + " not supported by provider" + JCacheProvider.class.getName());
+	}
+
+	@Override
+	public void setParameters(Map<String, String> parameters) {
+		this.parameters = parameters;
+
+		if (parameters.containsKey(APP_TTL_PARAM_NAME)) {
+			appDefaultTimeToLive = Integer.valueOf(parameters.get(APP_TTL_PARAM_NAME));
+		}
+		if (parameters.containsKey(SESSION_TTL_PARAM_NAME)) {
+			sessionDefaultTimeToLive = Integer.valueOf(parameters.get(SESSION_TTL_PARAM_NAME));
+		}
+	}
+
+	public Map<String, String> getParameters() {
+		return parameters;
+	}
+
+	private JCacheAdapter getAppScopeCache() {
+		if (appCache == null) {
+			synchronized (this) {
+				if (appCache == null) {
+					appCache = new JCacheAdapter(getOrCreateCache(APP_CACHE_NAME_PARAM_NAME, DEFAULT_APP_CACHE_NAME, appDefaultTimeToLive), "", appDefaultTimeToLive);
+				}
+			}
+		}
+
+		return appCache;
+	}
+
+	private JCacheAdapter getSessionScopeCache(FacesContext context) {
+		// The adapters are kept as long as their session is alive, so that they can be referenced by the CacheTagIndex.
+		ExternalContext externalContext = context.getExternalContext();
+		String sessionId = externalContext.getSessionId(true);
+		JCacheAdapter cache = sessionCaches.get(sessionId);
+
+		if (cache == null) {
+			JCacheAdapter newCache = new JCacheAdapter(getSessionCache(), sessionId + ":", sessionDefaultTimeToLive);
+			cache = sessionCaches.putIfAbsent(sessionId, newCache);
+
+			if (cache == null) {
+				cache = newCache;
+			}
+
+			// A cleaner for another session ID means that the ID has changed; replacing it cleans up the old entries.
+			Object cleaner = externalContext.getSessionMap().get(SESSION_CLEANER_ATTRIBUTE_NAME);
+
+			if (!(cleaner instanceof SessionCleaner) || !sessionId.equals(((SessionCleaner) cleaner).sessionId)) {
+				externalContext.getSessionMap().put(SESSION_CLEANER_ATTRIBUTE_NAME, new SessionCleaner(sessionId));
+			}
+		}
+
+		return cache;
+	}
+
+	/**
+	 * Removes all entries of the session with the given ID from the session cache.
+	 *
+	 * @param sessionId the ID of the session which has been destroyed.
+	 */
+	public void destroySessionCache(String sessionId) {
+		JCacheAdapter cache = sessionCaches.remove(sessionId);
+
+		if (cache == null) { // E.g. the session has been failed over from another node.
+			cache = new JCacheAdapter(getSessionCache(), sessionId + ":", sessionDefaultTimeToLive);
+		}
+
+		cache.clear();
+	}
+
+	private javax.cache.Cache<Object, Object> getSessionCache() {
+		if (sessionCache == null) {
+			synchronized (this) {
+				if (sessionCache == null) {
+					sessionCache = getOrCreateCache(SESSION_CACHE_NAME_PARAM_NAME, DEFAULT_SESSION_CACHE_NAME, sessionDefaultTimeToLive);
+				}
+			}
+		}
+
+		return sessionCache;
+	}
+
+	private javax.cache.Cache<Object, Object> getOrCreateCache(String nameParamName, String defaultName, Integer timeToLive) {
+		CacheManager cacheManager = getCacheManager();
+		String name = parameters.containsKey(nameParamName) ? parameters.get(nameParamName) : defaultName;
+		javax.cache.Cache<Object, Object> cache = cacheManager.getCache(name);
+
+		if (cache == null) {
+			Factory<? extends ExpiryPolicy> expiryPolicy = (timeToLive != null)
+				? CreatedExpiryPolicy.factoryOf(new Duration(SECONDS, timeToLive))
+				: EternalExpiryPolicy.factoryOf();
+			cache = cacheManager.createCache(name, new MutableConfiguration<>().setExpiryPolicyFactory(expiryPolicy));
+		}
+
+		return cache;
+	}
+
+	private CacheManager getCacheManager() {
+		String providerName = parameters.get(JCACHE_PROVIDER_PARAM_NAME);
+		CachingProvider cachingProvider = (providerName != null) ? Caching.getCachingProvider(providerName) : Caching.getCachingProvider();
+		String uri = parameters.get(JCACHE_URI_PARAM_NAME);
+		return (uri != null) ? cachingProvider.getCacheManager(URI.create(uri), cachingProvider.getDefaultClassLoader()) : cachingProvider.getCacheManager();
+	}
+
+	/**
+	 * Destroys the session cache of the session it's bound to when the session is destroyed, or when it's replaced
+	 * because the session ID has changed.
+	 */
+	private static final class SessionCleaner implements Serializable, HttpSessionBindingListener {
+
+		private static final long serialVersionUID = 2818393264937620954L;
+
+		private final String sessionId;
+
+		public SessionCleaner(String sessionId) {
+			this.sessionId = sessionId;
+		}
+
+		@Override
+		public void valueBound(HttpSessionBindingEvent event) {
+			// NOOP.
+		}
+
+		@Override
+		public void valueUnbound(HttpSessionBindingEvent event) {
+			CacheProvider provider = CacheFactory.getCacheProvider(event.getSession().getServletContext());
+
+			if (provider instanceof JCacheProvider) {
+				((JCacheProvider) provider).destroySessionCache(sessionId);
+			}
+		}
+	}
+
+}
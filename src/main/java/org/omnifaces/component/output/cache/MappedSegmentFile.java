@@ -0,0 +1,437 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.component.output.cache;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.omnifaces.util.Callback;
+
+/**
+ * An append-only segment of cache records in a memory-mapped file on local disk.
+ * <p>
+ * The file starts with a header holding a magic number and the current write position, followed by the records. Each
+ * record holds the key, the expiration time, the value and the serialized attributes. Removals are appended as
+ * tombstone records. The in-memory index, which maps each key to the offset of its latest record, is thus simply
+ * rebuilt by scanning the records when the file is opened again, for example after a restart.
+ * <p>
+ * When a record doesn't fit anymore, the live records are copied into a new segment file, which then atomically
+ * replaces the current segment file. A crash halfway a compaction thus leaves the current segment file intact. When
+ * the live records don't leave enough room either, the oldest records are dropped, a quarter of the segment at once.
+ * <p>
+ * Reads share a read lock and writes take a write lock. Checking for a key doesn't lock at all, so a miss on the
+ * {@link DiskOverflowCache} never waits for a write.
+ *
+ * @since 2.1
+ * @author agent
+ */
+final class MappedSegmentFile {
+
+	private static final int MAGIC = 0x0F0CAC4E;
+	private static final int HEADER_SIZE = 4 + 4;
+	private static final int TOMBSTONE = -1;
+	private static final String COMPACTION_SUFFIX = ".compaction";
+	private static final String ERROR_CORRUPT_RECORD = "Corrupt record at position %d.";
+
+	private final File path;
+	private final int size;
+	private final Callback.WithArgument<String> onDrop;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<String, Integer> index = new ConcurrentHashMap<>();
+	private RandomAccessFile file;
+	private MappedByteBuffer buffer;
+	private int writePosition;
+
+	/**
+	 * Opens the given segment file, creating it if necessary, and rebuilds the index from its records.
+	 * @param path The segment file.
+	 * @param size The size of the segment file in bytes.
+	 * @param onDrop Invoked with the key of every record which is dropped by a compaction.
+	 * @throws IOException When the file cannot be opened or mapped.
+	 */
+	public MappedSegmentFile(File path, int size, Callback.WithArgument<String> onDrop) throws IOException {
+		this.path = path;
+		this.size = size;
+		this.onDrop = onDrop;
+		path.getParentFile().mkdirs();
+		Files.deleteIfExists(getCompactionFile().toPath()); // Leftover of a crash halfway a compaction.
+		file = new RandomAccessFile(path, "rw");
+		buffer = map(file, size);
+
+		if (buffer.getInt(0) == MAGIC && buffer.getInt(4) >= HEADER_SIZE && buffer.getInt(4) <= size) {
+			writePosition = buffer.getInt(4);
+
+			try {
+				rebuildIndex();
+				return;
+			}
+			catch (RuntimeException ignore) {
+				index.clear(); // Segment is corrupt. It's just a cache, so start over.
+			}
+		}
+
+		buffer.putInt(0, MAGIC);
+		setWritePosition(HEADER_SIZE);
+	}
+
+	/**
+	 * Returns whether there's a record for the given key. This doesn't lock, so the answer may be outdated by the time
+	 * it's returned; {@link #read(String)} will then just return <code>null</code>.
+	 * @param key The key.
+	 * @return Whether there's a record for the given key.
+	 */
+	public boolean contains(String key) {
+		return index.containsKey(key);
+	}
+
+	/**
+	 * Reads the record for the given key.
+	 * @param key The key.
+	 * @return The record for the given key, or <code>null</code> if there is none.
+	 */
+	public Record read(String key) {
+		lock.readLock().lock();
+
+		try {
+			Integer offset = index.get(key);
+
+			if (offset == null) {
+				return null;
+			}
+
+			ByteBuffer buffer = this.buffer.duplicate(); // Has its own position, so concurrent reads don't interfere.
+			int position = offset + 4;
+			int keyLength = buffer.getInt(position);
+			position += 4 + keyLength;
+			long validTill = buffer.getLong(position);
+			position += 8;
+			byte[] value = readBytes(buffer, position);
+			position += 4 + length(value);
+			byte[] attributes = readBytes(buffer, position);
+			return new Record(validTill, value, attributes);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Appends a record for the given key, replacing any previous record for it.
+	 * @param key The key.
+	 * @param validTill The expiration time in epoch millis, or -1 if it never expires.
+	 * @param value The UTF-8 encoded value, or <code>null</code> if there is no value.
+	 * @param attributes The serialized attributes, or <code>null</code> if there are none.
+	 * @return Whether the record could be appended; false if it does not fit in the segment, even after compaction.
+	 */
+	public boolean append(String key, long validTill, byte[] value, byte[] attributes) {
+		byte[] keyBytes = key.getBytes(UTF_8);
+		int length = 4 + 4 + keyBytes.length + 8 + 4 + length(value) + 4 + length(attributes);
+		lock.writeLock().lock();
+
+		try {
+			if (!ensureCapacity(length)) {
+				return false;
+			}
+
+			int offset = writePosition;
+			buffer.position(offset);
+			buffer.putInt(length).putInt(keyBytes.length).put(keyBytes).putLong(validTill);
+			putBytes(value);
+			putBytes(attributes);
+			index.put(key, offset);
+			setWritePosition(offset + length);
+			return true;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the record for the given key, if any, by appending a tombstone.
+	 * @param key The key.
+	 */
+	public void remove(String key) {
+		if (!index.containsKey(key)) {
+			return;
+		}
+
+		lock.writeLock().lock();
+
+		try {
+			if (index.remove(key) == null) {
+				return;
+			}
+
+			byte[] keyBytes = key.getBytes(UTF_8);
+			int length = 4 + 4 + keyBytes.length;
+
+			if (ensureCapacity(length)) {
+				buffer.position(writePosition);
+				buffer.putInt(TOMBSTONE).putInt(keyBytes.length).put(keyBytes);
+				setWritePosition(writePosition + length);
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Flushes the segment to disk and closes the file.
+	 * @throws IOException When the file cannot be closed.
+	 */
+	public void close() throws IOException {
+		lock.writeLock().lock();
+
+		try {
+			buffer.force();
+			file.close();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Rebuilds the index by scanning the records. Every length is checked before it's trusted, so that a torn or zeroed
+	 * record can't make the scan loop forever or walk backwards.
+	 * @throws IllegalStateException When a record is corrupt.
+	 */
+	private void rebuildIndex() {
+		for (int position = HEADER_SIZE; position < writePosition;) {
+			checkRecord(position, position + 8 <= writePosition);
+			int length = buffer.getInt(position);
+			int keyLength = buffer.getInt(position + 4);
+			checkRecord(position, keyLength >= 0 && keyLength <= writePosition - position - 8);
+
+			if (length != TOMBSTONE) {
+				checkRecord(position, length >= 8 + keyLength + 8 + 4 + 4 && length <= writePosition - position);
+				int valueLength = buffer.getInt(position + 8 + keyLength + 8);
+				int attributesLength = buffer.getInt(position + 8 + keyLength + 8 + 4 + Math.max(valueLength, 0));
+				checkRecord(position, valueLength >= -1 && attributesLength >= -1
+					&& length == 8 + keyLength + 8 + 4 + Math.max(valueLength, 0) + 4 + Math.max(attributesLength, 0));
+			}
+
+			byte[] keyBytes = new byte[keyLength];
+			buffer.position(position + 8);
+			buffer.get(keyBytes);
+			String key = new String(keyBytes, UTF_8);
+
+			if (length == TOMBSTONE) {
+				index.remove(key);
+				position += 4 + 4 + keyLength;
+			}
+			else {
+				index.put(key, position);
+				position += length;
+			}
+		}
+	}
+
+	private static void checkRecord(int position, boolean valid) {
+		if (!valid) {
+			throw new IllegalStateException(String.format(ERROR_CORRUPT_RECORD, position));
+		}
+	}
+
+	private boolean ensureCapacity(int length) {
+		if (writePosition + length <= buffer.capacity()) {
+			return true;
+		}
+
+		if (HEADER_SIZE + length > buffer.capacity()) {
+			return false;
+		}
+
+		return compact(length);
+	}
+
+	/**
+	 * Copies the live records into a new segment file, dropping expired records and, if that isn't sufficient to make
+	 * room for the given length, the oldest records. The new segment file is flushed to disk before it atomically
+	 * replaces the current one. Returns false if that failed, in which case the current segment is left untouched.
+	 */
+	private boolean compact(int length) {
+		List<Entry<String, Integer>> records = new ArrayList<>(index.entrySet());
+		Collections.sort(records, new Comparator<Entry<String, Integer>>() {
+			@Override
+			public int compare(Entry<String, Integer> left, Entry<String, Integer> right) {
+				return left.getValue().compareTo(right.getValue());
+			}
+		});
+
+		long now = System.currentTimeMillis();
+		long liveSize = 0;
+		List<String> droppedKeys = new ArrayList<>();
+
+		for (Iterator<Entry<String, Integer>> iterator = records.iterator(); iterator.hasNext();) {
+			Entry<String, Integer> record = iterator.next();
+			int offset = record.getValue();
+			long validTill = buffer.getLong(offset + 8 + buffer.getInt(offset + 4));
+
+			if (validTill != -1 && validTill < now) {
+				droppedKeys.add(record.getKey());
+				iterator.remove();
+			}
+			else {
+				liveSize += buffer.getInt(offset);
+			}
+		}
+
+		// If the oldest records have to be dropped anyway, then drop a quarter of the segment at once, so that the next
+		// appends don't each need a compaction of their own.
+		long room = (HEADER_SIZE + liveSize + length > size) ? Math.max(length, size / 4) : length;
+
+		for (Iterator<Entry<String, Integer>> iterator = records.iterator(); iterator.hasNext();) {
+			if (HEADER_SIZE + liveSize + room <= size) {
+				break;
+			}
+
+			Entry<String, Integer> record = iterator.next();
+			liveSize -= buffer.getInt(record.getValue());
+			droppedKeys.add(record.getKey());
+			iterator.remove();
+		}
+
+		File compactionFile = getCompactionFile();
+		RandomAccessFile compactedFile = null;
+
+		try {
+			compactedFile = new RandomAccessFile(compactionFile, "rw");
+			MappedByteBuffer compactedBuffer = map(compactedFile, size);
+			Map<String, Integer> compactedIndex = new ConcurrentHashMap<>();
+			int position = HEADER_SIZE;
+
+			for (Entry<String, Integer> record : records) {
+				int offset = record.getValue();
+				int recordLength = buffer.getInt(offset);
+				ByteBuffer source = buffer.duplicate();
+				source.limit(offset + recordLength).position(offset);
+				compactedBuffer.position(position);
+				compactedBuffer.put(source);
+				compactedIndex.put(record.getKey(), position);
+				position += recordLength;
+			}
+
+			compactedBuffer.putInt(0, MAGIC);
+			compactedBuffer.putInt(4, position);
+			compactedBuffer.force();
+			Files.move(compactionFile.toPath(), path.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+
+			file.close(); // The mapping of the compacted file stays valid after the move.
+			file = compactedFile;
+			buffer = compactedBuffer;
+			index.keySet().retainAll(compactedIndex.keySet());
+			index.putAll(compactedIndex);
+			writePosition = position;
+
+			for (String droppedKey : droppedKeys) {
+				onDrop.invoke(droppedKey);
+			}
+
+			return true;
+		}
+		catch (IOException e) {
+			close(compactedFile);
+			compactionFile.delete();
+			return false;
+		}
+	}
+
+	private File getCompactionFile() {
+		return new File(path.getPath() + COMPACTION_SUFFIX);
+	}
+
+	private void setWritePosition(int position) {
+		writePosition = position;
+		buffer.putInt(4, position);
+	}
+
+	private void putBytes(byte[] bytes) {
+		if (bytes == null) {
+			buffer.putInt(-1);
+		}
+		else {
+			buffer.putInt(bytes.length).put(bytes);
+		}
+	}
+
+	private static MappedByteBuffer map(RandomAccessFile file, int size) throws IOException {
+		return file.getChannel().map(READ_WRITE, 0, size);
+	}
+
+	private static byte[] readBytes(ByteBuffer buffer, int position) {
+		int length = buffer.getInt(position);
+
+		if (length < 0) {
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		buffer.position(position + 4);
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	private static int length(byte[] bytes) {
+		return bytes == null ? 0 : bytes.length;
+	}
+
+	private static void close(RandomAccessFile file) {
+		if (file != null) {
+			try {
+				file.close();
+			}
+			catch (IOException ignore) {
+				// Nothing to do anymore.
+			}
+		}
+	}
+
+	/**
+	 * A record as read from the segment.
+	 */
+	static final class Record {
+
+		final long validTill;
+		final byte[] value;
+		final byte[] attributes;
+
+		Record(long validTill, byte[] value, byte[] attributes) {
+			this.validTill = validTill;
+			this.value = value;
+			this.attributes = attributes;
+		}
+	}
+
+}
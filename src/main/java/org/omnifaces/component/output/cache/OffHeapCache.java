@@ -0,0 +1,339 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.component.output.cache;
+
+import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.synchronizedMap;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.omnifaces.util.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import org.omnifaces.util.concurrentlinkedhashmap.EvictionListener;
+
+/**
+ * A cache implementation that stores the cached values UTF-8 encoded in direct (off-heap) memory, keeping only the keys,
+ * the meta data and the attributes on the heap.
+ * <p>
+ * Values are stored in fixed size blocks handed out by an {@link OffHeapSlabAllocator}. The index is a repackaged
+ * {@link ConcurrentLinkedHashMap}, which evicts the least recently used entry when the optional maximum capacity (in
+ * entries) is exceeded. When the allocator runs out of blocks, least recently used entries are evicted until there's
+ * enough room for the new value. A value that does not fit in the off-heap memory at all is simply not cached.
+ * <p>
+ * An entry which is being read is pinned by a reference count, so that its blocks are only returned to the allocator
+ * once the last reader is finished, even when the entry is removed or evicted in the meanwhile. Reads, and in particular
+ * the writes to a possibly slow client in {@link #writeTo(String, Writer)}, therefore never block any other operation.
+ * <p>
+ * Instances of this cache are not serializable, and are therefore only suitable for the application scope.
+ *
+ * @since 2.1
+ * @author agent
+ * @see OffHeapCacheProvider
+ */
+public class OffHeapCache implements Cache {
+
+	private static final long serialVersionUID = -2361486727291720447L;
+
+	private final Integer defaultTimeToLive;
+	private final transient OffHeapSlabAllocator allocator;
+	private final transient ConcurrentLinkedHashMap<String, OffHeapCacheEntry> cacheStore;
+
+	/**
+	 * Creates a new off-heap cache.
+	 *
+	 * @param defaultTimeToLive the default time to live in seconds, or null if entries should not expire by default.
+	 * @param maxCapacity the maximum amount of entries, or null if this should only be bounded by the off-heap memory.
+	 * @param maxSize the maximum amount of off-heap memory in bytes.
+	 * @param slabSize the size in bytes of a single direct buffer that's allocated at once.
+	 * @param blockSize the size in bytes of a single block within a slab.
+	 */
+	public OffHeapCache(Integer defaultTimeToLive, Integer maxCapacity, long maxSize, int slabSize, int blockSize) {
+		this.defaultTimeToLive = defaultTimeToLive;
+		allocator = new OffHeapSlabAllocator(maxSize, slabSize, blockSize);
+		cacheStore = new ConcurrentLinkedHashMap.Builder<String, OffHeapCacheEntry>()
+			.maximumWeightedCapacity(maxCapacity != null ? maxCapacity : Long.MAX_VALUE - Integer.MAX_VALUE)
+			.listener(new EvictionListener<String, OffHeapCacheEntry>() {
+
+				@Override
+				public void onEviction(String key, OffHeapCacheEntry entry) {
+					release(entry);
+					CacheFactory.getTagIndex().unregister(OffHeapCache.this, key);
+				}
+			})
+			.build();
+	}
+
+	@Override
+	public String get(String key) {
+		OffHeapCacheEntry entry = getValidEntry(key);
+
+		if (entry == null || !entry.pin()) {
+			return null;
+		}
+
+		try {
+			byte[] bytes = new byte[entry.length];
+			int blockSize = allocator.getBlockSize();
+
+			for (int i = 0, offset = 0; i < entry.blocks.length; i++, offset += blockSize) {
+				allocator.read(entry.blocks[i], bytes, offset, Math.min(blockSize, entry.length - offset));
+			}
+
+			return new String(bytes, UTF_8);
+		}
+		finally {
+			unpin(entry);
+		}
+	}
+
+	/**
+	 * Decodes the value stored under the given key block by block directly into the given writer, without first
+	 * materializing it as a String on the heap.
+	 *
+	 * @param key
+	 *            the key under which a value was previously stored
+	 * @param writer
+	 *            the writer to write the value to
+	 * @return true if a value was found and written, false otherwise.
+	 * @throws IOException
+	 *            When an I/O error occurs while writing.
+	 */
+	public boolean writeTo(String key, Writer writer) throws IOException {
+		OffHeapCacheEntry entry = getValidEntry(key);
+
+		if (entry == null || !entry.pin()) {
+			return false;
+		}
+
+		try {
+			int blockSize = allocator.getBlockSize();
+			CharsetDecoder decoder = UTF_8.newDecoder();
+			ByteBuffer input = ByteBuffer.allocate(blockSize + 4); // Room for a multi-byte character spanning blocks.
+			CharBuffer output = CharBuffer.allocate(blockSize);
+
+			for (int i = 0, offset = 0; i < entry.blocks.length; i++, offset += blockSize) {
+				allocator.read(entry.blocks[i], input, Math.min(blockSize, entry.length - offset));
+				input.flip();
+				decode(decoder, input, output, i == entry.blocks.length - 1, writer);
+				input.compact();
+			}
+
+			decoder.flush(output);
+			writer.write(output.array(), 0, output.position());
+			return true;
+		}
+		finally {
+			unpin(entry);
+		}
+	}
+
+	@Override
+	public void put(String key, String value) {
+		if (defaultTimeToLive != null) {
+			put(key, value, defaultTimeToLive);
+		} else {
+			put(key, value, -1);
+		}
+	}
+
+	@Override
+	public void put(String key, String value, int timeToLive) {
+		byte[] bytes = value.getBytes(UTF_8);
+		int[] blocks = allocate(allocator.blocksNeeded(bytes.length));
+
+		if (blocks == null) {
+			remove(key); // Doesn't fit, don't let the old value linger.
+			return;
+		}
+
+		allocator.write(blocks, bytes);
+		OffHeapCacheEntry entry = new OffHeapCacheEntry(blocks, bytes.length, timeToLiveToMillis(timeToLive));
+		OffHeapCacheEntry existingEntry = cacheStore.get(key);
+
+		if (existingEntry != null && existingEntry.isValid()) {
+			entry.attributes = existingEntry.attributes;
+		}
+
+		release(cacheStore.put(key, entry));
+	}
+
+	@Override
+	public Object getAttribute(String key, String name) {
+		OffHeapCacheEntry entry = getValidEntry(key);
+		return entry != null ? entry.getAttributes().get(name) : null;
+	}
+
+	@Override
+	public void putAttribute(String key, String name, Object value, int timeToLive) {
+		OffHeapCacheEntry entry = getValidEntry(key);
+
+		if (entry == null) {
+			// NOTE: timeToLive is only used when a new entry is created
+			entry = new OffHeapCacheEntry(new int[0], -1, timeToLiveToMillis(timeToLive));
+			release(cacheStore.put(key, entry));
+		}
+
+		entry.getAttributes().put(name, value);
+	}
+
+	@Override
+	public void remove(String key) {
+		release(cacheStore.remove(key));
+		CacheFactory.getTagIndex().unregister(this, key);
+	}
+
+	private OffHeapCacheEntry getValidEntry(String key) {
+		OffHeapCacheEntry entry = cacheStore.get(key);
+
+		if (entry != null && !entry.isValid()) {
+			if (cacheStore.remove(key, entry)) {
+				release(entry);
+				CacheFactory.getTagIndex().unregister(this, key);
+			}
+
+			return null;
+		}
+
+		return entry;
+	}
+
+	private int[] allocate(int count) {
+		if (count > allocator.getMaxBlocks()) {
+			return null;
+		}
+
+		int[] blocks = allocator.allocate(count);
+
+		while (blocks == null) {
+			Iterator<String> leastRecentlyUsed = cacheStore.ascendingKeySetWithLimit(1).iterator();
+
+			if (!leastRecentlyUsed.hasNext()) {
+				return null;
+			}
+
+			remove(leastRecentlyUsed.next());
+			blocks = allocator.allocate(count);
+		}
+
+		return blocks;
+	}
+
+	/**
+	 * Releases the reference of the cache store to the given entry, which has been removed from it.
+	 */
+	private void release(OffHeapCacheEntry entry) {
+		if (entry != null && entry.removed()) {
+			unpin(entry);
+		}
+	}
+
+	/**
+	 * Releases a reference to the given entry and frees its blocks if it was the last one.
+	 */
+	private void unpin(OffHeapCacheEntry entry) {
+		if (entry.references.decrementAndGet() == 0 && entry.blocks != null) {
+			allocator.free(entry.blocks);
+		}
+	}
+
+	private static void decode(CharsetDecoder decoder, ByteBuffer input, CharBuffer output, boolean endOfInput, Writer writer) throws IOException {
+		CoderResult result;
+
+		do {
+			result = decoder.decode(input, output, endOfInput);
+			writer.write(output.array(), 0, output.position());
+			output.clear();
+		}
+		while (result.isOverflow());
+	}
+
+	private static long timeToLiveToMillis(int timeToLive) {
+		return (timeToLive != -1) ? currentTimeMillis() + SECONDS.toMillis(timeToLive) : -1;
+	}
+
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		throw new NotSerializableException(OffHeapCache.class.getName() + " can only be used in application scope.");
+	}
+
+	/**
+	 * The heap part of an off-heap cache entry; the indexes of the blocks holding the value, its length in bytes, its
+	 * expiration time and its attributes. The blocks are null when the entry has only attributes. The reference count
+	 * starts at 1 for the reference of the cache store itself; the blocks are freed when it drops to 0.
+	 */
+	private static final class OffHeapCacheEntry {
+
+		private final int[] blocks;
+		private final int length;
+		private final long validTill;
+		private final AtomicInteger references = new AtomicInteger(1);
+		private final AtomicBoolean removed = new AtomicBoolean();
+		private volatile Map<String, Object> attributes;
+
+		public OffHeapCacheEntry(int[] blocks, int length, long validTill) {
+			this.blocks = (length >= 0) ? blocks : null;
+			this.length = length;
+			this.validTill = validTill;
+		}
+
+		public boolean isValid() {
+			return validTill == -1 || currentTimeMillis() < validTill;
+		}
+
+		/**
+		 * Pins the entry for reading. Returns false if it has no value or if its blocks have already been freed.
+		 */
+		public boolean pin() {
+			if (blocks == null) {
+				return false;
+			}
+
+			for (int count = references.get(); count > 0; count = references.get()) {
+				if (references.compareAndSet(count, count + 1)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		/**
+		 * Marks the entry as removed from the cache store. Returns false if it already was.
+		 */
+		public boolean removed() {
+			return removed.compareAndSet(false, true);
+		}
+
+		public Map<String, Object> getAttributes() {
+			if (attributes == null) {
+				// NOTE: same benign race as in CacheEntry#getAttributes().
+				attributes = synchronizedMap(new HashMap<String, Object>());
+			}
+
+			return attributes;
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.component.output.cache;
+
+import java.util.Map;
+
+/**
+ * A cache provider that stores the application scoped cached content in direct (off-heap) memory, so that large amounts
+ * of cached markup do not add to the garbage collector's workload. Session scoped caches are kept on the heap, exactly
+ * as with the {@link DefaultCacheProvider}, since their lifecycle is bound to the HTTP session which may be passivated or
+ * replicated.
+ * <p>
+ * This provider can be installed via the <code>org.omnifaces.CACHE_PROVIDER</code> context parameter. Besides the
+ * settings supported by {@link CacheInstancePerScopeProvider}, the following settings are supported via
+ * <code>org.omnifaces.CACHE_SETTING_</code> prefixed context parameters:
+ * <ul>
+ * <li><code>OFF_HEAP_MAX_SIZE</code>: the maximum amount of off-heap memory in bytes. Defaults to 64MB.
+ * <li><code>OFF_HEAP_SLAB_SIZE</code>: the size in bytes of a single direct buffer that's allocated at once. Defaults to 1MB.
+ * <li><code>OFF_HEAP_BLOCK_SIZE</code>: the size in bytes of the blocks the content is stored in. Defaults to 1KB.
+ * </ul>
+ *
+ * @since 2.1
+ * @author agent
+ * @see OffHeapCache
+ */
+public class OffHeapCacheProvider extends CacheInstancePerScopeProvider {
+
+	public static final String OFF_HEAP_MAX_SIZE_PARAM_NAME = "OFF_HEAP_MAX_SIZE";
+	public static final String OFF_HEAP_SLAB_SIZE_PARAM_NAME = "OFF_HEAP_SLAB_SIZE";
+	public static final String OFF_HEAP_BLOCK_SIZE_PARAM_NAME = "OFF_HEAP_BLOCK_SIZE";
+
+	private static final long DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+	private static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+	private static final int DEFAULT_BLOCK_SIZE = 1024;
+
+	private long maxSize = DEFAULT_MAX_SIZE;
+	private int slabSize = DEFAULT_SLAB_SIZE;
+	private int blockSize = DEFAULT_BLOCK_SIZE;
+
+	@Override
+	public void setParameters(Map<String, String> parameters) {
+		super.setParameters(parameters);
+
+		if (parameters.containsKey(OFF_HEAP_MAX_SIZE_PARAM_NAME)) {
+			maxSize = Long.valueOf(parameters.get(OFF_HEAP_MAX_SIZE_PARAM_NAME));
+		}
+		if (parameters.containsKey(OFF_HEAP_SLAB_SIZE_PARAM_NAME)) {
+			slabSize = Integer.valueOf(parameters.get(OFF_HEAP_SLAB_SIZE_PARAM_NAME));
+		}
+		if (parameters.containsKey(OFF_HEAP_BLOCK_SIZE_PARAM_NAME)) {
+			blockSize = Integer.valueOf(parameters.get(OFF_HEAP_BLOCK_SIZE_PARAM_NAME));
+		}
+	}
+
+	@Override
+	protected Cache createCache(String scope, Integer timeToLive, Integer maxCapacity) {
+		if ("application".equals(scope)) {
+			return new OffHeapCache(timeToLive, maxCapacity, maxSize, slabSize, blockSize);
+		}
+
+		return createCache(timeToLive, maxCapacity);
+	}
+
+	@Override
+	protected Cache createCache(Integer timeToLive, Integer maxCapacity) {
+		return new DefaultCache(timeToLive, maxCapacity);
+	}
+
+}
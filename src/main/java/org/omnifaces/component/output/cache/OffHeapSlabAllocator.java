@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.component.output.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A simple allocator of fixed size blocks that live in direct (off-heap) {@link ByteBuffer} slabs.
+ * <p>
+ * Slabs are allocated lazily, one at a time, until the configured maximum size is reached. Since direct memory is only
+ * released by the garbage collector, slabs are never released again; freed blocks are instead put on a free list and
+ * handed out again on a next allocation.
+ *
+ * @since 2.1
+ * @author agent
+ * @see OffHeapCache
+ */
+final class OffHeapSlabAllocator {
+
+	private final int blockSize;
+	private final int blocksPerSlab;
+	private final int maxBlocks;
+	private final ByteBuffer[] slabs;
+	private final int[] freeBlocks;
+
+	private int freeCount;
+	private int createdBlocks;
+
+	/**
+	 * Creates a new allocator.
+	 *
+	 * @param maxSize the maximum amount of off-heap memory in bytes this allocator may use.
+	 * @param slabSize the size in bytes of a single slab. Will be rounded down to a multiple of the block size.
+	 * @param blockSize the size in bytes of a single block.
+	 */
+	public OffHeapSlabAllocator(long maxSize, int slabSize, int blockSize) {
+		if (blockSize <= 0 || slabSize < blockSize || maxSize < slabSize) {
+			throw new IllegalArgumentException("Block size must be positive, slab size must be at least block size and max size must be at least slab size.");
+		}
+
+		this.blockSize = blockSize;
+		blocksPerSlab = slabSize / blockSize;
+		slabs = new ByteBuffer[(int) Math.min(maxSize / (blocksPerSlab * (long) blockSize), Integer.MAX_VALUE / blocksPerSlab)];
+		maxBlocks = slabs.length * blocksPerSlab;
+		freeBlocks = new int[maxBlocks];
+	}
+
+	/**
+	 * Returns the size in bytes of a single block.
+	 * @return The size in bytes of a single block.
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Returns the maximum amount of blocks this allocator can hand out.
+	 * @return The maximum amount of blocks this allocator can hand out.
+	 */
+	public int getMaxBlocks() {
+		return maxBlocks;
+	}
+
+	/**
+	 * Returns the amount of blocks needed to store the given amount of bytes.
+	 * @param length The amount of bytes.
+	 * @return The amount of blocks needed to store the given amount of bytes.
+	 */
+	public int blocksNeeded(int length) {
+		return (length + blockSize - 1) / blockSize;
+	}
+
+	/**
+	 * Allocates the given amount of blocks.
+	 * @param count The amount of blocks to allocate.
+	 * @return The indexes of the allocated blocks, or <code>null</code> if there are not enough blocks available.
+	 */
+	public synchronized int[] allocate(int count) {
+		if (freeCount + (maxBlocks - createdBlocks) < count) {
+			return null;
+		}
+
+		int[] blocks = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			if (freeCount > 0) {
+				blocks[i] = freeBlocks[--freeCount];
+			}
+			else {
+				if (createdBlocks % blocksPerSlab == 0) {
+					slabs[createdBlocks / blocksPerSlab] = ByteBuffer.allocateDirect(blocksPerSlab * blockSize);
+				}
+
+				blocks[i] = createdBlocks++;
+			}
+		}
+
+		return blocks;
+	}
+
+	/**
+	 * Returns the given blocks to the free list.
+	 * @param blocks The indexes of the blocks to free.
+	 */
+	public synchronized void free(int[] blocks) {
+		for (int block : blocks) {
+			freeBlocks[freeCount++] = block;
+		}
+	}
+
+	/**
+	 * Copies the given bytes into the given blocks, in order.
+	 * @param blocks The blocks to copy into, as obtained by {@link #allocate(int)}.
+	 * @param bytes The bytes to copy.
+	 */
+	public void write(int[] blocks, byte[] bytes) {
+		for (int i = 0, offset = 0; i < blocks.length; i++, offset += blockSize) {
+			block(blocks[i]).put(bytes, offset, Math.min(blockSize, bytes.length - offset));
+		}
+	}
+
+	/**
+	 * Copies the given amount of bytes from the given block into the given byte array.
+	 * @param block The index of the block to copy from.
+	 * @param bytes The byte array to copy into.
+	 * @param offset The offset in the byte array.
+	 * @param length The amount of bytes to copy, at most the block size.
+	 */
+	public void read(int block, byte[] bytes, int offset, int length) {
+		block(block).get(bytes, offset, length);
+	}
+
+	/**
+	 * Copies the given amount of bytes from the given block into the given byte buffer.
+	 * @param block The index of the block to copy from.
+	 * @param buffer The byte buffer to copy into.
+	 * @param length The amount of bytes to copy, at most the block size.
+	 */
+	public void read(int block, ByteBuffer buffer, int length) {
+		ByteBuffer source = block(block);
+		source.limit(source.position() + length);
+		buffer.put(source);
+	}
+
+	private ByteBuffer block(int block) {
+		ByteBuffer slab = slabs[block / blocksPerSlab].duplicate();
+		int position = (block % blocksPerSlab) * blockSize;
+		slab.limit(position + blockSize).position(position);
+		return slab;
+	}
+
+}
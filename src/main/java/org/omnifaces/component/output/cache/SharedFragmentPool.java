@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.component.output.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of fragments which are addressed by the SHA-256 hash of their content, so that identical content is stored only
+ * once, however many caches refer to it. The fragments are reference counted; a fragment is removed from the pool as soon
+ * as its last reference is released.
+ *
+ * @since 2.1
+ * @author agent
+ * @see DeduplicatingCache
+ */
+final class SharedFragmentPool {
+
+	private static final SharedFragmentPool INSTANCE = new SharedFragmentPool();
+
+	private final ConcurrentMap<String, Fragment> fragments = new ConcurrentHashMap<>();
+
+	private SharedFragmentPool() {
+		//
+	}
+
+	/**
+	 * Returns the pool of this node.
+	 * @return The pool of this node.
+	 */
+	public static SharedFragmentPool getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Adds a reference to the given content, adding it to the pool if not present yet.
+	 * @param content The content.
+	 * @return The hash of the content, which must be released via {@link #release(String)} once not needed anymore.
+	 */
+	public String acquire(String content) {
+		String hash = hash(content);
+
+		while (true) {
+			Fragment fragment = fragments.get(hash);
+
+			if (fragment == null) {
+				if (fragments.putIfAbsent(hash, new Fragment(content)) == null) {
+					return hash;
+				}
+			}
+			else if (fragment.retain()) {
+				return hash;
+			}
+			else {
+				fragments.remove(hash, fragment); // Is being released; help it out and try again.
+			}
+		}
+	}
+
+	/**
+	 * Adds a reference to the content with the given hash, if it's still in the pool.
+	 * @param hash The hash of the content.
+	 * @return Whether the content is still in the pool. If not, no reference has been added.
+	 */
+	public boolean acquireExisting(String hash) {
+		Fragment fragment = fragments.get(hash);
+		return fragment != null && fragment.retain();
+	}
+
+	/**
+	 * Returns the content with the given hash.
+	 * @param hash The hash of the content.
+	 * @return The content with the given hash, or <code>null</code> if it's not in the pool.
+	 */
+	public String get(String hash) {
+		Fragment fragment = fragments.get(hash);
+		return fragment != null ? fragment.content : null;
+	}
+
+	/**
+	 * Releases a reference to the content with the given hash, removing it from the pool if it was the last one.
+	 * @param hash The hash of the content.
+	 */
+	public void release(String hash) {
+		Fragment fragment = fragments.get(hash);
+
+		if (fragment != null && fragment.references.decrementAndGet() == 0) {
+			fragments.remove(hash, fragment);
+		}
+	}
+
+	/**
+	 * Returns the amount of distinct fragments in the pool.
+	 * @return The amount of distinct fragments in the pool.
+	 */
+	public int size() {
+		return fragments.size();
+	}
+
+	private static String hash(String content) {
+		try {
+			return new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content.getBytes(UTF_8))).toString(Character.MAX_RADIX);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static final class Fragment {
+
+		private final String content;
+		private final AtomicInteger references = new AtomicInteger(1);
+
+		public Fragment(String content) {
+			this.content = content;
+		}
+
+		public boolean retain() {
+			while (true) {
+				int count = references.get();
+
+				if (count == 0) {
+					return false;
+				}
+
+				if (references.compareAndSet(count, count + 1)) {
+					return true;
+				}
+			}
+		}
+	}
+
+}
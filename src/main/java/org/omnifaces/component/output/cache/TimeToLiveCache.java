@@ -45,6 +45,7 @@ public abstract class TimeToLiveCache implements Cache {
 				return entry.getValue();
 			} else {
 				cacheStore.remove(key);
+				unregister(key);
 			}
 		}
 
@@ -95,6 +96,7 @@ public abstract class TimeToLiveCache implements Cache {
 				return entry.getAttributes().get(name);
 			} else {
 				cacheStore.remove(key);
+				unregister(key);
 			}
 		}
 
@@ -104,12 +106,23 @@ public abstract class TimeToLiveCache implements Cache {
 	@Override
 	public void remove(String key) {
 		cacheStore.remove(key);
+		unregister(key);
 	}
 
 	protected void setCacheStore(Map<String, CacheEntry> cacheStore) {
 		this.cacheStore = cacheStore;
 	}
 
+	/**
+	 * Unregisters the given key from the {@link CacheTagIndex}. Subclasses should invoke this when an entry is evicted.
+	 *
+	 * @param key the key of the entry which is gone
+	 * @since 2.1
+	 */
+	protected void unregister(String key) {
+		CacheFactory.getTagIndex().unregister(this, key);
+	}
+
 	private Date timeToLiveToDate(int timeToLive) {
 		if (timeToLive != -1) {
 			return new Date(currentTimeMillis() + SECONDS.toMillis(timeToLive));
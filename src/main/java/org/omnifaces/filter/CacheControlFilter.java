@@ -12,20 +12,32 @@
  */
 package org.omnifaces.filter;
 
+import static java.lang.Boolean.TRUE;
 import static java.util.concurrent.TimeUnit.DAYS;
 import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.omnifaces.util.Servlets.getRequestRelativeURI;
 import static org.omnifaces.util.Servlets.isFacesResourceRequest;
+import static org.omnifaces.util.Utils.csvToList;
+import static org.omnifaces.util.Utils.formatRFC1123;
 
 import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 import javax.servlet.http.HttpSession;
 
+import org.omnifaces.servlet.ETagHttpServletResponse;
+
 /**
  * <p>
  * This filter will control the cache-related headers of the response. Cache-related headers have a major impact on
@@ -153,6 +165,61 @@ import javax.servlet.http.HttpSession;
  * <li><code>Pragma: no-cache</code></li>
  * </ul>
  *
+ * <h3>Conditional GET</h3>
+ * <p>
+ * Dynamic pages which rarely change between visits, such as semi-static JSF pages, can additionally be served with
+ * an <code>ETag</code> header, so that revisits are answered with a bodiless 304 ("not modified") when the page
+ * didn't change. To enable this, set the <code>etag</code> initialization parameter to a comma separated string of
+ * URL patterns, relative to the context root and with the same syntax as <code>&lt;url-pattern&gt;</code>. The response
+ * body of matching <code>GET</code> requests is then buffered, and the <code>ETag</code> header is generated from its
+ * hash. The buffer is bounded by the <code>etagBufferSize</code> initialization parameter, which defaults to 65536
+ * bytes. Larger responses are written through without an <code>ETag</code>.
+ * <pre>
+ * &lt;init-param&gt;
+ *     &lt;param-name&gt;etag&lt;/param-name&gt;
+ *     &lt;param-value&gt;/news/*, /about.xhtml&lt;/param-value&gt;
+ * &lt;/init-param&gt;
+ * </pre>
+ * <p>
+ * For those requests, the no-cache headers don't include <code>no-store</code>, as the client must store the
+ * response in order to revalidate it. Note that this only makes sense on pages which render exactly the same on every
+ * visit, and thus not on pages with a stateful form, as the <code>javax.faces.ViewState</code> differs every time.
+ *
+ * <h3>Rules</h3>
+ * <p>
+ * Instead of mapping a separate filter per cache policy, a single filter can tune the caching for the whole site via
+ * the <code>rules</code> initialization parameter. Each line (or <code>;</code> separated part) represents a rule in
+ * the format <code>patterns -&gt; directives</code>, wherein the patterns are comma separated and can be:
+ * <ul>
+ * <li>An URL pattern relative to the context root, with the same syntax as <code>&lt;url-pattern&gt;</code>.
+ * <li>A view ID pattern prefixed with <code>view:</code>, which can be an exact or prefix pattern. The extension is
+ * ignored, so that it matches regardless of the faces servlet mapping.
+ * <li>A mimetype prefixed with <code>mimetype:</code>, which can have a <code>*</code> subtype.
+ * </ul>
+ * <p>
+ * The directives are comma separated and can be <code>max-age</code>, <code>s-maxage</code> and
+ * <code>stale-while-revalidate</code> with a time value in the same syntax as the <code>expires</code> parameter, and
+ * <code>public</code> (default), <code>private</code>, <code>immutable</code>, <code>no-cache</code>,
+ * <code>no-store</code> and <code>etag</code> (see conditional GET above).
+ * <pre>
+ * &lt;init-param&gt;
+ *     &lt;param-name&gt;rules&lt;/param-name&gt;
+ *     &lt;param-value&gt;
+ *         /forum/* -&gt; max-age=10s
+ *         *.pdf, *.zip -&gt; max-age=2d
+ *         view:/news/* -&gt; max-age=1m, s-maxage=1h, stale-while-revalidate=10m, etag
+ *         view:/account/* -&gt; private, no-store
+ *         mimetype:image/* -&gt; max-age=6w, immutable
+ *     &lt;/param-value&gt;
+ * &lt;/init-param&gt;
+ * </pre>
+ * <p>
+ * URL pattern rules win over view ID rules, which win over mimetype rules. Among the URL and view ID patterns, the
+ * <code>&lt;url-pattern&gt;</code> precedence applies: exact, then longest prefix, then extension. Mimetype rules are
+ * applied as soon as the content type is set, and can thus not enable <code>etag</code>. Requests which do not match
+ * any rule get the headers as per the <code>expires</code> parameter. The header values of each rule are computed
+ * once during initialization, and the <code>Expires</code> header value at most once per second.
+ *
  * @author Bauke Scholtz
  * @since 1.7
  */
@@ -161,11 +228,27 @@ public class CacheControlFilter extends HttpFilter {
 	// Constants ------------------------------------------------------------------------------------------------------
 
 	private static final String INIT_PARAM_EXPIRES = "expires";
+	private static final String INIT_PARAM_ETAG = "etag";
+	private static final String INIT_PARAM_ETAG_BUFFER_SIZE = "etagBufferSize";
+	private static final String INIT_PARAM_RULES = "rules";
 	private static final long DEFAULT_EXPIRES = 0;
+	private static final int DEFAULT_ETAG_BUFFER_SIZE = 65536;
 	private static final long DAYS_PER_WEEK = 7;
+	private static final String TIME_PATTERN = "[0-9]{1,9}[wdhms]?";
+	private static final String VIEW_PREFIX = "view:";
+	private static final String MIMETYPE_PREFIX = "mimetype:";
 	private static final String ERROR_EXPIRES = "The 'expires' init param must be a number between 0 and 999999999 with"
 		+ " optionally the 'w', 'd', 'h', 'm' or 's' suffix. For example: '6w' is 6 weeks. Default suffix is 's' for"
 		+ " seconds. For example: '86400' is 86400 seconds. Encountered an invalid value of '%s'.";
+	private static final String ERROR_ETAG_BUFFER_SIZE = "The 'etagBufferSize' init param must be a number between 0"
+		+ " and 999999999. Encountered an invalid value of '%s'.";
+	private static final String ERROR_RULE = "The 'rules' init param must consist of lines in the format"
+		+ " 'patterns -> directives'. Encountered an invalid rule of '%s'.";
+	private static final String ERROR_RULE_PATTERN = "The 'rules' init param pattern '%s' is invalid. It must be an URL"
+		+ " pattern, a 'view:' followed by an exact or prefix view ID pattern, or a 'mimetype:' followed by a mimetype.";
+	private static final String ERROR_RULE_DIRECTIVE = "The 'rules' init param directive '%s' is invalid. It must be one"
+		+ " of max-age, s-maxage and stale-while-revalidate with a time value, or one of public, private, immutable,"
+		+ " no-cache, no-store and etag.";
 
 	private enum Unit {
 		W(DAYS.toSeconds(DAYS_PER_WEEK)), D(DAYS.toSeconds(1)), H(HOURS.toSeconds(1)), M(MINUTES.toSeconds(1)), S(1);
@@ -184,46 +267,112 @@ public class CacheControlFilter extends HttpFilter {
 	// Vars -----------------------------------------------------------------------------------------------------------
 
 	private long expires = DEFAULT_EXPIRES;
+	private Policy defaultPolicy;
+	private PatternTable<Policy> urlPolicies = new PatternTable<>();
+	private PatternTable<Policy> viewPolicies = new PatternTable<>();
+	private Map<String, Policy> mimetypePolicies = new HashMap<>();
+	private PatternTable<Boolean> etagUrlPatterns = new PatternTable<>();
+	private int etagBufferSize = DEFAULT_ETAG_BUFFER_SIZE;
 
 	// Actions --------------------------------------------------------------------------------------------------------
 
 	/**
-	 * Initialize the <code>expires</code> parameter.
+	 * Initialize the <code>expires</code>, <code>etag</code>, <code>etagBufferSize</code> and <code>rules</code>
+	 * parameters.
 	 */
 	@Override
 	public void init() throws ServletException {
 		String expires = getInitParameter(INIT_PARAM_EXPIRES);
 
 		if (expires != null) {
-			if (!expires.matches("[0-9]{1,9}[wdhms]?")) {
+			if (!expires.matches(TIME_PATTERN)) {
 				throw new ServletException(String.format(ERROR_EXPIRES, expires));
 			}
 
-			String[] parts = expires.split("(?=[wdhms])");
-			long number = Long.valueOf(parts[0]);
+			this.expires = parseTime(expires);
+		}
+
+		defaultPolicy = new Policy();
 
-			if (parts.length > 1) {
-				String unit = parts[1];
-				number = Unit.valueOf(unit.toUpperCase()).toSeconds(number);
+		if (this.expires > 0) {
+			defaultPolicy.maxAge = this.expires;
+		}
+		else {
+			defaultPolicy.noStore = true;
+		}
+
+		defaultPolicy.init();
+
+		for (String urlPattern : csvToList(getInitParameter(INIT_PARAM_ETAG))) {
+			etagUrlPatterns.put(urlPattern, TRUE);
+		}
+
+		String etagBufferSize = getInitParameter(INIT_PARAM_ETAG_BUFFER_SIZE);
+
+		if (etagBufferSize != null) {
+			if (!etagBufferSize.matches("[0-9]{1,9}")) {
+				throw new ServletException(String.format(ERROR_ETAG_BUFFER_SIZE, etagBufferSize));
 			}
 
-			this.expires = number;
+			this.etagBufferSize = Integer.valueOf(etagBufferSize);
+		}
+
+		String rules = getInitParameter(INIT_PARAM_RULES);
+
+		if (rules != null) {
+			initRules(rules);
 		}
 	}
 
 	/**
-	 * Set the necessary response headers based on <code>expires</code> initialization parameter.
+	 * Set the necessary response headers based on the matching rule, or else the <code>expires</code> initialization
+	 * parameter.
 	 */
 	@Override
 	public void doFilter
 		(HttpServletRequest request, HttpServletResponse response, HttpSession session, FilterChain chain)
 			throws ServletException, IOException
 	{
-		if (!isFacesResourceRequest(request)) {
-			setCacheHeaders(response, expires);
+		if (isFacesResourceRequest(request)) {
+			chain.doFilter(request, response);
+			return;
 		}
 
-		chain.doFilter(request, response);
+		String uri = getRequestRelativeURI(request);
+		Policy policy = urlPolicies.get(uri);
+
+		if (policy == null && !viewPolicies.isEmpty()) {
+			policy = viewPolicies.get(toViewPath(request));
+		}
+
+		HttpServletResponse policyResponse = response;
+
+		if (policy == null) {
+			policy = defaultPolicy;
+
+			if (!mimetypePolicies.isEmpty()) {
+				policyResponse = new MimetypePolicyResponse(response, mimetypePolicies);
+			}
+		}
+
+		boolean etag = (policy.etag || etagUrlPatterns.get(uri) != null)
+			&& ("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()));
+
+		if (etag && policy == defaultPolicy && expires == 0) {
+			setRevalidateHeaders(response);
+		}
+		else {
+			policy.apply(response);
+		}
+
+		if (etag) {
+			ETagHttpServletResponse etagResponse = new ETagHttpServletResponse(policyResponse, etagBufferSize);
+			chain.doFilter(request, etagResponse);
+			etagResponse.finish(request.getHeader("If-None-Match"));
+		}
+		else {
+			chain.doFilter(request, policyResponse);
+		}
 	}
 
 	/**
@@ -264,4 +413,338 @@ public class CacheControlFilter extends HttpFilter {
 		response.setHeader("Pragma", "no-cache"); // Backwards compatibility for HTTP 1.0.
 	}
 
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Set the headers which instruct the client to store the response, but to revalidate it on every use.
+	 */
+	private static void setRevalidateHeaders(HttpServletResponse response) {
+		response.setHeader("Cache-Control", "no-cache,must-revalidate");
+		response.setDateHeader("Expires", 0);
+		response.setHeader("Pragma", ""); // Explicitly set pragma to prevent container from overriding it.
+	}
+
+	/**
+	 * Parses the given rules into the policy tables.
+	 */
+	private void initRules(String rules) throws ServletException {
+		for (String rule : rules.split("\\s*[\\r\\n;]+\\s*")) {
+			if (rule.trim().isEmpty()) {
+				continue;
+			}
+
+			String[] patternsAndDirectives = rule.split("\\s*->\\s*", 2);
+
+			if (patternsAndDirectives.length != 2) {
+				throw new ServletException(String.format(ERROR_RULE, rule));
+			}
+
+			Policy policy = parsePolicy(csvToList(patternsAndDirectives[1]));
+
+			for (String pattern : csvToList(patternsAndDirectives[0])) {
+				if (pattern.startsWith(VIEW_PREFIX)) {
+					String viewPattern = pattern.substring(VIEW_PREFIX.length());
+
+					if (!viewPattern.startsWith("/")) {
+						throw new ServletException(String.format(ERROR_RULE_PATTERN, pattern));
+					}
+
+					viewPolicies.put(viewPattern.endsWith("/*") ? viewPattern : stripExtension(viewPattern), policy);
+				}
+				else if (pattern.startsWith(MIMETYPE_PREFIX)) {
+					mimetypePolicies.put(pattern.substring(MIMETYPE_PREFIX.length()).toLowerCase(), policy);
+				}
+				else if (pattern.startsWith("/") || pattern.startsWith("*.")) {
+					urlPolicies.put(pattern, policy);
+				}
+				else {
+					throw new ServletException(String.format(ERROR_RULE_PATTERN, pattern));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parses the given directives into a policy.
+	 */
+	private static Policy parsePolicy(List<String> directives) throws ServletException {
+		Policy policy = new Policy();
+
+		for (String directive : directives) {
+			String[] nameAndValue = directive.toLowerCase().split("\\s*=\\s*", 2);
+			String name = nameAndValue[0];
+			String value = (nameAndValue.length > 1) ? nameAndValue[1] : null;
+
+			if (value != null) {
+				if (!value.matches(TIME_PATTERN)) {
+					throw new ServletException(String.format(ERROR_RULE_DIRECTIVE, directive));
+				}
+
+				long seconds = parseTime(value);
+
+				switch (name) {
+					case "max-age": policy.maxAge = seconds; break;
+					case "s-maxage": policy.sharedMaxAge = seconds; break;
+					case "stale-while-revalidate": policy.staleWhileRevalidate = seconds; break;
+					default: throw new ServletException(String.format(ERROR_RULE_DIRECTIVE, directive));
+				}
+			}
+			else {
+				switch (name) {
+					case "public": policy.privateCache = false; break;
+					case "private": policy.privateCache = true; break;
+					case "immutable": policy.immutable = true; break;
+					case "no-cache": policy.noCache = true; break;
+					case "no-store": policy.noStore = true; break;
+					case "etag": policy.etag = true; break;
+					default: throw new ServletException(String.format(ERROR_RULE_DIRECTIVE, directive));
+				}
+			}
+		}
+
+		policy.init();
+		return policy;
+	}
+
+	/**
+	 * Parses the given time with optional unit suffix into seconds.
+	 */
+	private static long parseTime(String time) {
+		String[] parts = time.split("(?=[wdhms])");
+		long number = Long.valueOf(parts[0]);
+
+		if (parts.length > 1) {
+			String unit = parts[1];
+			number = Unit.valueOf(unit.toUpperCase()).toSeconds(number);
+		}
+
+		return number;
+	}
+
+	/**
+	 * Returns the path of the view as seen by the faces servlet, without extension. This is the path info for prefix
+	 * mapped requests and else the servlet path.
+	 */
+	private static String toViewPath(HttpServletRequest request) {
+		String pathInfo = request.getPathInfo();
+		return stripExtension((pathInfo != null) ? pathInfo : request.getServletPath());
+	}
+
+	private static String stripExtension(String path) {
+		int extensionIndex = path.lastIndexOf('.');
+		return (extensionIndex > path.lastIndexOf('/')) ? path.substring(0, extensionIndex) : path;
+	}
+
+	// Nested classes -------------------------------------------------------------------------------------------------
+
+	/**
+	 * A cache policy, whose header values are computed once. The <code>Expires</code> header value is computed at most
+	 * once per second.
+	 */
+	private static final class Policy {
+
+		private long maxAge;
+		private long sharedMaxAge;
+		private long staleWhileRevalidate;
+		private boolean privateCache;
+		private boolean immutable;
+		private boolean noCache;
+		private boolean noStore;
+		private boolean etag;
+
+		private String cacheControl;
+		private String pragma;
+		private volatile Expires expires;
+
+		public void init() {
+			StringBuilder builder = new StringBuilder();
+
+			if (noStore) {
+				builder.append("no-cache,no-store,must-revalidate");
+				pragma = "no-cache"; // Backwards compatibility for HTTP 1.0.
+			}
+			else {
+				builder.append(privateCache ? "private" : "public");
+
+				if (noCache) {
+					builder.append(",no-cache");
+				}
+				else {
+					builder.append(",max-age=").append(maxAge);
+				}
+
+				if (sharedMaxAge > 0) {
+					builder.append(",s-maxage=").append(sharedMaxAge);
+				}
+
+				if (staleWhileRevalidate > 0) {
+					builder.append(",stale-while-revalidate=").append(staleWhileRevalidate);
+				}
+				else {
+					builder.append(",must-revalidate");
+				}
+
+				if (immutable) {
+					builder.append(",immutable");
+				}
+
+				pragma = ""; // Explicitly set pragma to prevent container from overriding it.
+			}
+
+			cacheControl = builder.toString();
+		}
+
+		public void apply(HttpServletResponse response) {
+			response.setHeader("Cache-Control", cacheControl);
+
+			if (noStore || noCache || maxAge == 0) {
+				response.setDateHeader("Expires", 0);
+			}
+			else {
+				response.setHeader("Expires", getExpires());
+			}
+
+			response.setHeader("Pragma", pragma);
+		}
+
+		private String getExpires() {
+			long now = System.currentTimeMillis();
+			long second = MILLISECONDS.toSeconds(now);
+			Expires current = expires;
+
+			if (current == null || current.second != second) {
+				current = new Expires(second, formatRFC1123(new Date(now + SECONDS.toMillis(maxAge))));
+				expires = current;
+			}
+
+			return current.value;
+		}
+
+		private static final class Expires {
+
+			private final long second;
+			private final String value;
+
+			public Expires(long second, String value) {
+				this.second = second;
+				this.value = value;
+			}
+		}
+	}
+
+	/**
+	 * A table of URL patterns with the same syntax and precedence as <code>&lt;url-pattern&gt;</code>: an exact match
+	 * wins over the longest prefix match, which wins over an extension match, which wins over the default match.
+	 */
+	private static final class PatternTable<T> {
+
+		private final Map<String, T> exact = new HashMap<>();
+		private final Map<String, T> prefixes = new HashMap<>();
+		private final Map<String, T> extensions = new HashMap<>();
+		private T defaultValue;
+		private boolean empty = true;
+
+		public void put(String pattern, T value) {
+			if (pattern.equals("/") || pattern.equals("/*")) {
+				defaultValue = value;
+			}
+			else if (pattern.endsWith("/*")) {
+				prefixes.put(pattern.substring(0, pattern.length() - 2), value);
+			}
+			else if (pattern.startsWith("*.")) {
+				extensions.put(pattern.substring(1), value);
+			}
+			else {
+				exact.put(pattern, value);
+			}
+
+			empty = false;
+		}
+
+		public T get(String path) {
+			if (empty) {
+				return null;
+			}
+
+			T value = exact.get(path);
+
+			if (value != null) {
+				return value;
+			}
+
+			if (!prefixes.isEmpty()) {
+				for (String prefix = path; !prefix.isEmpty(); prefix = prefix.substring(0, prefix.lastIndexOf('/'))) {
+					value = prefixes.get(prefix);
+
+					if (value != null) {
+						return value;
+					}
+				}
+			}
+
+			if (!extensions.isEmpty()) {
+				int extensionIndex = path.lastIndexOf('.');
+
+				if (extensionIndex > path.lastIndexOf('/')) {
+					value = extensions.get(path.substring(extensionIndex));
+
+					if (value != null) {
+						return value;
+					}
+				}
+			}
+
+			return defaultValue;
+		}
+
+		public boolean isEmpty() {
+			return empty;
+		}
+	}
+
+	/**
+	 * Applies the policy of the mimetype rule as soon as the content type is set.
+	 */
+	private static final class MimetypePolicyResponse extends HttpServletResponseWrapper {
+
+		private final Map<String, Policy> mimetypePolicies;
+
+		public MimetypePolicyResponse(HttpServletResponse response, Map<String, Policy> mimetypePolicies) {
+			super(response);
+			this.mimetypePolicies = mimetypePolicies;
+		}
+
+		@Override
+		public void setContentType(String type) {
+			super.setContentType(type);
+			applyPolicy(type);
+		}
+
+		@Override
+		public void setHeader(String name, String value) {
+			super.setHeader(name, value);
+
+			if ("content-type".equalsIgnoreCase(name)) {
+				applyPolicy(value);
+			}
+		}
+
+		private void applyPolicy(String contentType) {
+			if (contentType == null || isCommitted()) {
+				return;
+			}
+
+			String mimetype = contentType.split(";", 2)[0].trim().toLowerCase();
+			Policy policy = mimetypePolicies.get(mimetype);
+
+			if (policy == null) {
+				policy = mimetypePolicies.get(mimetype.split("/", 2)[0] + "/*");
+			}
+
+			if (policy != null) {
+				policy.apply((HttpServletResponse) getResponse());
+			}
+		}
+	}
+
 }
\ No newline at end of file
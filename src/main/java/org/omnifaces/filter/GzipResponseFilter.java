@@ -15,10 +15,17 @@ package org.omnifaces.filter;
 import static org.omnifaces.util.Utils.unmodifiableSet;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.zip.Deflater;
 
 import javax.faces.webapp.FacesServlet;
 import javax.servlet.FilterChain;
@@ -27,6 +34,8 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
+import org.omnifaces.servlet.ContentEncoder;
+import org.omnifaces.servlet.DeflaterContentEncoder;
 import org.omnifaces.servlet.GzipHttpServletResponse;
 import org.omnifaces.servlet.HttpServletResponseOutputWrapper;
 
@@ -78,7 +87,7 @@ import org.omnifaces.servlet.HttpServletResponseOutputWrapper;
  *
  * <h3>Configuration (optional)</h3>
  * <p>
- * This filter supports two initialization parameters which needs to be placed in <code>&lt;filter&gt;</code> element
+ * This filter supports five initialization parameters which needs to be placed in <code>&lt;filter&gt;</code> element
  * as follows:
  * <pre>
  * &lt;init-param&gt;
@@ -94,6 +103,21 @@ import org.omnifaces.servlet.HttpServletResponseOutputWrapper;
  *         application/xml, application/xhtml+xml, application/javascript, application/json
  *     &lt;/param-value&gt;
  * &lt;/init-param&gt;
+ * &lt;init-param&gt;
+ *     &lt;description&gt;The compression level and optional strategy per mimetype. Defaults to the default level and strategy.&lt;/description&gt;
+ *     &lt;param-name&gt;compression&lt;/param-name&gt;
+ *     &lt;param-value&gt;*=6, application/json=1:huffman_only&lt;/param-value&gt;
+ * &lt;/init-param&gt;
+ * &lt;init-param&gt;
+ *     &lt;description&gt;Whether explicit flushes are propagated to the client. Defaults to false.&lt;/description&gt;
+ *     &lt;param-name&gt;streaming&lt;/param-name&gt;
+ *     &lt;param-value&gt;true&lt;/param-value&gt;
+ * &lt;/init-param&gt;
+ * &lt;init-param&gt;
+ *     &lt;description&gt;The supported encodings in order of preference. Defaults to gzip.&lt;/description&gt;
+ *     &lt;param-name&gt;encodings&lt;/param-name&gt;
+ *     &lt;param-value&gt;gzip, deflate&lt;/param-value&gt;
+ * &lt;/init-param&gt;
  * </pre>
  * <p>
  * The default <code>threshold</code> is thus 500 bytes. This means that when the response is not larger than 500 bytes,
@@ -105,10 +129,31 @@ import org.omnifaces.servlet.HttpServletResponseOutputWrapper;
  * exactly that value which appears in the <code>Content-Type</code> header of the response. The in the above example
  * mentioned mime types are already the default values. Note that GZIP does not have any benefit when applied on
  * binary mimetypes like images, office documents, PDF files, etcetera. So setting it for them is not recommended.
+ * <p>
+ * The <code>compression</code> represents a comma separated string of <code>mimetype=level:strategy</code> entries,
+ * wherein the mimetype <code>*</code> applies to all other mimetypes. The level must be a number between 0 (no
+ * compression) and 9 (best compression), and the strategy, which is optional, must be one of <code>default</code>,
+ * <code>filtered</code> and <code>huffman_only</code>. See also {@link Deflater}. Lower levels compress faster, at the
+ * cost of a larger response. The compressors are pooled and reused, so there's no need to worry about their allocation.
+ * <p>
+ * The <code>streaming</code> setting enables the streaming mode. Normally, explicit flushes via
+ * {@link HttpServletResponse#flushBuffer()} are ignored until the response is committed, and the compressor holds on
+ * to its data until the response is finished. In streaming mode, an explicit flush is propagated through the
+ * compressor with {@link Deflater#SYNC_FLUSH}, so that the client can start parsing large, progressively flushed pages
+ * and partial responses early on. It costs a few bytes per flush.
+ * <p>
+ * The <code>encodings</code> represents a comma separated string of the supported encodings, in order of preference
+ * of the server. Built-in are <code>gzip</code> and <code>deflate</code>. Any other value is interpreted as the fully
+ * qualified class name of a {@link ContentEncoder} implementation with a default constructor. The encoding is
+ * negotiated with the quality values of the <code>Accept-Encoding</code> request header, wherein the preference of
+ * the server decides between encodings of equal quality. The <code>threshold</code>, <code>mimetypes</code> and
+ * <code>compression</code> settings apply to both built-in encodings, but can be overridden per encoding by prefixing
+ * the init param name with the encoding, e.g. <code>deflate.threshold</code>.
  *
  * @author Bauke Scholtz
  * @since 1.1
  * @see GzipHttpServletResponse
+ * @see ContentEncoder
  * @see HttpServletResponseOutputWrapper
  */
 public class GzipResponseFilter extends HttpFilter {
@@ -117,20 +162,30 @@ public class GzipResponseFilter extends HttpFilter {
 
 	private static final String INIT_PARAM_THRESHOLD = "threshold";
 	private static final String INIT_PARAM_MIMETYPES = "mimetypes";
+	private static final String INIT_PARAM_COMPRESSION = "compression";
+	private static final String INIT_PARAM_STREAMING = "streaming";
+	private static final String INIT_PARAM_ENCODINGS = "encodings";
 
 	private static final int DEFAULT_THRESHOLD = 500;
 	private static final Set<String> DEFAULT_MIMETYPES = unmodifiableSet(
 		"text/plain", "text/html", "text/xml", "text/css", "text/javascript", "text/csv", "text/rtf",
 		"application/xml", "application/xhtml+xml", "application/javascript", "application/json"
 	);
+	private static final String DEFAULT_ENCODINGS = DeflaterContentEncoder.GZIP;
 
-	private static final String ERROR_THRESHOLD = "The 'threshold' init param must be a number between 0 and 9999."
+	private static final String ERROR_THRESHOLD = "The '%s' init param must be a number between 0 and 9999."
+		+ " Encountered an invalid value of '%s'.";
+	private static final String ERROR_COMPRESSION = "The '%s' init param must be a commaseparated string of"
+		+ " mimetype=level:strategy entries, with a level between 0 and 9 and an optional strategy of 'default',"
+		+ " 'filtered' or 'huffman_only'. Encountered an invalid value of '%s'.";
+	private static final String ERROR_ENCODING = "The 'encodings' init param must be a commaseparated string of"
+		+ " 'gzip', 'deflate' and/or fully qualified class names of ContentEncoder implementations."
 		+ " Encountered an invalid value of '%s'.";
 
 	// Vars -----------------------------------------------------------------------------------------------------------
 
-	private Set<String> mimetypes = DEFAULT_MIMETYPES;
-	private int threshold = DEFAULT_THRESHOLD;
+	private List<ContentEncoder> encoders = new ArrayList<>();
+	private boolean streaming;
 
 	// Actions --------------------------------------------------------------------------------------------------------
 
@@ -139,36 +194,43 @@ public class GzipResponseFilter extends HttpFilter {
 	 */
 	@Override
 	public void init() throws ServletException {
-		String threshold = getInitParameter(INIT_PARAM_THRESHOLD);
+		String encodings = getInitParameter(INIT_PARAM_ENCODINGS);
 
-		if (threshold != null) {
-			if (!threshold.matches("[0-9]{1,4}")) {
-				throw new ServletException(String.format(ERROR_THRESHOLD, threshold));
+		for (String encoding : (encodings != null ? encodings : DEFAULT_ENCODINGS).trim().split("\\s*,\\s*")) {
+			if (DeflaterContentEncoder.GZIP.equals(encoding) || DeflaterContentEncoder.DEFLATE.equals(encoding)) {
+				encoders.add(createDeflaterContentEncoder(encoding));
 			}
 			else {
-				this.threshold = Integer.valueOf(threshold);
+				encoders.add(createContentEncoder(encoding));
 			}
 		}
 
-		String mimetypes = getInitParameter(INIT_PARAM_MIMETYPES);
-
-		if (mimetypes != null) {
-			this.mimetypes = new HashSet<>(Arrays.asList(mimetypes.split("\\s*,\\s*")));
-		}
+		streaming = Boolean.parseBoolean(getInitParameter(INIT_PARAM_STREAMING));
 	}
 
 	/**
-	 * Perform the filtering job. Only if the client accepts GZIP based on the request headers, then wrap the response
-	 * in a {@link GzipHttpServletResponse} and pass it through the filter chain.
+	 * Perform the filtering job. Only if the client accepts any of the configured encodings based on the request
+	 * headers, then wrap the response in a {@link GzipHttpServletResponse} and pass it through the filter chain.
 	 */
 	@Override
 	public void doFilter
 		(HttpServletRequest request, HttpServletResponse response, HttpSession session, FilterChain chain)
 			throws ServletException, IOException
 	{
-		if (acceptsGzip(request)) {
-			GzipHttpServletResponse gzipResponse = new GzipHttpServletResponse(response, threshold, mimetypes);
-			chain.doFilter(request, gzipResponse);
+		List<ContentEncoder> acceptedEncoders = getAcceptedEncoders(request);
+
+		if (!acceptedEncoders.isEmpty()) {
+			GzipHttpServletResponse gzipResponse = new GzipHttpServletResponse(response, acceptedEncoders);
+			gzipResponse.setStreaming(streaming);
+
+			try {
+				chain.doFilter(request, gzipResponse);
+			}
+			catch (Throwable e) {
+				gzipResponse.discard(); // Don't commit the partial body, the container may still send an error page.
+				throw e;
+			}
+
 			gzipResponse.close(); // Mandatory for the case the threshold limit hasn't been reached.
 		}
 		else {
@@ -179,18 +241,172 @@ public class GzipResponseFilter extends HttpFilter {
 	// Helpers --------------------------------------------------------------------------------------------------------
 
 	/**
-	 * Returns whether the given request indicates that the client accepts GZIP encoding.
+	 * Create the built-in content encoder for the given encoding, configured by the encoding specific init params, if
+	 * any, or else the general init params.
+	 * @param encoding The encoding, either <code>gzip</code> or <code>deflate</code>.
+	 * @return The built-in content encoder for the given encoding.
+	 * @throws ServletException When an init param is invalid.
+	 */
+	private DeflaterContentEncoder createDeflaterContentEncoder(String encoding) throws ServletException {
+		int threshold = DEFAULT_THRESHOLD;
+		String thresholdParam = getEncodingInitParameter(encoding, INIT_PARAM_THRESHOLD);
+
+		if (thresholdParam != null) {
+			if (!getInitParameter(thresholdParam).matches("[0-9]{1,4}")) {
+				throw new ServletException(String.format(ERROR_THRESHOLD, thresholdParam, getInitParameter(thresholdParam)));
+			}
+			else {
+				threshold = Integer.valueOf(getInitParameter(thresholdParam));
+			}
+		}
+
+		Set<String> mimetypes = DEFAULT_MIMETYPES;
+		String mimetypesParam = getEncodingInitParameter(encoding, INIT_PARAM_MIMETYPES);
+
+		if (mimetypesParam != null) {
+			mimetypes = new HashSet<>(Arrays.asList(getInitParameter(mimetypesParam).trim().split("\\s*,\\s*")));
+		}
+
+		DeflaterContentEncoder encoder =
+			new DeflaterContentEncoder(DeflaterContentEncoder.GZIP.equals(encoding), threshold, mimetypes);
+		String compressionParam = getEncodingInitParameter(encoding, INIT_PARAM_COMPRESSION);
+
+		if (compressionParam != null) {
+			initCompression(encoder, compressionParam, getInitParameter(compressionParam).trim());
+		}
+
+		return encoder;
+	}
+
+	/**
+	 * Returns the name of the encoding specific init param, e.g. <code>deflate.threshold</code>, if present, or else
+	 * the name of the general init param, if present, or else <code>null</code>.
+	 */
+	private String getEncodingInitParameter(String encoding, String name) {
+		String encodingName = encoding + "." + name;
+
+		if (getInitParameter(encodingName) != null) {
+			return encodingName;
+		}
+
+		return (getInitParameter(name) != null) ? name : null;
+	}
+
+	/**
+	 * Parses the given compression settings into the given encoder.
+	 * @param encoder The encoder to set the compression settings on.
+	 * @param name The compression init param name.
+	 * @param compression The compression init param value.
+	 * @throws ServletException When the compression init param value is invalid.
+	 */
+	private static void initCompression(DeflaterContentEncoder encoder, String name, String compression)
+		throws ServletException
+	{
+		for (String setting : compression.split("\\s*,\\s*")) {
+			if (!setting.matches("[^=\\s]+\\s*=\\s*[0-9](:(default|filtered|huffman_only))?")) {
+				throw new ServletException(String.format(ERROR_COMPRESSION, name, compression));
+			}
+
+			String[] mimetypeAndLevel = setting.split("\\s*=\\s*", 2);
+			String[] levelAndStrategy = mimetypeAndLevel[1].split(":", 2);
+			int level = Integer.parseInt(levelAndStrategy[0]);
+			int strategy = (levelAndStrategy.length == 1) ? Deflater.DEFAULT_STRATEGY
+				: "filtered".equals(levelAndStrategy[1]) ? Deflater.FILTERED
+				: "huffman_only".equals(levelAndStrategy[1]) ? Deflater.HUFFMAN_ONLY
+				: Deflater.DEFAULT_STRATEGY;
+			encoder.setCompression(mimetypeAndLevel[0], level, strategy);
+		}
+	}
+
+	/**
+	 * Create the custom content encoder of the given class name.
+	 * @param className The fully qualified class name of the content encoder.
+	 * @return The custom content encoder of the given class name.
+	 * @throws ServletException When the class cannot be instantiated as a content encoder.
+	 */
+	private static ContentEncoder createContentEncoder(String className) throws ServletException {
+		try {
+			return (ContentEncoder) Class.forName(className, true, Thread.currentThread().getContextClassLoader())
+				.newInstance();
+		}
+		catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException e) {
+			throw new ServletException(String.format(ERROR_ENCODING, className), e);
+		}
+	}
+
+	/**
+	 * Returns the configured encoders which are accepted by the client as per the <code>Accept-Encoding</code>
+	 * request headers, ordered by the quality value of the client, and then by the configured order. Encodings with a
+	 * quality value of 0 are not accepted, and the <code>*</code> applies to all encodings not explicitly mentioned.
 	 * @param request The request to be checked.
-	 * @return <code>true</code> if the client accepts GZIP encoding, otherwise <code>false</code>.
+	 * @return The configured encoders which are accepted by the client.
 	 */
-	private static boolean acceptsGzip(HttpServletRequest request) {
+	private List<ContentEncoder> getAcceptedEncoders(HttpServletRequest request) {
+		Map<String, Float> qualities = new HashMap<>();
+
 		for (Enumeration<String> e = request.getHeaders("Accept-Encoding"); e.hasMoreElements();) {
-			if (e.nextElement().contains("gzip")) {
-				return true;
+			for (String acceptEncoding : e.nextElement().split(",")) {
+				String[] parts = acceptEncoding.split(";");
+				String encoding = parts[0].trim().toLowerCase();
+
+				if (!encoding.isEmpty()) {
+					qualities.put("x-gzip".equals(encoding) ? "gzip" : encoding, parseQuality(parts));
+				}
+			}
+		}
+
+		if (qualities.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		List<ContentEncoder> acceptedEncoders = new ArrayList<>(encoders.size());
+		final Map<ContentEncoder, Float> acceptedQualities = new HashMap<>();
+
+		for (ContentEncoder encoder : encoders) {
+			Float quality = qualities.get(encoder.getName());
+
+			if (quality == null) {
+				quality = qualities.get("*");
+			}
+
+			if (quality != null && quality > 0) {
+				acceptedEncoders.add(encoder);
+				acceptedQualities.put(encoder, quality);
+			}
+		}
+
+		if (acceptedEncoders.size() > 1) {
+			Collections.sort(acceptedEncoders, new Comparator<ContentEncoder>() { // Stable, so configured order is kept.
+				@Override
+				public int compare(ContentEncoder left, ContentEncoder right) {
+					return acceptedQualities.get(right).compareTo(acceptedQualities.get(left));
+				}
+			});
+		}
+
+		return acceptedEncoders;
+	}
+
+	/**
+	 * Parses the quality value from the given parts of an <code>Accept-Encoding</code> element, wherein the first part
+	 * is the encoding itself and the others are its parameters, in any order. If absent, the quality value defaults to
+	 * 1. If invalid, it's considered 0.
+	 */
+	private static float parseQuality(String[] parts) {
+		for (int i = 1; i < parts.length; i++) {
+			String[] parameter = parts[i].split("=", 2);
+
+			if (parameter.length == 2 && "q".equalsIgnoreCase(parameter[0].trim())) {
+				try {
+					return Float.parseFloat(parameter[1].trim());
+				}
+				catch (NumberFormatException e) {
+					return 0;
+				}
 			}
 		}
 
-		return false;
+		return 1;
 	}
 
 }
\ No newline at end of file
@@ -21,6 +21,7 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
 import org.omnifaces.servlet.BufferedHttpServletResponse;
+import org.omnifaces.servlet.CapturingHttpServletResponse;
 
 /**
  * Filter that wraps the response with one capable of buffering on command.
@@ -36,6 +37,10 @@ import org.omnifaces.servlet.BufferedHttpServletResponse;
  * If at the end of the request, when this filter resumes control again, the response is still buffering (<code>passThrough</code> is false)
  * its buffer will be automatically flushed to the underlying response. If however the buffer is not empty, but <code>passThrough</code> is true,
  * no such flushing will be done and it's assumed the application has taken care of this.
+ * <p>
+ * Additionally, a {@link CapturingHttpServletResponse} is made available as a request attribute. This one never buffers
+ * the response, but merely records the regions of the response writer output between the markers registered on it. This
+ * is what the <code>useBuffer</code> mode of the Cache component uses, so that only the cached fragment is held in memory.
  *
  * @author Arjan Tijms
  * @since 1.2
@@ -44,24 +49,32 @@ import org.omnifaces.servlet.BufferedHttpServletResponse;
 public class OnDemandResponseBufferFilter extends HttpFilter {
 
 	public static final String BUFFERED_RESPONSE = "org.omnifaces.servlet.BUFFERED_RESPONSE";
+	public static final String CAPTURING_RESPONSE = "org.omnifaces.servlet.CAPTURING_RESPONSE";
 
 	@Override
 	public void doFilter(HttpServletRequest request, HttpServletResponse response, HttpSession session, FilterChain chain) throws ServletException,
 	        IOException {
 
-		BufferedHttpServletResponse bufferedResponse = new BufferedHttpServletResponse(response);
+		CapturingHttpServletResponse capturingResponse = new CapturingHttpServletResponse(response);
+		BufferedHttpServletResponse bufferedResponse = new BufferedHttpServletResponse(capturingResponse);
 
 		// By default don't buffer, code has to activate this explicitly.
 		bufferedResponse.setPassThrough(true);
 
 		request.setAttribute(BUFFERED_RESPONSE, bufferedResponse);
+		request.setAttribute(CAPTURING_RESPONSE, capturingResponse);
 
 		try {
 			chain.doFilter(request, bufferedResponse);
 		} finally {
 			if (!bufferedResponse.isPassThrough()) {
 				// TODO: output stream support
-				response.getWriter().write(bufferedResponse.getBufferAsString());
+				try {
+					bufferedResponse.writeBufferTo(capturingResponse.getWriter());
+				}
+				finally {
+					bufferedResponse.releaseBuffer();
+				}
 			}
 		}
 
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.io;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of byte arrays of a fixed size, so that short lived buffers, such as those needed for every response, can be
+ * reused instead of being allocated and garbage collected over and over. There is one pool per size. The amount of
+ * pooled arrays is bounded; arrays which are released while the pool is full are just left to the garbage collector.
+ *
+ * @author agent
+ * @since 2.1
+ * @see DeflaterPool
+ */
+public final class ByteArrayPool {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	private static final int MAX_POOLED = Runtime.getRuntime().availableProcessors() * 4;
+	private static final ConcurrentMap<Integer, ByteArrayPool> POOLS = new ConcurrentHashMap<>();
+
+	// Variables ------------------------------------------------------------------------------------------------------
+
+	private final int size;
+	private final Queue<byte[]> arrays = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	private ByteArrayPool(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * Returns the pool of byte arrays of the given size.
+	 * @param size The size of the byte arrays.
+	 * @return The pool of byte arrays of the given size.
+	 */
+	public static ByteArrayPool getInstance(int size) {
+		ByteArrayPool pool = POOLS.get(size);
+
+		if (pool == null) {
+			ByteArrayPool newPool = new ByteArrayPool(size);
+			pool = POOLS.putIfAbsent(size, newPool);
+
+			if (pool == null) {
+				pool = newPool;
+			}
+		}
+
+		return pool;
+	}
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Borrows a byte array from the pool, or creates a new one if the pool is empty. Note that a reused array is not
+	 * cleared.
+	 * @return A byte array of the size of this pool.
+	 */
+	public byte[] borrow() {
+		byte[] array = arrays.poll();
+
+		if (array == null) {
+			return new byte[size];
+		}
+
+		pooled.decrementAndGet();
+		return array;
+	}
+
+	/**
+	 * Returns the given byte array to the pool. It may not be used by the caller anymore after this call.
+	 * @param array The byte array which was borrowed from this pool.
+	 */
+	public void release(byte[] array) {
+		if (array.length == size && pooled.incrementAndGet() <= MAX_POOLED) {
+			arrays.offer(array);
+		}
+		else if (array.length == size) {
+			pooled.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns the size of the byte arrays of this pool.
+	 * @return The size of the byte arrays of this pool.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This capturing writer passes everything straight through to the wrapped writer, while recording only the characters
+ * which are written between a given start marker and end marker. Such a region can be registered via
+ * {@link #capture(String, String)}, and its content is afterwards available via {@link Capture#getContent()}.
+ * <p>
+ * The markers are searched in a streaming manner, so they are also found when they are split over multiple write calls.
+ * When there are no pending captures, the characters are not inspected at all.
+ *
+ * @author agent
+ * @since 2.1
+ */
+public class CapturingWriter extends Writer {
+
+	// Variables ------------------------------------------------------------------------------------------------------
+
+	private final Writer writer;
+	private final List<Capture> pendingCaptures = new CopyOnWriteArrayList<>();
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	/**
+	 * Construct a new capturing writer which wraps the given writer.
+	 * @param writer The wrapped writer.
+	 */
+	public CapturingWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Starts looking for a region delimited by the given markers in everything written from now on.
+	 * @param startMarker The marker which starts the region to capture.
+	 * @param endMarker The marker which ends the region to capture.
+	 * @return The capture which will hold the content of the region, excluding the markers.
+	 */
+	public Capture capture(String startMarker, String endMarker) {
+		return capture(new Capture(startMarker, endMarker));
+	}
+
+	/**
+	 * Starts looking for the region of the given capture in everything written from now on. This allows a capture to be
+	 * created before the writer itself is created.
+	 * @param capture The capture which will hold the content of the region, excluding the markers.
+	 * @return The given capture.
+	 */
+	public Capture capture(Capture capture) {
+		pendingCaptures.add(capture);
+		return capture;
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		writer.write(chars, offset, length);
+
+		if (pendingCaptures.isEmpty()) {
+			return;
+		}
+
+		for (Capture capture : pendingCaptures) {
+			for (int i = offset; i < offset + length; i++) {
+				if (capture.accept(chars[i])) {
+					pendingCaptures.remove(capture);
+					break;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+
+	// Nested classes -------------------------------------------------------------------------------------------------
+
+	/**
+	 * The captured region. The markers are matched using the Knuth-Morris-Pratt algorithm, so every written character
+	 * is inspected only once.
+	 *
+	 * @author agent
+	 * @since 2.1
+	 */
+	public static final class Capture {
+
+		private final char[] startMarker;
+		private final int[] startFailure;
+		private final char[] endMarker;
+		private final int[] endFailure;
+		private int matched;
+		private StringBuilder content;
+		private volatile boolean complete;
+
+		/**
+		 * Construct a new capture of the region delimited by the given markers.
+		 * @param startMarker The marker which starts the region to capture.
+		 * @param endMarker The marker which ends the region to capture.
+		 */
+		public Capture(String startMarker, String endMarker) {
+			this.startMarker = startMarker.toCharArray();
+			this.startFailure = failure(this.startMarker);
+			this.endMarker = endMarker.toCharArray();
+			this.endFailure = failure(this.endMarker);
+		}
+
+		/**
+		 * Returns the content between the markers, or <code>null</code> if the end marker has not been written (yet).
+		 * @return The content between the markers.
+		 */
+		public String getContent() {
+			return complete ? content.toString() : null;
+		}
+
+		/**
+		 * Accepts the given character and returns whether the capture is complete.
+		 */
+		private boolean accept(char c) {
+			if (content == null) {
+				matched = advance(startMarker, startFailure, matched, c);
+
+				if (matched == startMarker.length) {
+					content = new StringBuilder();
+					matched = 0;
+				}
+
+				return false;
+			}
+
+			content.append(c);
+			matched = advance(endMarker, endFailure, matched, c);
+
+			if (matched == endMarker.length) {
+				content.setLength(content.length() - endMarker.length);
+				complete = true;
+			}
+
+			return complete;
+		}
+
+		private static int advance(char[] marker, int[] failure, int matched, char c) {
+			int position = matched;
+
+			while (position > 0 && marker[position] != c) {
+				position = failure[position - 1];
+			}
+
+			return (marker[position] == c) ? position + 1 : position;
+		}
+
+		private static int[] failure(char[] marker) {
+			int[] failure = new int[marker.length];
+
+			for (int i = 1, position = 0; i < marker.length; i++) {
+				while (position > 0 && marker[i] != marker[position]) {
+					position = failure[position - 1];
+				}
+
+				if (marker[i] == marker[position]) {
+					position++;
+				}
+
+				failure[i] = position;
+			}
+
+			return failure;
+		}
+	}
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This output stream buffers everything written to it in fixed size chunks which are borrowed from a
+ * {@link ByteArrayPool}. Unlike {@link ByteArrayOutputStream}, the buffer does not need to be copied into a larger
+ * array when it grows, and its content can be written to another output stream, decoded to a writer or searched
+ * without first being flattened into a single array. The chunks are returned to the pool on {@link #release()}.
+ *
+ * @author agent
+ * @since 2.1
+ */
+public class ChunkedByteArrayOutputStream extends OutputStream {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	private static final int DEFAULT_CHUNK_SIZE = 8192;
+	private static final int COPY_BUFFER_SIZE = 4096;
+
+	// Variables ------------------------------------------------------------------------------------------------------
+
+	private final ByteArrayPool pool;
+	private final int chunkSize;
+	private final List<byte[]> chunks = new ArrayList<>();
+	private byte[] currentChunk;
+	private int currentLength;
+	private int size;
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	/**
+	 * Construct a new chunked byte array output stream with the default chunk size of 8KB.
+	 */
+	public ChunkedByteArrayOutputStream() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Construct a new chunked byte array output stream with the given chunk size.
+	 * @param chunkSize The size of the chunks.
+	 */
+	public ChunkedByteArrayOutputStream(int chunkSize) {
+		this.pool = ByteArrayPool.getInstance(chunkSize);
+		this.chunkSize = chunkSize;
+	}
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	@Override
+	public void write(int b) {
+		if (currentChunk == null || currentLength == chunkSize) {
+			nextChunk();
+		}
+
+		currentChunk[currentLength++] = (byte) b;
+		size++;
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) {
+		while (length > 0) {
+			if (currentChunk == null || currentLength == chunkSize) {
+				nextChunk();
+			}
+
+			int copyLength = Math.min(length, chunkSize - currentLength);
+			System.arraycopy(bytes, offset, currentChunk, currentLength, copyLength);
+			currentLength += copyLength;
+			size += copyLength;
+			offset += copyLength;
+			length -= copyLength;
+		}
+	}
+
+	/**
+	 * Writes the buffered bytes to the given output stream, chunk by chunk.
+	 * @param output The output stream to write the buffered bytes to.
+	 * @throws IOException When an I/O error occurs.
+	 */
+	public void writeTo(OutputStream output) throws IOException {
+		int remaining = size;
+
+		for (byte[] chunk : chunks) {
+			int length = Math.min(remaining, chunkSize);
+			output.write(chunk, 0, length);
+			remaining -= length;
+		}
+	}
+
+	/**
+	 * Decodes the buffered bytes using the given character encoding and writes the characters to the given writer.
+	 * Multi byte characters which span two chunks are correctly decoded.
+	 * @param writer The writer to write the decoded characters to.
+	 * @param characterEncoding The character encoding of the buffered bytes.
+	 * @throws UnsupportedEncodingException When the given character encoding is not supported.
+	 * @throws IOException When an I/O error occurs.
+	 */
+	public void writeTo(Writer writer, String characterEncoding) throws IOException {
+		Reader reader = new InputStreamReader(getInputStream(), characterEncoding);
+		char[] buffer = new char[COPY_BUFFER_SIZE];
+
+		for (int length; (length = reader.read(buffer)) != -1;) {
+			writer.write(buffer, 0, length);
+		}
+	}
+
+	/**
+	 * Returns the index of the first occurrence of the given bytes in the buffered bytes, starting at the given index.
+	 * @param bytes The bytes to search for.
+	 * @param fromIndex The index to start the search from.
+	 * @return The index of the first occurrence of the given bytes, or -1 if there is none.
+	 */
+	public int indexOf(byte[] bytes, int fromIndex) {
+		if (bytes.length == 0) {
+			return Math.min(Math.max(fromIndex, 0), size);
+		}
+
+		int lastIndex = size - bytes.length;
+
+		search:
+		for (int i = Math.max(fromIndex, 0); i <= lastIndex; i++) {
+			for (int j = 0; j < bytes.length; j++) {
+				int index = i + j;
+
+				if (chunks.get(index / chunkSize)[index % chunkSize] != bytes[j]) {
+					continue search;
+				}
+			}
+
+			return i;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns an input stream which reads the buffered bytes, chunk by chunk. It reflects the buffered bytes as they
+	 * are at the moment of this call, and may not be used anymore after {@link #reset()} or {@link #release()}.
+	 * @return An input stream which reads the buffered bytes.
+	 */
+	public InputStream getInputStream() {
+		final int end = size;
+
+		return new InputStream() {
+
+			private int position;
+
+			@Override
+			public int read() {
+				if (position >= end) {
+					return -1;
+				}
+
+				int b = chunks.get(position / chunkSize)[position % chunkSize] & 0xff;
+				position++;
+				return b;
+			}
+
+			@Override
+			public int read(byte[] bytes, int offset, int length) {
+				if (position >= end) {
+					return -1;
+				}
+
+				int chunkOffset = position % chunkSize;
+				int readLength = Math.min(length, Math.min(end - position, chunkSize - chunkOffset));
+				System.arraycopy(chunks.get(position / chunkSize), chunkOffset, bytes, offset, readLength);
+				position += readLength;
+				return readLength;
+			}
+
+			@Override
+			public int available() {
+				return end - position;
+			}
+		};
+	}
+
+	/**
+	 * Returns a copy of the buffered bytes as a single byte array. Prefer {@link #writeTo(OutputStream)} or
+	 * {@link #writeTo(Writer, String)} for large buffers, as this doubles the memory cost.
+	 * @return A copy of the buffered bytes.
+	 */
+	public byte[] toByteArray() {
+		byte[] bytes = new byte[size];
+		int offset = 0;
+
+		for (byte[] chunk : chunks) {
+			int length = Math.min(size - offset, chunkSize);
+			System.arraycopy(chunk, 0, bytes, offset, length);
+			offset += length;
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Discards the buffered bytes, while keeping the chunks for reuse by this stream.
+	 */
+	public void reset() {
+		size = 0;
+		currentLength = 0;
+		currentChunk = chunks.isEmpty() ? null : chunks.get(0);
+
+		while (chunks.size() > 1) {
+			pool.release(chunks.remove(chunks.size() - 1));
+		}
+	}
+
+	/**
+	 * Discards the buffered bytes and returns the chunks to the pool. This stream can still be written to afterwards,
+	 * it will then borrow new chunks.
+	 */
+	public void release() {
+		for (byte[] chunk : chunks) {
+			pool.release(chunk);
+		}
+
+		chunks.clear();
+		currentChunk = null;
+		currentLength = 0;
+		size = 0;
+	}
+
+	// Getters --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the amount of buffered bytes.
+	 * @return The amount of buffered bytes.
+	 */
+	public int size() {
+		return size;
+	}
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	private void nextChunk() {
+		currentChunk = pool.borrow();
+		currentLength = 0;
+		chunks.add(currentChunk);
+	}
+
+}
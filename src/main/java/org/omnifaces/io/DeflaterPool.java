@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.io;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * A pool of {@link Deflater} instances with the same compression level, strategy and format. Every deflater allocates
+ * native memory which is only freed by {@link Deflater#end()}, or otherwise at finalization. Creating a deflater per
+ * response thus lets the native memory grow until the garbage collector gets around to it. This pool resets and
+ * reuses the deflaters instead, and ends the ones which are released while the pool is full straight away.
+ *
+ * @author agent
+ * @since 2.1
+ * @see PooledDeflaterOutputStream
+ */
+public final class DeflaterPool {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	private static final int MAX_POOLED = Runtime.getRuntime().availableProcessors() * 4;
+	private static final ConcurrentMap<Key, DeflaterPool> POOLS = new ConcurrentHashMap<>();
+
+	// Variables ------------------------------------------------------------------------------------------------------
+
+	private final int level;
+	private final int strategy;
+	private final boolean gzip;
+	private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	private DeflaterPool(int level, int strategy, boolean gzip) {
+		this.level = level;
+		this.strategy = strategy;
+		this.gzip = gzip;
+	}
+
+	/**
+	 * Returns the pool of deflaters with the given compression level, strategy and format.
+	 * @param level The compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}.
+	 * @param strategy The compression strategy, one of {@link Deflater#DEFAULT_STRATEGY}, {@link Deflater#FILTERED}
+	 * and {@link Deflater#HUFFMAN_ONLY}.
+	 * @param gzip Whether the deflaters are to be used for the GZIP format, otherwise the ZLIB format is used, which is
+	 * the format of the HTTP <code>deflate</code> content coding.
+	 * @return The pool of deflaters with the given compression level, strategy and format.
+	 * @throws IllegalArgumentException When the level or strategy is invalid.
+	 */
+	public static DeflaterPool getInstance(int level, int strategy, boolean gzip) {
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+
+		if (strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED && strategy != Deflater.HUFFMAN_ONLY) {
+			throw new IllegalArgumentException("Invalid compression strategy: " + strategy);
+		}
+
+		Key key = new Key(level, strategy, gzip);
+		DeflaterPool pool = POOLS.get(key);
+
+		if (pool == null) {
+			DeflaterPool newPool = new DeflaterPool(level, strategy, gzip);
+			pool = POOLS.putIfAbsent(key, newPool);
+
+			if (pool == null) {
+				pool = newPool;
+			}
+		}
+
+		return pool;
+	}
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Borrows a deflater from the pool, or creates a new one if the pool is empty.
+	 * @return A deflater with the compression level, strategy and format of this pool.
+	 */
+	public Deflater borrow() {
+		Deflater deflater = deflaters.poll();
+
+		if (deflater == null) {
+			deflater = new Deflater(level, gzip);
+			deflater.setStrategy(strategy);
+			return deflater;
+		}
+
+		pooled.decrementAndGet();
+		return deflater;
+	}
+
+	/**
+	 * Resets the given deflater and returns it to the pool, or ends it if the pool is full. It may not be used by the
+	 * caller anymore after this call.
+	 * @param deflater The deflater which was borrowed from this pool.
+	 */
+	public void release(Deflater deflater) {
+		if (pooled.incrementAndGet() <= MAX_POOLED) {
+			deflater.reset();
+			deflaters.offer(deflater);
+		}
+		else {
+			pooled.decrementAndGet();
+			deflater.end();
+		}
+	}
+
+	// Getters --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the compression level of the deflaters of this pool.
+	 * @return The compression level of the deflaters of this pool.
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Returns the compression strategy of the deflaters of this pool.
+	 * @return The compression strategy of the deflaters of this pool.
+	 */
+	public int getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * Returns whether the deflaters of this pool are to be used for the GZIP format.
+	 * @return Whether the deflaters of this pool are to be used for the GZIP format.
+	 */
+	public boolean isGzip() {
+		return gzip;
+	}
+
+	// Nested classes -------------------------------------------------------------------------------------------------
+
+	/**
+	 * The key of a pool.
+	 */
+	private static final class Key {
+
+		private final int[] values;
+
+		public Key(int level, int strategy, boolean gzip) {
+			values = new int[] { level, strategy, gzip ? 1 : 0 };
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			return object instanceof Key && Arrays.equals(values, ((Key) object).values);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(values);
+		}
+	}
+
+}
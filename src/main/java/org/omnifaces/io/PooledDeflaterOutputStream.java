@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This output stream compresses everything written to it with a {@link Deflater} borrowed from the given
+ * {@link DeflaterPool}, in either the GZIP or the ZLIB format, depending on the pool. Unlike {@link GZIPOutputStream}
+ * and {@link DeflaterOutputStream}, the deflater and the output buffer are returned to their pools on
+ * {@link #close()}, so that they can be reused by the next stream.
+ * <p>
+ * In sync flush mode, {@link #flush()} flushes all pending compressed data with {@link Deflater#SYNC_FLUSH}, so that
+ * the receiver can decompress everything written so far. This costs a few bytes per flush and somewhat reduces the
+ * compression ratio, so it should only be used when the data is to be consumed progressively.
+ *
+ * @author agent
+ * @since 2.1
+ */
+public class PooledDeflaterOutputStream extends OutputStream {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+	private static final String ERROR_CLOSED = "Stream is already closed.";
+
+	// Variables ------------------------------------------------------------------------------------------------------
+
+	private final OutputStream output;
+	private final DeflaterPool pool;
+	private final Deflater deflater;
+	private final byte[] buffer;
+	private final CRC32 crc;
+	private final boolean syncFlush;
+	private final byte[] singleByte = new byte[1];
+	private boolean closed;
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	/**
+	 * Construct a new pooled deflater output stream which writes the compressed data to the given output stream.
+	 * @param output The wrapped output stream.
+	 * @param pool The pool to borrow the deflater from.
+	 * @throws IOException When an I/O error occurs while writing the GZIP header.
+	 */
+	public PooledDeflaterOutputStream(OutputStream output, DeflaterPool pool) throws IOException {
+		this(output, pool, false);
+	}
+
+	/**
+	 * Construct a new pooled deflater output stream which writes the compressed data to the given output stream.
+	 * @param output The wrapped output stream.
+	 * @param pool The pool to borrow the deflater from.
+	 * @param syncFlush Whether {@link #flush()} should flush all pending compressed data.
+	 * @throws IOException When an I/O error occurs while writing the GZIP header.
+	 */
+	public PooledDeflaterOutputStream(OutputStream output, DeflaterPool pool, boolean syncFlush) throws IOException {
+		this.output = output;
+		this.syncFlush = syncFlush;
+		this.pool = pool;
+		this.deflater = pool.borrow();
+		this.buffer = ByteArrayPool.getInstance(BUFFER_SIZE).borrow();
+		this.crc = pool.isGzip() ? new CRC32() : null;
+
+		if (crc != null) {
+			output.write(GZIP_HEADER);
+		}
+	}
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	@Override
+	public void write(int b) throws IOException {
+		singleByte[0] = (byte) b;
+		write(singleByte, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		checkClosed();
+
+		if (length == 0) {
+			return;
+		}
+
+		if (crc != null) {
+			crc.update(bytes, offset, length);
+		}
+
+		deflater.setInput(bytes, offset, length);
+
+		while (!deflater.needsInput()) {
+			deflate(Deflater.NO_FLUSH);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		checkClosed();
+
+		if (syncFlush) {
+			int length;
+
+			do {
+				length = deflate(Deflater.SYNC_FLUSH);
+			}
+			while (length == buffer.length); // Else the pending data may not all fit in the buffer.
+		}
+
+		output.flush();
+	}
+
+	/**
+	 * Finishes the compressed data, returns the deflater and the output buffer to their pools and closes the wrapped
+	 * output stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+
+		try {
+			deflater.finish();
+
+			while (!deflater.finished()) {
+				deflate(Deflater.NO_FLUSH);
+			}
+
+			if (crc != null) {
+				writeTrailer();
+			}
+		}
+		finally {
+			release();
+		}
+
+		output.close();
+	}
+
+	/**
+	 * Returns the deflater and the output buffer to their pools without finishing the compressed data and without
+	 * closing the wrapped output stream. This is to be used instead of {@link #close()} when the compressed data which
+	 * has been written so far is to be discarded anyway, e.g. on a response reset. The stream is closed afterwards.
+	 * @since 2.1
+	 */
+	public void discard() {
+		if (!closed) {
+			closed = true;
+			release();
+		}
+	}
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	private void release() {
+		pool.release(deflater);
+		ByteArrayPool.getInstance(BUFFER_SIZE).release(buffer);
+	}
+
+	private int deflate(int flush) throws IOException {
+		int length = deflater.deflate(buffer, 0, buffer.length, flush);
+
+		if (length > 0) {
+			output.write(buffer, 0, length);
+		}
+
+		return length;
+	}
+
+	/**
+	 * Writes the CRC-32 and the size of the uncompressed data, both in little endian, as per RFC 1952.
+	 */
+	private void writeTrailer() throws IOException {
+		long checksum = crc.getValue();
+		long size = deflater.getBytesRead();
+
+		for (int i = 0; i < 4; i++) {
+			buffer[i] = (byte) (checksum >> (i * 8));
+			buffer[i + 4] = (byte) (size >> (i * 8));
+		}
+
+		output.write(buffer, 0, 8);
+	}
+
+	private void checkClosed() throws IOException {
+		if (closed) {
+			throw new IOException(ERROR_CLOSED);
+		}
+	}
+
+}
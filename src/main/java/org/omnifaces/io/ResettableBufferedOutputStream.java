@@ -91,6 +91,23 @@ public class ResettableBufferedOutputStream extends OutputStream implements Rese
 		}
 	}
 
+	/**
+	 * Writes the buffer to the wrapped output stream and flushes it, regardless of the buffer size. After this, the
+	 * buffer cannot be reset anymore and everything is written straight through to the wrapped output stream.
+	 * @throws IOException When an I/O error occurs.
+	 * @since 2.1
+	 */
+	public void flushBuffer() throws IOException {
+		if (buffer != null) {
+			output.write(buffer.toByteArray());
+			output.flush();
+			buffer = null;
+		}
+		else {
+			output.flush();
+		}
+	}
+
 	@Override
 	public void close() throws IOException {
 		if (buffer != null) {
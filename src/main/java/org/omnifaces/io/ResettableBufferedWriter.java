@@ -88,6 +88,23 @@ public class ResettableBufferedWriter extends Writer implements ResettableBuffer
 		}
 	}
 
+	/**
+	 * Writes the buffer to the wrapped writer and flushes it, regardless of the buffer size. After this, the buffer
+	 * cannot be reset anymore and everything is written straight through to the wrapped writer.
+	 * @throws IOException When an I/O error occurs.
+	 * @since 2.1
+	 */
+	public void flushBuffer() throws IOException {
+		if (buffer != null) {
+			writer.write(buffer.toCharArray());
+			writer.flush();
+			buffer = null;
+		}
+		else {
+			writer.flush();
+		}
+	}
+
 	@Override
 	public void close() throws IOException {
 		if (buffer != null) {
@@ -12,27 +12,35 @@
  */
 package org.omnifaces.servlet;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Writer;
 
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletResponse;
 
+import org.omnifaces.io.ChunkedByteArrayOutputStream;
+
 /**
  * This HTTP servlet response implementation buffers the entire response body. The buffered response body is available
  * as a byte array via the {@link #getBuffer()} method. Note that the buffered response writer will use same character
  * encoding as is been set on the response supplied to the constructor and that this way any
  * {@link ServletResponse#setCharacterEncoding(String)} calls on the included JSP/Servlet resource have thus no effect.
+ * <p>
+ * The response body is buffered in pooled chunks. Large response bodies should preferably be written to their final
+ * destination via {@link #writeBufferTo(OutputStream)} or {@link #writeBufferTo(Writer)}, as {@link #getBuffer()} and
+ * {@link #getBufferAsString()} need to copy the whole buffer. The chunks can be returned to the pool via
+ * {@link #releaseBuffer()} once the buffered response is not needed anymore.
  *
  * @author Bauke Scholtz
  * @since 1.1
+ * @see ChunkedByteArrayOutputStream
  */
 public class BufferedHttpServletResponse extends HttpServletResponseOutputWrapper {
 
 	// Properties -----------------------------------------------------------------------------------------------------
 
-	private final ByteArrayOutputStream buffer;
+	private final ChunkedByteArrayOutputStream buffer;
 
 	// Constructors ---------------------------------------------------------------------------------------------------
 
@@ -42,7 +50,7 @@ public class BufferedHttpServletResponse extends HttpServletResponseOutputWrappe
 	 */
 	public BufferedHttpServletResponse(HttpServletResponse response) {
 		super(response);
-		buffer = new ByteArrayOutputStream(response.getBufferSize());
+		buffer = new ChunkedByteArrayOutputStream();
 	}
 
 	// Actions --------------------------------------------------------------------------------------------------------
@@ -69,7 +77,51 @@ public class BufferedHttpServletResponse extends HttpServletResponseOutputWrappe
 	 * @throws IOException When an I/O error occurs.
 	 */
 	public String getBufferAsString() throws IOException {
-		return new String(getBuffer(), getCharacterEncoding());
+		close();
+		return new String(buffer.toByteArray(), getCharacterEncoding());
+	}
+
+	/**
+	 * Flushes and writes the buffered response to the given output stream, without copying the buffer.
+	 * @param output The output stream to write the buffered response to.
+	 * @throws IOException When an I/O error occurs.
+	 * @since 2.1
+	 */
+	public void writeBufferTo(OutputStream output) throws IOException {
+		close();
+		buffer.writeTo(output);
+	}
+
+	/**
+	 * Flushes and writes the buffered response to the given writer, decoded using the character encoding provided by
+	 * {@link #getCharacterEncoding()}, without copying the buffer.
+	 * @param writer The writer to write the buffered response to.
+	 * @throws IOException When an I/O error occurs.
+	 * @since 2.1
+	 */
+	public void writeBufferTo(Writer writer) throws IOException {
+		close();
+		buffer.writeTo(writer, getCharacterEncoding());
+	}
+
+	/**
+	 * Discards the buffered response and returns its chunks to the pool.
+	 * @since 2.1
+	 */
+	public void releaseBuffer() {
+		buffer.release();
+	}
+
+	// Getters --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the underlying buffer, which can be used to search in the buffered response without copying it. Note
+	 * that the buffer is only complete after the response has been closed.
+	 * @return The underlying buffer.
+	 * @since 2.1
+	 */
+	public ChunkedByteArrayOutputStream getBufferedOutput() {
+		return buffer;
 	}
 
 }
\ No newline at end of file
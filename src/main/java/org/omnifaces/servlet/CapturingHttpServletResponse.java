@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.ServletOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.omnifaces.io.CapturingWriter;
+import org.omnifaces.io.CapturingWriter.Capture;
+
+/**
+ * This HTTP servlet response implementation streams the response body straight through to the wrapped response, while
+ * recording only the regions of the response writer output which are delimited by the markers registered via
+ * {@link #capture(String, String)}. Unlike the {@link BufferedHttpServletResponse}, the memory cost is thus limited to
+ * the size of the captured regions. Note that the output stream is not captured.
+ * <p>
+ * The response writer is not obtained before the response body is actually written. Markers registered before that are
+ * kept aside until then, so that the content type and character encoding set during rendering are still respected.
+ *
+ * @author agent
+ * @since 2.1
+ * @see CapturingWriter
+ */
+public class CapturingHttpServletResponse extends HttpServletResponseWrapper {
+
+	// Properties -----------------------------------------------------------------------------------------------------
+
+	private final List<Capture> pendingCaptures = new ArrayList<>();
+	private CapturingWriter capturingWriter;
+	private PrintWriter writer;
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	/**
+	 * Construct a capturing HTTP servlet response which wraps the given response.
+	 * @param response The response to be wrapped.
+	 */
+	public CapturingHttpServletResponse(HttpServletResponse response) {
+		super(response);
+	}
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		ServletOutputStream output = super.getOutputStream();
+		pendingCaptures.clear(); // The output stream is not captured, so these will never complete anyway.
+		return output;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (writer == null) {
+			capturingWriter = new CapturingWriter(super.getWriter());
+			writer = new PrintWriter(capturingWriter);
+
+			for (Capture capture : pendingCaptures) {
+				capturingWriter.capture(capture);
+			}
+
+			pendingCaptures.clear();
+		}
+
+		return writer;
+	}
+
+	/**
+	 * Starts looking for a region delimited by the given markers in everything written to the response writer from now
+	 * on. This does not obtain the response writer by itself.
+	 * @param startMarker The marker which starts the region to capture.
+	 * @param endMarker The marker which ends the region to capture.
+	 * @return The capture which will hold the content of the region, excluding the markers.
+	 */
+	public Capture capture(String startMarker, String endMarker) {
+		Capture capture = new Capture(startMarker, endMarker);
+
+		if (capturingWriter != null) {
+			capturingWriter.capture(capture);
+		}
+		else {
+			pendingCaptures.add(capture);
+		}
+
+		return capture;
+	}
+
+}
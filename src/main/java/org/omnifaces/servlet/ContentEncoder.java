@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+
+import org.omnifaces.filter.GzipResponseFilter;
+
+/**
+ * A content encoder which can be plugged into the {@link GzipHttpServletResponse}, and thus the
+ * {@link GzipResponseFilter}. An encoder represents a single HTTP content coding, such as <code>gzip</code>, and is
+ * only used when the client accepts that content coding, the response content type matches one of its mimetypes and
+ * the response size exceeds its threshold. Implementations must be thread safe, as a single instance is shared by all
+ * responses.
+ *
+ * @author agent
+ * @since 2.1
+ * @see DeflaterContentEncoder
+ */
+public interface ContentEncoder {
+
+	/**
+	 * Returns the name of the content coding, as it appears in the <code>Accept-Encoding</code> request header and the
+	 * <code>Content-Encoding</code> response header, e.g. <code>gzip</code>.
+	 * @return The name of the content coding.
+	 */
+	String getName();
+
+	/**
+	 * Returns the threshold size in bytes. Responses which are not larger than this are not encoded.
+	 * @return The threshold size in bytes.
+	 */
+	int getThreshold();
+
+	/**
+	 * Returns the mimetypes which needs to be encoded.
+	 * @return The mimetypes which needs to be encoded.
+	 */
+	Set<String> getMimetypes();
+
+	/**
+	 * Returns an output stream which encodes everything written to it into the given output stream. Closing the
+	 * returned output stream must finish the encoding and close the given output stream.
+	 * @param output The output stream to write the encoded data to.
+	 * @param mimetype The mimetype of the response, without parameters.
+	 * @param syncFlush Whether flushing the returned output stream should flush all data written so far in a form
+	 * which can already be decoded by the client.
+	 * @return An output stream which encodes everything written to it.
+	 * @throws IOException When an I/O error occurs.
+	 */
+	OutputStream createOutputStream(OutputStream output, String mimetype, boolean syncFlush) throws IOException;
+
+}
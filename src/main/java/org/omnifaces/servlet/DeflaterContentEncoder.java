@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import org.omnifaces.io.DeflaterPool;
+import org.omnifaces.io.PooledDeflaterOutputStream;
+
+/**
+ * The built-in content encoder for the <code>gzip</code> and <code>deflate</code> content codings. Both use pooled
+ * {@link Deflater} instances, with the default compression level and strategy, unless configured otherwise via
+ * {@link #setCompression(String, int, int)}.
+ *
+ * @author agent
+ * @since 2.1
+ * @see PooledDeflaterOutputStream
+ */
+public class DeflaterContentEncoder implements ContentEncoder {
+
+	// Constants ------------------------------------------------------------------------------------------------------
+
+	/** The name of the <code>gzip</code> content coding. */
+	public static final String GZIP = "gzip";
+
+	/** The name of the <code>deflate</code> content coding. */
+	public static final String DEFLATE = "deflate";
+
+	// Properties -----------------------------------------------------------------------------------------------------
+
+	private final boolean gzip;
+	private final int threshold;
+	private final Set<String> mimetypes;
+	private final Map<String, DeflaterPool> deflaterPools = new HashMap<>();
+	private DeflaterPool defaultDeflaterPool;
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	/**
+	 * Construct a new deflater content encoder.
+	 * @param gzip Whether this is the encoder for the <code>gzip</code>, otherwise the <code>deflate</code> content
+	 * coding.
+	 * @param threshold The threshold size in bytes.
+	 * @param mimetypes The mimetypes which needs to be compressed.
+	 */
+	public DeflaterContentEncoder(boolean gzip, int threshold, Set<String> mimetypes) {
+		this.gzip = gzip;
+		this.threshold = threshold;
+		this.mimetypes = mimetypes;
+		this.defaultDeflaterPool = DeflaterPool.getInstance(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, gzip);
+	}
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Sets the compression level and strategy for the given mimetype. This is not thread safe and should thus only be
+	 * invoked during initialization.
+	 * @param mimetype The mimetype, or <code>*</code> for all mimetypes without an explicit compression setting.
+	 * @param level The compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}.
+	 * @param strategy The compression strategy, one of {@link Deflater#DEFAULT_STRATEGY}, {@link Deflater#FILTERED}
+	 * and {@link Deflater#HUFFMAN_ONLY}.
+	 * @throws IllegalArgumentException When the level or strategy is invalid.
+	 */
+	public void setCompression(String mimetype, int level, int strategy) {
+		DeflaterPool deflaterPool = DeflaterPool.getInstance(level, strategy, gzip);
+
+		if ("*".equals(mimetype)) {
+			defaultDeflaterPool = deflaterPool;
+		}
+		else {
+			deflaterPools.put(mimetype, deflaterPool);
+		}
+	}
+
+	@Override
+	public OutputStream createOutputStream(OutputStream output, String mimetype, boolean syncFlush) throws IOException {
+		DeflaterPool deflaterPool = deflaterPools.get(mimetype);
+		return new PooledDeflaterOutputStream(output, (deflaterPool != null) ? deflaterPool : defaultDeflaterPool, syncFlush);
+	}
+
+	// Getters --------------------------------------------------------------------------------------------------------
+
+	@Override
+	public String getName() {
+		return gzip ? GZIP : DEFLATE;
+	}
+
+	@Override
+	public int getThreshold() {
+		return threshold;
+	}
+
+	@Override
+	public Set<String> getMimetypes() {
+		return mimetypes;
+	}
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.omnifaces.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * This HTTP servlet response wrapper buffers the response body up to the given maximum size, so that an
+ * <code>ETag</code> header can be generated from the hash of the body once it's complete, and a conditional GET
+ * request with a matching <code>If-None-Match</code> header can be answered with a bodiless 304 instead. When the
+ * response body exceeds the maximum size, or the response is committed by other means, it is written through as is,
+ * without an <code>ETag</code>.
+ * <p>
+ * The generated <code>ETag</code> is weak, because the body may still be transformed, e.g. compressed, by a wrapping
+ * filter.
+ *
+ * @author agent
+ * @since 2.1
+ * @see org.omnifaces.filter.CacheControlFilter
+ */
+public class ETagHttpServletResponse extends HttpServletResponseOutputWrapper {
+
+	// Properties -----------------------------------------------------------------------------------------------------
+
+	private final int maxBufferSize;
+	private ETagOutputStream output;
+
+	// Constructors ---------------------------------------------------------------------------------------------------
+
+	/**
+	 * Construct an ETag HTTP servlet response which wraps the given response.
+	 * @param response The response to be wrapped.
+	 * @param maxBufferSize The maximum size in bytes of the response body for which an ETag is generated.
+	 */
+	public ETagHttpServletResponse(HttpServletResponse response, int maxBufferSize) {
+		super(response);
+		this.maxBufferSize = maxBufferSize;
+	}
+
+	// Actions --------------------------------------------------------------------------------------------------------
+
+	@Override
+	protected OutputStream createOutputStream() {
+		return output = new ETagOutputStream();
+	}
+
+	/**
+	 * Completes the response. If the response body is buffered and the response status is 200, then set the
+	 * <code>ETag</code> header and, if the given <code>If-None-Match</code> request header matches it, send a 304
+	 * without body, else write the buffered response body.
+	 * @param ifNoneMatch The <code>If-None-Match</code> request header, may be <code>null</code>.
+	 * @throws IOException When an I/O error occurs.
+	 */
+	public void finish(String ifNoneMatch) throws IOException {
+		close();
+
+		if (output == null || output.buffer == null) {
+			return; // Nothing written, or already written through.
+		}
+
+		byte[] body = output.buffer.toByteArray();
+		output.buffer = null;
+		HttpServletResponse response = (HttpServletResponse) getResponse();
+
+		if (getStatus() == SC_OK && !response.isCommitted()) {
+			String eTag = "W/\"" + hash(body) + "\"";
+			response.setHeader("ETag", eTag);
+
+			if (matches(ifNoneMatch, eTag)) {
+				response.setStatus(SC_NOT_MODIFIED);
+				return;
+			}
+		}
+
+		response.setContentLength(body.length);
+		OutputStream stream = response.getOutputStream();
+		stream.write(body);
+		stream.close();
+	}
+
+	// Helpers --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns whether the given <code>If-None-Match</code> request header matches the given ETag, using the weak
+	 * comparison as required for <code>If-None-Match</code>.
+	 */
+	private static boolean matches(String ifNoneMatch, String eTag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+
+		String opaqueTag = eTag.substring(2); // Without the "W/" prefix.
+
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+
+			if (candidate.equals("*") || candidate.equals(opaqueTag) || candidate.equals(eTag)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static String hash(byte[] body) {
+		try {
+			return new BigInteger(1, MessageDigest.getInstance("MD5").digest(body)).toString(Character.MAX_RADIX);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// Inner classes --------------------------------------------------------------------------------------------------
+
+	/**
+	 * This output stream buffers until the maximum buffer size is exceeded, after which it writes the buffer and
+	 * everything after it straight through to the wrapped response.
+	 * <p>
+	 * This is an inner class because it needs to be able to write to the wrapped response.
+	 *
+	 * @author agent
+	 */
+	private class ETagOutputStream extends OutputStream {
+
+		private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private OutputStream output;
+
+		@Override
+		public void write(int b) throws IOException {
+			if (buffer != null && buffer.size() < maxBufferSize) {
+				buffer.write(b);
+			}
+			else {
+				getOutput().write(b);
+			}
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			if (buffer != null && buffer.size() + length <= maxBufferSize) {
+				buffer.write(bytes, offset, length);
+			}
+			else {
+				getOutput().write(bytes, offset, length);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (output != null) {
+				output.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (output != null) {
+				output.close();
+			}
+			// Else the buffer is written or discarded by finish().
+		}
+
+		/**
+		 * Maximum buffer size has exceeded. Write the buffer through and switch to the wrapped output stream.
+		 */
+		private OutputStream getOutput() throws IOException {
+			if (output == null) {
+				output = getResponse().getOutputStream();
+				buffer.writeTo(output);
+				buffer = null;
+			}
+
+			return output;
+		}
+	}
+
+}
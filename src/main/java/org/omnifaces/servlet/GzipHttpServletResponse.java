@@ -14,15 +14,31 @@ package org.omnifaces.servlet;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Deflater;
 
 import javax.servlet.http.HttpServletResponse;
 
+import org.omnifaces.io.ByteArrayPool;
+import org.omnifaces.io.PooledDeflaterOutputStream;
+
 /**
  * This HTTP servlet response wrapper will GZIP the response when the given threshold has exceeded and the response
  * content type matches one of the given mimetypes.
+ * <p>
+ * Other content codings can be plugged in as {@link ContentEncoder}. When constructed with a list of encoders, the
+ * response is encoded with the first encoder in the list whose mimetypes match the response content type and whose
+ * threshold has been exceeded. The list should thus be ordered by preference, and only contain encoders which are
+ * accepted by the client. The built-in {@link DeflaterContentEncoder} covers <code>gzip</code> and
+ * <code>deflate</code>.
+ * <p>
+ * In streaming mode, an explicit {@link #flushBuffer()} is propagated through the compressor with e.g.
+ * {@link Deflater#SYNC_FLUSH} instead of being ignored until the response is committed, so that the client can start
+ * parsing what has been rendered so far, while the rest is still being rendered and compressed. The decision whether
+ * to compress is then made on the first flush, regardless of the threshold.
  *
  * @author Bauke Scholtz
  * @since 1.1
@@ -36,12 +52,13 @@ public class GzipHttpServletResponse extends HttpServletResponseOutputWrapper {
 
 	// Properties -----------------------------------------------------------------------------------------------------
 
+	private List<ContentEncoder> encoders;
 	private int threshold;
-	private Set<String> mimetypes;
 	private long contentLength;
 	private String vary;
 	private boolean noGzip;
 	private boolean closing;
+	private boolean streaming;
 	private GzipThresholdOutputStream output;
 
 	// Constructors ---------------------------------------------------------------------------------------------------
@@ -53,9 +70,22 @@ public class GzipHttpServletResponse extends HttpServletResponseOutputWrapper {
 	 * @param mimetypes The mimetypes which needs to be compressed with GZIP.
 	 */
 	public GzipHttpServletResponse(HttpServletResponse wrapped, int threshold, Set<String> mimetypes) {
+		this(wrapped, Collections.<ContentEncoder>singletonList(new DeflaterContentEncoder(true, threshold, mimetypes)));
+	}
+
+	/**
+	 * Construct a new encoding HTTP servlet response based on the given wrapped response and content encoders.
+	 * @param wrapped The wrapped response.
+	 * @param encoders The content encoders which are accepted by the client, ordered by preference.
+	 * @since 2.1
+	 */
+	public GzipHttpServletResponse(HttpServletResponse wrapped, List<ContentEncoder> encoders) {
 		super(wrapped);
-		this.threshold = threshold;
-		this.mimetypes = mimetypes;
+		this.encoders = encoders;
+
+		for (ContentEncoder encoder : encoders) {
+			threshold = Math.max(threshold, encoder.getThreshold());
+		}
 	}
 
 	// Actions --------------------------------------------------------------------------------------------------------
@@ -112,7 +142,10 @@ public class GzipHttpServletResponse extends HttpServletResponseOutputWrapper {
 
 	@Override
 	public void flushBuffer() throws IOException {
-		if (isCommitted()) {
+		if (streaming && !isPassThrough()) {
+			flushOutput();
+		}
+		else if (isCommitted()) {
 			super.flushBuffer();
 		}
 	}
@@ -139,11 +172,45 @@ public class GzipHttpServletResponse extends HttpServletResponseOutputWrapper {
 		closing = false;
 	}
 
+	/**
+	 * Returns the pooled compressor and buffers without writing anything to the wrapped response, so that it isn't
+	 * committed and e.g. an error page can still be sent. This must be used instead of {@link #close()} when the
+	 * response body could not be completely written, e.g. because of an exception.
+	 * @since 2.1
+	 */
+	public void discard() {
+		if (output != null) {
+			output.discard();
+		}
+	}
+
 	@Override
 	protected OutputStream createOutputStream() {
 		return output = new GzipThresholdOutputStream(threshold);
 	}
 
+	// Getters/setters ------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns whether explicit flushes are propagated through the compressor.
+	 * @return <code>true</code> if explicit flushes are propagated through the compressor, otherwise
+	 * <code>false</code>.
+	 * @since 2.1
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Sets whether explicit flushes are propagated through the compressor with {@link Deflater#SYNC_FLUSH}. This must
+	 * be set before the response body is written.
+	 * @param streaming set to <code>true</code> if explicit flushes are to be propagated through the compressor.
+	 * @since 2.1
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
 	// Inner classes --------------------------------------------------------------------------------------------------
 
 	/**
@@ -162,6 +229,7 @@ public class GzipHttpServletResponse extends HttpServletResponseOutputWrapper {
 
 		// Properties -------------------------------------------------------------------------------------------------
 
+		private ByteArrayPool thresholdBufferPool;
 		private byte[] thresholdBuffer;
 		private int thresholdLength;
 		private OutputStream output;
@@ -170,14 +238,26 @@ public class GzipHttpServletResponse extends HttpServletResponseOutputWrapper {
 		// Constructors -----------------------------------------------------------------------------------------------
 
 		public GzipThresholdOutputStream(int threshold) {
-			thresholdBuffer = new byte[threshold];
+			thresholdBufferPool = ByteArrayPool.getInstance(threshold);
+			thresholdBuffer = thresholdBufferPool.borrow();
 		}
 
 		// Actions ----------------------------------------------------------------------------------------------------
 
 		@Override
 		public void write(int b) throws IOException {
-			write(new byte[] { (byte) b }, 0, 1);
+			checkClosed();
+
+			if (output == null && thresholdLength < thresholdBuffer.length) {
+				thresholdBuffer[thresholdLength++] = (byte) b;
+			}
+			else {
+				if (output == null) {
+					switchOutput(thresholdLength + 1, false);
+				}
+
+				output.write(b);
+			}
 		}
 
 		@Override
@@ -200,9 +280,7 @@ public class GzipHttpServletResponse extends HttpServletResponseOutputWrapper {
 					return;
 				}
 				else {
-					// Threshold buffer has exceeded. Now use GZIP if possible.
-					output = createGzipOutputStreamIfNecessary(true);
-					output.write(thresholdBuffer, 0, thresholdLength);
+					switchOutput(thresholdLength + length, false);
 				}
 			}
 
@@ -213,6 +291,10 @@ public class GzipHttpServletResponse extends HttpServletResponseOutputWrapper {
 		public void flush() throws IOException {
 			checkClosed();
 
+			if (output == null && streaming && thresholdLength > 0) {
+				switchOutput(thresholdLength, true); // Don't wait for the threshold anymore, the client wants to see this content now.
+			}
+
 			if (output != null) {
 				output.flush();
 			}
@@ -225,39 +307,80 @@ public class GzipHttpServletResponse extends HttpServletResponseOutputWrapper {
 			}
 
 			if (output == null) {
-				// Threshold buffer hasn't exceeded. Use normal output stream.
+				// Threshold buffer hasn't exceeded. Only encoders with a lower threshold may apply.
 				setContentLength(thresholdLength);
-				output = createGzipOutputStreamIfNecessary(false);
-				output.write(thresholdBuffer, 0, thresholdLength);
+				switchOutput(thresholdLength, false);
 			}
 
+			closed = true;
 			output.close();
+		}
+
+		public void discard() {
 			closed = true;
+
+			if (output instanceof PooledDeflaterOutputStream) {
+				((PooledDeflaterOutputStream) output).discard();
+			}
+
+			releaseThresholdBuffer();
 		}
 
 		public void reset() {
 			thresholdLength = 0;
+
+			if (output instanceof PooledDeflaterOutputStream) {
+				((PooledDeflaterOutputStream) output).discard(); // Else the pooled deflater would leak.
+			}
+
 			output = null;
+
+			if (thresholdBuffer == null) {
+				thresholdBuffer = thresholdBufferPool.borrow();
+			}
 		}
 
 		// Helpers ----------------------------------------------------------------------------------------------------
 
 		/**
-		 * Create GZIP output stream if necessary. That is, when the given <code>gzip</code> argument is
-		 * <code>true</code>, the current response does not have the <code>Cache-Control: no-transform</code> or
-		 * <code>Content-Range</code> headers, the current response is not committed, the content type is not
-		 * <code>null</code> and the content type matches one of the mimetypes.
+		 * Threshold buffer has exceeded, or we're flushing or closing. Now encode if possible.
+		 */
+		private void switchOutput(int length, boolean force) throws IOException {
+			output = createEncodedOutputStreamIfNecessary(length, force);
+			output.write(thresholdBuffer, 0, thresholdLength);
+			releaseThresholdBuffer();
+		}
+
+		private void releaseThresholdBuffer() {
+			if (thresholdBuffer != null) {
+				thresholdBufferPool.release(thresholdBuffer);
+				thresholdBuffer = null;
+			}
+		}
+
+		/**
+		 * Create encoded output stream if necessary. That is, when the current response does not have the
+		 * <code>Cache-Control: no-transform</code> or <code>Content-Range</code> headers, the current response is not
+		 * committed, the content type is not <code>null</code> and there's an encoder whose mimetypes match the content
+		 * type and whose threshold is exceeded by the given length, or the given <code>force</code> argument is
+		 * <code>true</code>.
 		 */
-		private OutputStream createGzipOutputStreamIfNecessary(boolean gzip) throws IOException {
+		private OutputStream createEncodedOutputStreamIfNecessary(int length, boolean force) throws IOException {
 			HttpServletResponse originalResponse = (HttpServletResponse) getResponse();
 
-			if (gzip && !noGzip && (closing || !isCommitted())) {
+			if (!noGzip && (closing || !isCommitted())) {
 				String contentType = getContentType();
 
-				if (contentType != null && mimetypes.contains(contentType.split(";", 2)[0])) {
-					addHeader("Content-Encoding", "gzip");
-					setHeader("Vary", ((vary != null && !vary.equals("*")) ? (vary + ",") : "") + "Accept-Encoding");
-					return new GZIPOutputStream(originalResponse.getOutputStream());
+				if (contentType != null) {
+					String mimetype = contentType.split(";", 2)[0];
+
+					for (ContentEncoder encoder : encoders) {
+						if ((force || length > encoder.getThreshold()) && encoder.getMimetypes().contains(mimetype)) {
+							addHeader("Content-Encoding", encoder.getName());
+							setHeader("Vary", ((vary != null && !vary.equals("*")) ? (vary + ",") : "") + "Accept-Encoding");
+							return encoder.createOutputStream(originalResponse.getOutputStream(), mimetype, streaming);
+						}
+					}
 				}
 			}
 
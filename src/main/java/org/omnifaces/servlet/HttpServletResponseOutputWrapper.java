@@ -140,6 +140,21 @@ public abstract class HttpServletResponseOutputWrapper extends HttpServletRespon
 		}
 	}
 
+	/**
+	 * Flushes any buffered output straight through to the output stream as created by {@link #createOutputStream()},
+	 * regardless of the buffer size, and flushes that output stream. After this, the response cannot be reset anymore.
+	 * @throws IOException When an I/O error occurs.
+	 * @since 2.1
+	 */
+	protected void flushOutput() throws IOException {
+		if (buffer instanceof ResettableBufferedWriter) {
+			((ResettableBufferedWriter) buffer).flushBuffer();
+		}
+		else if (buffer instanceof ResettableBufferedOutputStream) {
+			((ResettableBufferedOutputStream) buffer).flushBuffer();
+		}
+	}
+
 	/**
 	 * Close the response body. This closes any created writer or output stream.
 	 * @throws IOException When an I/O error occurs.
@@ -1,3 +1,4 @@
 var OmniFaces=OmniFaces||{};
 OmniFaces.Highlight={addErrorClass:function(h,f,l){var g=document.getElementsByTagName("LABEL");var c={};for(var e=0;e<g.length;e++){var j=g[e];var k=j.htmlFor;if(k){c[k]=j}}for(var e=0;e<h.length;e++){var b=h[e];var d=document.getElementById(b);if(!d){var a=document.getElementsByName(b);if(a&&a.length){d=a[0]}}if(d){d.className+=" "+f;var j=c[d.id];if(j){j.className+=" "+f}if(l){d.focus();l=false}}}}};
 OmniFaces.DeferredScript=function(){function n(e){if(document.readyState==="complete"){setTimeout(e)}else if(window.addEventListener){window.addEventListener("load",e,false)}else if(window.attachEvent){window.attachEvent("onload",e)}else if(typeof window.onload==="function"){var t=window.onload;window.onload=function(){t();e()}}else{window.onload=e}}function r(e){if(e<0||e>=t.length){return}var n=t[e];var i=document.createElement("script");var s=document.head||document.documentElement;i.async=true;i.src=n.url;i.onerror=function(){if(n.error){n.error()}};i.onload=i.onreadystatechange=function(t,s){if(s||!i.readyState||/loaded|complete/.test(i.readyState)){i.onload=i.onreadystatechange=null;if(s){i.onerror()}else if(n.success){n.success()}i=null;r(e+1)}};if(n.begin){n.begin()}s.insertBefore(i,null)}var e={};var t=[];e.add=function(e,i,s,o){t.push({url:e,begin:i,success:s,error:o});if(t.length==1){n(function(){r(0)})}};return e}();
+OmniFaces.Unload=function(n,t){function u(){try{if(navigator.sendBeacon){navigator.sendBeacon(r)}else if(n.XMLHttpRequest){var e=new XMLHttpRequest;e.open("POST",r,false);e.send(null)}}catch(t){}}function f(e,t,n){if(e.addEventListener){e.addEventListener(t,n,false)}else if(e.attachEvent){e.attachEvent("on"+t,n)}}function l(t){return function(){e.disable();return t.apply(this,arguments)}}var e={};var r;var i;e.init=function(s,c,o){var a=!!r;r=o+(o.indexOf("?")<0?"?":"&")+"omnifaces.event=unload&id="+encodeURIComponent(s)+"&token="+encodeURIComponent(c);if(a){return}f(n,"onpagehide"in n?"pagehide":"unload",function(e){if(i){i=false}else if(!e||!e.persisted){u()}});f(t,"submit",e.disable);if(n.mojarra&&mojarra.jsfcljs){mojarra.jsfcljs=l(mojarra.jsfcljs)}if(n.myfaces&&myfaces.oam&&myfaces.oam.submitForm){myfaces.oam.submitForm=l(myfaces.oam.submitForm)}};e.disable=function(){i=true};return e}(window,document);
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 OmniFaces.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+var OmniFaces = OmniFaces || {};
+
+/**
+ * Notify the server when the page is unloaded, so that the view scope can be destroyed immediately instead of waiting
+ * for LRU eviction or session expiry. This uses navigator.sendBeacon() when available, and otherwise falls back to a
+ * synchronous XHR. The notification is sent on pagehide, or on unload in browsers which don't support it, and not when
+ * the page is kept in the back-forward cache, since the enduser may then return to it. Submitting a form in the page,
+ * including via a non-ajax command link, does not count as unloading the view.
+ *
+ * @author agent
+ * @see org.omnifaces.cdi.viewscope.ViewScopeManager
+ * @since 2.1
+ */
+OmniFaces.Unload = (function(window, document) {
+
+	var unload = {};
+	var url;
+	var disabled;
+
+	/**
+	 * Initialize the unload notification for the view scope of the given ID, which is to be sent to the given URL along
+	 * with the given unload token of the view scope.
+	 */
+	unload.init = function(id, token, actionURL) {
+		var initialized = !!url;
+		url = actionURL + (actionURL.indexOf("?") < 0 ? "?" : "&") + "omnifaces.event=unload&id=" + encodeURIComponent(id)
+			+ "&token=" + encodeURIComponent(token);
+
+		if (initialized) {
+			return;
+		}
+
+		addEventListener(window, ("onpagehide" in window) ? "pagehide" : "unload", function(event) {
+			if (disabled) {
+				disabled = false;
+			}
+			else if (!event || !event.persisted) {
+				send();
+			}
+		});
+
+		addEventListener(document, "submit", unload.disable);
+
+		// Non-ajax command links submit the form via a script, which doesn't fire the submit event.
+		if (window.mojarra && mojarra.jsfcljs) {
+			mojarra.jsfcljs = disableBefore(mojarra.jsfcljs);
+		}
+
+		if (window.myfaces && myfaces.oam && myfaces.oam.submitForm) {
+			myfaces.oam.submitForm = disableBefore(myfaces.oam.submitForm);
+		}
+	};
+
+	/**
+	 * Disable the unload notification for the next unload, e.g. right before a link which downloads a file.
+	 */
+	unload.disable = function() {
+		disabled = true;
+	};
+
+	function disableBefore(submit) {
+		return function() {
+			unload.disable();
+			return submit.apply(this, arguments);
+		};
+	}
+
+	function send() {
+		try {
+			if (navigator.sendBeacon) {
+				navigator.sendBeacon(url);
+			}
+			else if (window.XMLHttpRequest) {
+				var xhr = new XMLHttpRequest();
+				xhr.open("POST", url, false);
+				xhr.send(null);
+			}
+		}
+		catch (e) {
+			// Ignore. The view scope will then just be destroyed by LRU eviction or session expiry.
+		}
+	}
+
+	function addEventListener(element, event, listener) {
+		if (element.addEventListener) {
+			element.addEventListener(event, listener, false);
+		}
+		else if (element.attachEvent) {
+			element.attachEvent("on" + event, listener);
+		}
+	}
+
+	return unload;
+
+})(window, document);